@@ -0,0 +1,203 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Base class for parsers reporting CBOR-encoded data as a sequence of {@link CborToken}s.
+ * <p>
+ * This class keeps track of the current token and its value, as well as the nesting of arrays and maps. Per nesting
+ * level, only the number of items left to read is kept. A tag and its data item count as a single item, so a tag
+ * cannot be followed by a break or the end of the input.
+ * </p>
+ */
+public abstract class AbstractCborParser {
+    protected CborToken m_token;
+    protected long m_longValue;
+    protected double m_doubleValue;
+    protected String m_text;
+    protected byte[] m_bytes;
+
+    /** The number of items left to read per nesting level, or <tt>-1</tt> for indefinite-length containers. */
+    protected long[] m_remaining;
+    protected int m_depth;
+    /** Whether a {@link CborToken#TAG} token is reported of which the tagged data item is not yet read. */
+    protected boolean m_tagPending;
+
+    /**
+     * Creates a new {@link AbstractCborParser} instance.
+     */
+    protected AbstractCborParser() {
+        m_remaining = new long[8];
+    }
+
+    /**
+     * @return the token the parser is currently positioned at, or <code>null</code> in case {@link #nextToken()} has
+     *         not been called yet, or the end of the input has been reached.
+     */
+    public CborToken currentToken() {
+        return m_token;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#BYTES} token, never <code>null</code>.
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#BYTES} token.
+     */
+    public byte[] getBytes() {
+        expectToken(CborToken.BYTES);
+        return m_bytes;
+    }
+
+    /**
+     * @return the number of arrays and maps enclosing the current position of this parser, &gt;= 0. A
+     *         {@link CborToken#START_ARRAY} or {@link CborToken#START_MAP} token increases the depth by one, while an
+     *         {@link CborToken#END} token decreases it again.
+     */
+    public int getDepth() {
+        return m_depth;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#FLOAT} token.
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#FLOAT} token.
+     */
+    public double getDoubleValue() {
+        expectToken(CborToken.FLOAT);
+        return m_doubleValue;
+    }
+
+    /**
+     * @return the number of elements (arrays) or entries (maps) of the current {@link CborToken#START_ARRAY} or
+     *         {@link CborToken#START_MAP} token, or <tt>-1</tt> in case of an indefinite-length container.
+     * @throws IllegalStateException in case the parser is not positioned at the start of an array or map.
+     */
+    public long getLength() {
+        if (m_token != CborToken.START_ARRAY && m_token != CborToken.START_MAP) {
+            throw new IllegalStateException("Not positioned at the start of an array or map!");
+        }
+        return m_longValue;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#INT} token.
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#INT} token.
+     */
+    public long getLongValue() {
+        expectToken(CborToken.INT);
+        return m_longValue;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#SIMPLE} token, for example, {@link CborConstants#TRUE} or
+     *         {@link CborConstants#NULL}, as value from [0..255].
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#SIMPLE} token.
+     */
+    public int getSimpleValue() {
+        expectToken(CborToken.SIMPLE);
+        return (int) m_longValue;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#TAG} token.
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#TAG} token.
+     */
+    public long getTag() {
+        expectToken(CborToken.TAG);
+        return m_longValue;
+    }
+
+    /**
+     * @return the value of the current {@link CborToken#TEXT} token, never <code>null</code>.
+     * @throws IllegalStateException in case the parser is not positioned at a {@link CborToken#TEXT} token.
+     */
+    public String getText() {
+        expectToken(CborToken.TEXT);
+        return m_text;
+    }
+
+    /**
+     * Advances this parser to the next token.
+     * 
+     * @return the next token, or <code>null</code> in case the end of the input is reached at the top level.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded data, or in case the CBOR-encoded data was
+     *         not well-formed.
+     */
+    public abstract CborToken nextToken() throws IOException;
+
+    /**
+     * Checks whether a break is allowed at the current position, which is only the case at the end of an
+     * indefinite-length array or map.
+     * 
+     * @throws IOException in case a break is not allowed at the current position.
+     */
+    protected final void checkBreak() throws IOException {
+        if (m_tagPending || m_depth == 0 || m_remaining[m_depth - 1] >= 0) {
+            throw new IOException("Unexpected break!");
+        }
+    }
+
+    /**
+     * Checks whether the end of the input is allowed at the current position, which is only the case between
+     * top-level data items.
+     * 
+     * @throws EOFException in case the end of the input is not allowed at the current position.
+     */
+    protected final void checkEndOfInput() throws EOFException {
+        if (m_tagPending || m_depth > 0) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Accounts for a data item that is about to be reported at the current nesting level, which is the tagged data
+     * item of a pending tag, if any.
+     */
+    protected final void countItem() {
+        m_tagPending = false;
+        if (m_depth > 0) {
+            int idx = m_depth - 1;
+            if (m_remaining[idx] > 0) {
+                m_remaining[idx]--;
+            }
+        }
+    }
+
+    /**
+     * Enters a new nesting level for an array or map.
+     * 
+     * @param remaining the number of items in the array or map, or <tt>-1</tt> for indefinite-length containers.
+     */
+    protected final void push(long remaining) {
+        if (m_depth == m_remaining.length) {
+            m_remaining = Arrays.copyOf(m_remaining, m_depth << 1);
+        }
+        m_remaining[m_depth++] = remaining;
+    }
+
+    /**
+     * Enters a new nesting level for a map with the given number of entries.
+     * 
+     * @param length the number of entries in the map, or <tt>-1</tt> for indefinite-length maps.
+     * @throws IOException in case the given length is too large to count all keys and values.
+     */
+    protected final void pushMap(long length) throws IOException {
+        if (length > (Long.MAX_VALUE >> 1)) {
+            throw new IOException("Map length too long!");
+        }
+        push((length < 0) ? -1 : length << 1);
+    }
+
+    private void expectToken(CborToken token) {
+        if (m_token != token) {
+            throw new IllegalStateException("Not positioned at a " + token + " token, but at: " + m_token);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborBlockWriter.*;
+import static jacob.CborConstants.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Provides a reader for block files written by {@link CborBlockWriter}, giving access to the blocks from arbitrary
+ * positions in the file.
+ * <p>
+ * To decode a file in parallel, it can be split into byte ranges, each of which is processed by its own reader. A
+ * block belongs to the range in which its header starts:
+ * </p>
+ *
+ * <pre>
+ * CborBlockReader reader = new CborBlockReader(channel);
+ * long end = Math.min(rangeEnd, reader.getBlocksEnd());
+ * long pos = reader.sync(rangeStart);
+ * while (pos &lt; end) {
+ *     CborBlockReader.Block block = reader.readBlock(pos);
+ *     for (ByteBuffer item : block.getItems()) {
+ *         // decode the data item...
+ *     }
+ *     pos = block.getNextPosition();
+ * }
+ * </pre>
+ * <p>
+ * Blocks are mapped into memory, so their data items are not copied. A reader is not thread-safe, but any number of
+ * readers can share the same channel.
+ * </p>
+ */
+public class CborBlockReader {
+    /** The size of the windows in which the file is scanned for block headers. */
+    private static final int SCAN_WINDOW_SIZE = 4 * 1024 * 1024;
+    /** The size of the windows in which headers are decoded. */
+    private static final int HEADER_WINDOW_SIZE = 64 * 1024;
+    private static final int CRC_CHUNK_SIZE = 8192;
+
+    /**
+     * Represents a single block of data items.
+     */
+    public static final class Block {
+        private final long m_position;
+        private final long m_nextPosition;
+        private final long m_itemCount;
+        private final CborSequence m_items;
+
+        Block(long position, long nextPosition, long itemCount, CborSequence items) {
+            m_position = position;
+            m_nextPosition = nextPosition;
+            m_itemCount = itemCount;
+            m_items = items;
+        }
+
+        /**
+         * @return the number of data items in this block, &gt;= 0.
+         */
+        public long getItemCount() {
+            return m_itemCount;
+        }
+
+        /**
+         * @return the data items of this block, never <code>null</code>.
+         */
+        public CborSequence getItems() {
+            return m_items;
+        }
+
+        /**
+         * @return the file position of the next block, or of the end of the blocks in case this is the last block.
+         */
+        public long getNextPosition() {
+            return m_nextPosition;
+        }
+
+        /**
+         * @return the file position of this block.
+         */
+        public long getPosition() {
+            return m_position;
+        }
+    }
+
+    private final FileChannel m_channel;
+    private final CborMappedFileDecoder m_decoder;
+    private final byte[] m_syncMarker;
+    // the leading bytes of every block header...
+    private final byte[] m_syncPattern;
+    private final long m_blocksStart;
+    private final long m_blocksEnd;
+
+    /**
+     * Creates a new {@link CborBlockReader} instance, reading the file header and trailer.
+     * 
+     * @param channel the file channel to read the block file from, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code>;
+     * @throws IOException in case of I/O problems reading the given channel, or in case it does not hold a complete
+     *         block file.
+     */
+    public CborBlockReader(FileChannel channel) throws IOException {
+        m_channel = channel;
+        m_decoder = new CborMappedFileDecoder(channel, HEADER_WINDOW_SIZE);
+
+        m_decoder.seek(0);
+        if (m_decoder.readTag() != FILE_TAG) {
+            throw new IOException("Not a block file!");
+        }
+        m_syncMarker = m_decoder.readByteString();
+        if (m_syncMarker.length != SYNC_MARKER_LENGTH) {
+            throw new IOException("Invalid sync marker length: " + m_syncMarker.length + "!");
+        }
+        m_blocksStart = m_decoder.getFilePosition();
+
+        long size = m_decoder.getFileSize();
+        if (size - m_blocksStart < TRAILER_LENGTH) {
+            throw new IOException("Block file has no trailer!");
+        }
+        m_decoder.seek(size - TRAILER_LENGTH);
+        m_blocksEnd = m_decoder.readInt64();
+        if (m_blocksEnd < m_blocksStart || m_blocksEnd > size - TRAILER_LENGTH) {
+            throw new IOException("Invalid block index position: " + m_blocksEnd + "!");
+        }
+
+        CborByteArrayEncoder pattern = new CborByteArrayEncoder(32);
+        pattern.writeTag(BLOCK_TAG);
+        pattern.writeArrayStart(4);
+        pattern.writeByteString(m_syncMarker);
+        m_syncPattern = pattern.toByteArray();
+    }
+
+    /**
+     * @return the file position right after the last block, which is the position of the block index.
+     */
+    public long getBlocksEnd() {
+        return m_blocksEnd;
+    }
+
+    /**
+     * @return a copy of the sync marker of the file, never <code>null</code>.
+     */
+    public byte[] getSyncMarker() {
+        return m_syncMarker.clone();
+    }
+
+    /**
+     * Reads the block starting at a given file position, verifying its checksum, if any.
+     * 
+     * @param position the file position of the block, as returned by {@link #sync(long)},
+     *        {@link Block#getNextPosition()} or {@link #readIndex()}.
+     * @return the read block, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the file, or in case no valid block starts at the given
+     *         position.
+     */
+    public Block readBlock(long position) throws IOException {
+        if (position < m_blocksStart || position >= m_blocksEnd) {
+            throw new IOException("No block at position " + position + "!");
+        }
+        m_decoder.seek(position);
+        if (m_decoder.readTag() != BLOCK_TAG || m_decoder.readArrayLength() != 4
+            || !Arrays.equals(m_syncMarker, m_decoder.readByteString())) {
+            throw new IOException("No block at position " + position + "!");
+        }
+        long itemCount = m_decoder.readInt();
+        long length = m_decoder.readInt();
+        long checksum = -1L;
+        if (m_decoder.peekType().getMajorType() == TYPE_FLOAT_SIMPLE) {
+            m_decoder.readNull();
+        } else {
+            checksum = m_decoder.readInt();
+        }
+
+        long start = m_decoder.getFilePosition();
+        if (itemCount < 0 || length < 0 || length > m_blocksEnd - start || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid block header at position " + position + "!");
+        }
+        ByteBuffer items = m_channel.map(MapMode.READ_ONLY, start, length);
+        if (checksum >= 0 && checksum != crc(items)) {
+            throw new IOException("Checksum mismatch in block at position " + position + "!");
+        }
+        return new Block(position, start + length, itemCount, new CborSequence(items));
+    }
+
+    /**
+     * Reads the block index from the end of the file.
+     * 
+     * @return the file positions of all blocks, in order, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the file, or in case the block index is corrupt.
+     */
+    public long[] readIndex() throws IOException {
+        m_decoder.seek(m_blocksEnd);
+        if (m_decoder.readTag() != INDEX_TAG) {
+            throw new IOException("No block index at position " + m_blocksEnd + "!");
+        }
+        long count = m_decoder.readArrayLength();
+        if (count < 0 || count > (m_blocksEnd - m_blocksStart) / m_syncPattern.length) {
+            throw new IOException("Invalid block count: " + count + "!");
+        }
+        long[] result = new long[(int) count];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = m_decoder.readInt();
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first block that starts at or after a given file position, by scanning for the sync marker.
+     * 
+     * @param position the file position to start scanning at, &gt;= 0.
+     * @return the file position of the found block, or {@link #getBlocksEnd()} in case no block starts at or after the
+     *         given position.
+     * @throws IOException in case of I/O problems reading the file.
+     */
+    public long sync(long position) throws IOException {
+        byte[] pattern = m_syncPattern;
+        long pos = Math.max(position, m_blocksStart);
+        while (m_blocksEnd - pos >= pattern.length) {
+            int len = (int) Math.min(m_blocksEnd - pos, SCAN_WINDOW_SIZE + pattern.length - 1);
+            ByteBuffer window = m_channel.map(MapMode.READ_ONLY, pos, len);
+            int last = len - pattern.length;
+            for (int i = 0; i <= last; i++) {
+                if (window.get(i) == pattern[0] && matches(window, i, pattern)) {
+                    return pos + i;
+                }
+            }
+            pos += last + 1;
+        }
+        return m_blocksEnd;
+    }
+
+    private static long crc(ByteBuffer buf) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[CRC_CHUNK_SIZE];
+        ByteBuffer src = buf.duplicate();
+        while (src.hasRemaining()) {
+            int n = Math.min(chunk.length, src.remaining());
+            src.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    private static boolean matches(ByteBuffer buf, int off, byte[] pattern) {
+        for (int i = 1; i < pattern.length; i++) {
+            if (buf.get(off + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Provides a writer for splittable block files, which store a CBOR sequence of data items in blocks that can be found
+ * from any position in the file.
+ * <p>
+ * A block file is itself a CBOR sequence, consisting of:
+ * </p>
+ * <ol>
+ * <li>a file header, being a byte string with a random sync marker of {@value #SYNC_MARKER_LENGTH} bytes, tagged with
+ * {@link #FILE_TAG};</li>
+ * <li>zero or more blocks, each consisting of a block header followed by the data items of the block. The block header
+ * is an array, tagged with {@link #BLOCK_TAG}, holding the sync marker, the number of data items, their total length in
+ * bytes, and either the CRC-32 of the data items or <code>null</code>;</li>
+ * <li>a block index, being an array of the file positions of all blocks, tagged with {@link #INDEX_TAG};</li>
+ * <li>a trailer, being the file position of the block index as unsigned integer of 8 bytes.</li>
+ * </ol>
+ * <p>
+ * As every block header starts with the same bytes, a reader can start at any position and find the next block by
+ * scanning for these bytes, see {@link CborBlockReader#sync(long)}, which allows a file to be split into byte ranges
+ * that are decoded in parallel. The block index allows blocks to be accessed randomly without scanning.
+ * </p>
+ */
+public class CborBlockWriter implements Closeable {
+    /** The tag of the file header. */
+    public static final long FILE_TAG = 0x4a430001L;
+    /** The tag of each block header. */
+    public static final long BLOCK_TAG = 0x4a430002L;
+    /** The tag of the block index. */
+    public static final long INDEX_TAG = 0x4a430003L;
+    /** The length of the sync marker, in bytes. */
+    public static final int SYNC_MARKER_LENGTH = 16;
+    /** The default number of data items per block. */
+    public static final int DEFAULT_ITEMS_PER_BLOCK = 1000;
+    /** The length of the trailer, in bytes. */
+    public static final int TRAILER_LENGTH = 9;
+
+    /**
+     * Updates a checksum with all written bytes, discarding them.
+     */
+    private static class ChecksumStream extends OutputStream {
+        final CRC32 m_crc = new CRC32();
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            m_crc.update(b, off, len);
+        }
+
+        @Override
+        public void write(int b) {
+            m_crc.update(b);
+        }
+    }
+
+    private final OutputStream m_out;
+    private final int m_itemsPerBlock;
+    private final boolean m_checksum;
+    private final byte[] m_syncMarker;
+    private final CborByteArrayEncoder m_items;
+    private final CborByteArrayEncoder m_header;
+    private long[] m_blockPositions;
+    private int m_blockCount;
+    private int m_itemCount;
+    private long m_position;
+    private boolean m_closed;
+
+    /**
+     * Creates a new {@link CborBlockWriter} instance with a default number of data items per block and checksums.
+     * 
+     * @param out the output stream to write the block file to, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given output stream was <code>null</code>;
+     * @throws IOException in case of I/O problems writing the file header.
+     */
+    public CborBlockWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_ITEMS_PER_BLOCK, true /* checksum */);
+    }
+
+    /**
+     * Creates a new {@link CborBlockWriter} instance, and writes the file header.
+     * 
+     * @param out the output stream to write the block file to, cannot be <code>null</code>;
+     * @param itemsPerBlock the number of data items after which a block is written, &gt; 0;
+     * @param checksum <code>true</code> to store the CRC-32 of the data items of each block, <code>false</code> to
+     *        omit it.
+     * @throws IllegalArgumentException in case the given output stream was <code>null</code> or the given number of
+     *         data items was not positive;
+     * @throws IOException in case of I/O problems writing the file header.
+     */
+    public CborBlockWriter(OutputStream out, int itemsPerBlock, boolean checksum) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("OutputStream cannot be null!");
+        }
+        if (itemsPerBlock < 1) {
+            throw new IllegalArgumentException("Invalid number of items per block!");
+        }
+        m_out = out;
+        m_itemsPerBlock = itemsPerBlock;
+        m_checksum = checksum;
+        m_syncMarker = new byte[SYNC_MARKER_LENGTH];
+        new SecureRandom().nextBytes(m_syncMarker);
+        m_items = new CborByteArrayEncoder();
+        m_header = new CborByteArrayEncoder(64);
+        m_blockPositions = new long[16];
+
+        m_header.writeTag(FILE_TAG);
+        m_header.writeByteString(m_syncMarker);
+        writeHeader();
+    }
+
+    /**
+     * Writes the pending data items as last block, followed by the block index and trailer, and closes the underlying
+     * output stream.
+     * 
+     * @throws IOException in case of I/O problems writing to the underlying output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        writeBlock();
+
+        long indexPosition = m_position;
+        m_header.writeTag(INDEX_TAG);
+        m_header.writeArrayStart(m_blockCount);
+        for (int i = 0; i < m_blockCount; i++) {
+            m_header.writeInt(m_blockPositions[i]);
+        }
+        m_header.writeInt64(indexPosition);
+        writeHeader();
+
+        m_closed = true;
+        m_out.close();
+    }
+
+    /**
+     * Marks the data item written to {@link #getEncoder()} as complete, and writes a block in case it holds the
+     * configured number of data items.
+     * 
+     * @throws IOException in case of I/O problems writing to the underlying output stream.
+     */
+    public void endItem() throws IOException {
+        if (++m_itemCount >= m_itemsPerBlock) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the pending data items as block, regardless of their number, and flushes the underlying output stream.
+     * 
+     * @throws IOException in case of I/O problems writing to the underlying output stream.
+     */
+    public void flush() throws IOException {
+        writeBlock();
+        m_out.flush();
+    }
+
+    /**
+     * Returns the encoder to write data items to. Each data item should be followed by a call to {@link #endItem()}.
+     * 
+     * @return the encoder, never <code>null</code>.
+     */
+    public CborEncoder getEncoder() {
+        return m_items;
+    }
+
+    /**
+     * @return the number of bytes written to the underlying output stream so far, &gt;= 0.
+     */
+    public long getPosition() {
+        return m_position;
+    }
+
+    /**
+     * @return a copy of the sync marker of this file, never <code>null</code>.
+     */
+    public byte[] getSyncMarker() {
+        return m_syncMarker.clone();
+    }
+
+    /**
+     * Writes the data items written since the last block as block, if any.
+     */
+    private void writeBlock() throws IOException {
+        if (m_itemCount == 0) {
+            return;
+        }
+        if (m_blockCount == m_blockPositions.length) {
+            m_blockPositions = Arrays.copyOf(m_blockPositions, m_blockCount << 1);
+        }
+        m_blockPositions[m_blockCount++] = m_position;
+
+        m_header.writeTag(BLOCK_TAG);
+        m_header.writeArrayStart(4);
+        m_header.writeByteString(m_syncMarker);
+        m_header.writeInt(m_itemCount);
+        m_header.writeInt(m_items.size());
+        if (m_checksum) {
+            ChecksumStream crc = new ChecksumStream();
+            m_items.writeTo(crc);
+            m_header.writeInt(crc.m_crc.getValue());
+        } else {
+            m_header.writeNull();
+        }
+        writeHeader();
+
+        m_items.writeTo(m_out);
+        m_position += m_items.size();
+        m_items.reset();
+        m_itemCount = 0;
+    }
+
+    private void writeHeader() throws IOException {
+        m_header.writeTo(m_out);
+        m_position += m_header.size();
+        m_header.reset();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Provides a decoder capable of handling CBOR encoded data from an {@link InputStream} using an internal read buffer.
+ * <p>
+ * Headers and small payloads are served from the internal buffer, which is refilled from the input stream in bulk.
+ * Payloads that are at least as large as the internal buffer are read directly from the input stream. This makes this
+ * decoder suitable for unbuffered input streams, such as file or socket streams, without the need to wrap them in a
+ * {@link java.io.BufferedInputStream} first.
+ * </p>
+ * <p>
+ * Note that this decoder reads ahead, so the given input stream will be positioned beyond the last decoded value. The
+ * number of bytes actually decoded is returned by {@link #getStreamPosition()}.
+ * </p>
+ */
+public class CborBufferedDecoder extends CborByteArrayDecoder {
+    /** The default size of the read buffer, in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final InputStream m_in;
+    // the offset in the input stream of the first byte of the read buffer...
+    private long m_base;
+
+    /**
+     * Creates a new {@link CborBufferedDecoder} instance with a default buffer size.
+     * 
+     * @param is the actual input stream to read the CBOR-encoded data from, cannot be <code>null</code>.
+     */
+    public CborBufferedDecoder(InputStream is) {
+        this(is, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new {@link CborBufferedDecoder} instance.
+     * 
+     * @param is the actual input stream to read the CBOR-encoded data from, cannot be <code>null</code>;
+     * @param bufferSize the size of the read buffer, in bytes, should be &gt;= 9.
+     * @throws IllegalArgumentException in case the given input stream was <code>null</code> or the given buffer size
+     *         was too small.
+     */
+    public CborBufferedDecoder(InputStream is, int bufferSize) {
+        super(new byte[Math.max(0, bufferSize)], 0, 0);
+        if (is == null) {
+            throw new IllegalArgumentException("InputStream cannot be null!");
+        }
+        if (bufferSize < 9) {
+            throw new IllegalArgumentException("Buffer size should be at least 9 bytes!");
+        }
+        m_in = is;
+    }
+
+    /**
+     * Not supported, as positions in the internal read buffer are meaningless to callers.
+     * 
+     * @throws UnsupportedOperationException always, use {@link #getStreamPosition()} instead.
+     */
+    @Override
+    public int getPosition() {
+        throw new UnsupportedOperationException("Use getStreamPosition() instead!");
+    }
+
+    /**
+     * @return the number of bytes consumed from the input stream since this decoder was created, excluding the bytes
+     *         that are read ahead, &gt;= 0.
+     */
+    public long getStreamPosition() {
+        return m_base + m_pos;
+    }
+
+    /**
+     * Not supported, as the number of bytes left in the internal read buffer does not indicate the end of the input.
+     * 
+     * @throws UnsupportedOperationException always, use {@link #peekType()} to detect the end of the input.
+     */
+    @Override
+    public int remaining() {
+        throw new UnsupportedOperationException("Use peekType() instead!");
+    }
+
+    @Override
+    protected boolean fill(int n) throws IOException {
+        byte[] buf = m_buf;
+        int avail = m_limit - m_pos;
+        if (n > buf.length) {
+            buf = Arrays.copyOf(buf, n);
+        }
+        // move the unread bytes to the start of the buffer...
+        if (avail > 0) {
+            System.arraycopy(m_buf, m_pos, buf, 0, avail);
+        }
+        m_buf = buf;
+        m_base += m_pos;
+        m_pos = 0;
+        m_limit = avail;
+
+        while (m_limit < n) {
+            int count = m_in.read(buf, m_limit, buf.length - m_limit);
+            if (count < 0) {
+                return false;
+            }
+            m_limit += count;
+        }
+        return true;
+    }
+
+    @Override
+    protected ByteBuffer readBuffer(int len) throws IOException {
+        // the internal buffer is reused, so the bytes should be copied...
+        byte[] buf = new byte[len];
+        readFully(buf, 0, len);
+        return ByteBuffer.wrap(buf);
+    }
+
+    @Override
+    protected void readFully(byte[] buf, int off, int len) throws IOException {
+        int avail = m_limit - m_pos;
+        if (len <= avail) {
+            System.arraycopy(m_buf, m_pos, buf, off, len);
+            m_pos += len;
+            return;
+        }
+
+        // drain the buffer first...
+        System.arraycopy(m_buf, m_pos, buf, off, avail);
+        m_pos = m_limit;
+        off += avail;
+        len -= avail;
+
+        if (len < m_buf.length) {
+            // small remainder, read it through the buffer...
+            if (!fill(len)) {
+                throw new EOFException();
+            }
+            System.arraycopy(m_buf, 0, buf, off, len);
+            m_pos = len;
+            return;
+        }
+
+        // large remainder, bypass the buffer altogether...
+        while (len > 0) {
+            int count = m_in.read(buf, off, len);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            m_base += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    @Override
+    protected String readUtf8String(int len) throws IOException {
+        if (len <= m_buf.length) {
+            // decode the string in place...
+            return super.readUtf8String(len);
+        }
+        byte[] buf = new byte[len];
+        readFully(buf, 0, len);
+        return decodeUtf8(buf, 0, len);
+    }
+
+    @Override
+    protected void skip(long n) throws IOException {
+        int avail = m_limit - m_pos;
+        if (n <= avail) {
+            m_pos += (int) n;
+            return;
+        }
+
+        // discard the buffer contents, and skip the remainder in the input stream itself...
+        m_pos = m_limit;
+        n -= avail;
+        while (n > 0) {
+            long count = m_in.skip(n);
+            if (count <= 0) {
+                // the stream might not support skipping, or is at its end...
+                if (!fill(1)) {
+                    throw new EOFException();
+                }
+                count = Math.min(n, m_limit - m_pos);
+                m_pos += (int) count;
+            } else {
+                m_base += count;
+            }
+            n -= count;
+        }
+    }
+}
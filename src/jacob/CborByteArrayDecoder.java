@@ -0,0 +1,187 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides a decoder capable of handling CBOR encoded data from a byte array.
+ * <p>
+ * Unlike {@link CborDecoder}, this decoder does not use any stream, but reads directly from the given array using
+ * a position index. Peeking at the upcoming type is therefore nothing more than a single array access.
+ * </p>
+ */
+public class CborByteArrayDecoder extends CborDecoder {
+    protected byte[] m_buf;
+    protected int m_pos;
+    protected int m_limit;
+
+    /**
+     * Creates a new {@link CborByteArrayDecoder} instance.
+     * 
+     * @param buf the byte array to read the CBOR-encoded data from, cannot be <code>null</code>.
+     */
+    public CborByteArrayDecoder(byte[] buf) {
+        this(buf, 0, (buf == null) ? 0 : buf.length);
+    }
+
+    /**
+     * Creates a new {@link CborByteArrayDecoder} instance.
+     * 
+     * @param buf the byte array to read the CBOR-encoded data from, cannot be <code>null</code>;
+     * @param off the offset in the given array of the first byte to read, &gt;= 0;
+     * @param len the number of bytes that can be read from the given array, &gt;= 0.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code>, or the given offset and length
+     *         did not denote a valid range in the given buffer.
+     */
+    public CborByteArrayDecoder(byte[] buf, int off, int len) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Buffer cannot be null!");
+        }
+        if (off < 0 || len < 0 || len > buf.length - off) {
+            throw new IllegalArgumentException("Invalid offset and/or length!");
+        }
+        m_buf = buf;
+        m_pos = off;
+        m_limit = off + len;
+    }
+
+    /**
+     * @return the position in the underlying byte array of the next byte to read.
+     */
+    public int getPosition() {
+        return m_pos;
+    }
+
+    /**
+     * @return the number of bytes that are left to read, &gt;= 0.
+     */
+    public int remaining() {
+        return m_limit - m_pos;
+    }
+
+    /**
+     * Called when less than the given number of bytes are left to read, allowing subclasses to provide more data.
+     * <p>
+     * Implementations can replace {@link #m_buf} and adjust {@link #m_pos} and {@link #m_limit} as long as the bytes
+     * between the position and limit remain unread. This implementation does nothing.
+     * </p>
+     * 
+     * @param n the number of bytes that should be available to read, &gt; 0.
+     * @return <code>true</code> if at least the given number of bytes are available after this call,
+     *         <code>false</code> otherwise.
+     * @throws IOException in case of I/O problems obtaining more data.
+     */
+    protected boolean fill(int n) throws IOException {
+        return false;
+    }
+
+    @Override
+    protected int peek() throws IOException {
+        if (m_pos < m_limit || fill(1)) {
+            return m_buf[m_pos] & 0xff;
+        }
+        return -1;
+    }
+
+    @Override
+    protected int read() throws IOException {
+        if (m_pos < m_limit || fill(1)) {
+            int pos = m_pos;
+            m_pos = pos + 1;
+            return m_buf[pos] & 0xff;
+        }
+        return -1;
+    }
+
+    @Override
+    protected ByteBuffer readBuffer(int len) throws IOException {
+        int pos = require(len);
+        m_pos = pos + len;
+        return ByteBuffer.wrap(m_buf, pos, len).slice();
+    }
+
+    @Override
+    protected void readFully(byte[] buf, int off, int len) throws IOException {
+        int pos = require(len);
+        System.arraycopy(m_buf, pos, buf, off, len);
+        m_pos = pos + len;
+    }
+
+    @Override
+    protected int readUInt16() throws IOException {
+        int pos = require(2);
+        byte[] buf = m_buf;
+        m_pos = pos + 2;
+        return (buf[pos] & 0xFF) << 8 | (buf[pos + 1] & 0xFF);
+    }
+
+    @Override
+    protected long readUInt32() throws IOException {
+        int pos = require(4);
+        byte[] buf = m_buf;
+        m_pos = pos + 4;
+        return ((buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16 | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF)) & 0xffffffffL;
+    }
+
+    @Override
+    protected long readUInt64() throws IOException {
+        int pos = require(8);
+        byte[] buf = m_buf;
+        m_pos = pos + 8;
+        return (buf[pos] & 0xFFL) << 56 | (buf[pos + 1] & 0xFFL) << 48 | (buf[pos + 2] & 0xFFL) << 40 | (buf[pos + 3] & 0xFFL) << 32 | //
+            (buf[pos + 4] & 0xFFL) << 24 | (buf[pos + 5] & 0xFFL) << 16 | (buf[pos + 6] & 0xFFL) << 8 | (buf[pos + 7] & 0xFFL);
+    }
+
+    @Override
+    protected int readUInt8() throws IOException {
+        int pos = require(1);
+        m_pos = pos + 1;
+        return m_buf[pos] & 0xff;
+    }
+
+    @Override
+    protected String readUtf8String(int len) throws IOException {
+        int pos = require(len);
+        String result = decodeUtf8(m_buf, pos, len);
+        m_pos = pos + len;
+        return result;
+    }
+
+    @Override
+    protected void skip(long n) throws IOException {
+        if (n > m_limit - m_pos) {
+            if (n > Integer.MAX_VALUE) {
+                throw new EOFException();
+            }
+            require((int) n);
+        }
+        m_pos += (int) n;
+    }
+
+    /**
+     * Ensures that at least the given number of bytes can be read from the current position.
+     * 
+     * @param n the number of bytes to read, &gt;= 0.
+     * @return the current position.
+     * @throws EOFException in case less than the given number of bytes are left;
+     * @throws IOException in case of I/O problems obtaining more data.
+     */
+    protected final int require(int n) throws IOException {
+        int pos = m_pos;
+        if (m_limit - pos < n) {
+            if (!fill(n)) {
+                throw new EOFException();
+            }
+            pos = m_pos;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,496 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Provides an encoder capable of encoding data into CBOR format to a growable, internal byte array.
+ * <p>
+ * Unlike {@link CborEncoder}, which writes each encoded byte separately to its output stream, this encoder stores
+ * headers and payloads directly into its internal buffer. The encoded data can be obtained by {@link #toByteArray()}
+ * or written in a single call to an output stream by {@link #writeTo(OutputStream)}.
+ * </p>
+ * <p>
+ * As the encoded data is kept in memory, this encoder can also write arrays and maps whose size is not known up front,
+ * see {@link #beginArray()}, {@link #beginMap()} and {@link #end()}. Their items are counted while being written, after
+ * which the minimal definite-length header is filled in.
+ * </p>
+ */
+public class CborByteArrayEncoder extends CborEncoder {
+    private static final int DEFAULT_CAPACITY = 256;
+    /** The space reserved for the header of a deferred-length container, enough for any count up to 2^32 - 1. */
+    private static final int RESERVED_HEAD_LENGTH = 5;
+
+    // the kinds of containers that are tracked while a deferred-length container is open...
+    private static final int DEFERRED_ARRAY = 0;
+    private static final int DEFERRED_MAP = 1;
+    private static final int DEFINITE = 2;
+    private static final int INDEFINITE = 3;
+    private static final int INDEFINITE_STRING = 4;
+
+    private byte[] m_buf;
+    private int m_count;
+    // the stack of open containers, only maintained while a deferred-length container is open...
+    private int[] m_frameKinds;
+    private int[] m_framePositions;
+    private long[] m_frameValues;
+    private int m_depth;
+    // the encoded lengths of the strings passed to writeTextArray, reused between calls...
+    private long[] m_textLengths;
+
+    /**
+     * Creates a new {@link CborByteArrayEncoder} instance with a default initial capacity.
+     */
+    public CborByteArrayEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new {@link CborByteArrayEncoder} instance.
+     * 
+     * @param initialCapacity the initial capacity of the internal buffer, in bytes, should be &gt;= 0.
+     * @throws IllegalArgumentException in case the given capacity was negative.
+     */
+    public CborByteArrayEncoder(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Invalid initial capacity!");
+        }
+        m_buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Starts an array whose length is determined by the number of items written until the matching call to
+     * {@link #end()}.
+     * <p>
+     * Room for a definite-length header is reserved in the internal buffer. Upon {@link #end()}, the minimal header is
+     * written in this reserved room, moving the encoded items at most once in case the header is shorter than the
+     * reserved room. Arrays and maps started this way can be nested arbitrarily, and can contain all other kinds of
+     * items.
+     * </p>
+     * 
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output.
+     */
+    public void beginArray() throws IOException {
+        begin(DEFERRED_ARRAY);
+    }
+
+    /**
+     * Starts a map whose length is determined by the number of keys and values written until the matching call to
+     * {@link #end()}.
+     * 
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output.
+     * @see #beginArray()
+     */
+    public void beginMap() throws IOException {
+        begin(DEFERRED_MAP);
+    }
+
+    /**
+     * Ends the array or map that was last started by {@link #beginArray()} or {@link #beginMap()}, and writes its
+     * definite-length header.
+     * 
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output.
+     * @throws IllegalStateException in case no array or map was started, in case an item written after it was started
+     *         is not yet complete, or in case a map contains a key without a value.
+     */
+    public void end() throws IOException {
+        int d = m_depth - 1;
+        if (d < 0) {
+            throw new IllegalStateException("No array or map started!");
+        }
+        int kind = m_frameKinds[d];
+        if (kind != DEFERRED_ARRAY && kind != DEFERRED_MAP) {
+            throw new IllegalStateException("Nested item not yet completed!");
+        }
+        long count = m_frameValues[d];
+        int mt = TYPE_ARRAY << 5;
+        if (kind == DEFERRED_MAP) {
+            if ((count & 1) != 0) {
+                throw new IllegalStateException("Map contains a key without a value!");
+            }
+            count >>= 1;
+            mt = TYPE_MAP << 5;
+        }
+
+        int pos = m_framePositions[d];
+        int shift = RESERVED_HEAD_LENGTH - headLength(count);
+        if (shift > 0) {
+            int body = pos + RESERVED_HEAD_LENGTH;
+            System.arraycopy(m_buf, body, m_buf, body - shift, m_count - body);
+            m_count -= shift;
+        }
+        putHead(m_buf, pos, mt, count);
+
+        m_depth = d;
+        if (d > 0) {
+            itemCompleted();
+        }
+    }
+
+    /**
+     * Discards all encoded data, allowing the internal buffer to be reused. Any array or map that was started by
+     * {@link #beginArray()} or {@link #beginMap()} is discarded as well.
+     */
+    public void reset() {
+        m_count = 0;
+        m_depth = 0;
+    }
+
+    /**
+     * @return the number of encoded bytes, &gt;= 0.
+     */
+    public int size() {
+        return m_count;
+    }
+
+    /**
+     * @return a copy of the encoded bytes, never <code>null</code>.
+     * @throws IllegalStateException in case an array or map started by {@link #beginArray()} or {@link #beginMap()} is
+     *         not yet ended.
+     */
+    public byte[] toByteArray() {
+        checkNoDeferredContainer();
+        return Arrays.copyOf(m_buf, m_count);
+    }
+
+    @Override
+    public void writeByteStringArray(byte[][] values, int off, int len) throws IOException {
+        // size the whole array first, which also checks the range...
+        int pos = ensureCapacity(checkSize(CborSize.sizeOfByteStringArray(values, off, len)));
+        int end = off + len;
+        byte[] buf = m_buf;
+
+        pos = putHead(buf, pos, TYPE_ARRAY << 5, len);
+        for (int i = off; i < end; i++) {
+            byte[] value = values[i];
+            int n = (value == null) ? 0 : value.length;
+            pos = putHead(buf, pos, TYPE_BYTE_STRING << 5, n);
+            if (n > 0) {
+                System.arraycopy(value, 0, buf, pos, n);
+                pos += n;
+            }
+        }
+        m_count = pos;
+        if (m_depth > 0) {
+            itemCompleted();
+        }
+    }
+
+    @Override
+    public void writeDoubleArray(double[] values, int off, int len) throws IOException {
+        if (isShortestFloatingPoint()) {
+            super.writeDoubleArray(values, off, len);
+            return;
+        }
+        checkRange(values.length, off, len);
+
+        int pos = ensureCapacity(checkSize(headLength(len) + 9L * len));
+        byte[] buf = m_buf;
+        pos = putHead(buf, pos, TYPE_ARRAY << 5, len);
+        for (int i = off, end = off + len; i < end; i++) {
+            buf[pos] = (byte) ((TYPE_FLOAT_SIMPLE << 5) | DOUBLE_PRECISION_FLOAT);
+            pos = putLong(buf, pos + 1, Double.doubleToRawLongBits(values[i]));
+        }
+        m_count = pos;
+        if (m_depth > 0) {
+            itemCompleted();
+        }
+    }
+
+    @Override
+    public void writeIntArray(long[] values, int off, int len) throws IOException {
+        // size the whole array first, which also checks the range...
+        int pos = ensureCapacity(checkSize(CborSize.sizeOfIntArray(values, off, len)));
+        int end = off + len;
+        byte[] buf = m_buf;
+
+        pos = putHead(buf, pos, TYPE_ARRAY << 5, len);
+        for (int i = off; i < end; i++) {
+            long value = values[i];
+            long sign = value >> 63;
+            pos = putHead(buf, pos, (int) (sign & (TYPE_NEGATIVE_INTEGER << 5)), sign ^ value);
+        }
+        m_count = pos;
+        if (m_depth > 0) {
+            itemCompleted();
+        }
+    }
+
+    @Override
+    public void writeTextArray(String[] values, int off, int len) throws IOException {
+        checkRange(values.length, off, len);
+        long[] lengths = m_textLengths;
+        if (lengths == null || lengths.length < len) {
+            m_textLengths = lengths = new long[Math.max(len, 16)];
+        }
+        // determine the encoded length of each string only once, to size the whole array and write the heads...
+        long size = headLength(len);
+        for (int i = 0; i < len; i++) {
+            String value = values[off + i];
+            long utf8Len = (value == null) ? 0 : CborUtf8.encodedLength(value, 0, value.length());
+            lengths[i] = utf8Len;
+            size += headLength(utf8Len) + utf8Len;
+        }
+        int pos = ensureCapacity(checkSize(size));
+        byte[] buf = m_buf;
+
+        pos = putHead(buf, pos, TYPE_ARRAY << 5, len);
+        for (int i = 0; i < len; i++) {
+            long utf8Len = lengths[i];
+            pos = putHead(buf, pos, TYPE_TEXT_STRING << 5, utf8Len);
+            if (utf8Len > 0) {
+                String value = values[off + i];
+                pos = CborUtf8.encode(value, 0, value.length(), buf, pos);
+            }
+        }
+        m_count = pos;
+        if (m_depth > 0) {
+            itemCompleted();
+        }
+    }
+
+    /**
+     * Writes all encoded bytes in a single call to the given output stream.
+     * 
+     * @param os the output stream to write the encoded bytes to, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems writing to the given output stream.
+     * @throws IllegalStateException in case an array or map started by {@link #beginArray()} or {@link #beginMap()} is
+     *         not yet ended.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        checkNoDeferredContainer();
+        os.write(m_buf, 0, m_count);
+    }
+
+    /**
+     * Ensures the internal buffer can hold at least the given number of additional bytes.
+     * 
+     * @param n the number of bytes that are about to be written, &gt;= 0.
+     * @return the current write position in the (possibly reallocated) buffer.
+     */
+    protected final int ensureCapacity(int n) {
+        int count = m_count;
+        int required = count + n;
+        if (required > m_buf.length) {
+            if (required < 0) {
+                throw new OutOfMemoryError("Encoded data too large!");
+            }
+            int newCapacity = Math.max(required, m_buf.length << 1);
+            m_buf = Arrays.copyOf(m_buf, (newCapacity < 0) ? Integer.MAX_VALUE : newCapacity);
+        }
+        return count;
+    }
+
+    @Override
+    protected void write(int b) throws IOException {
+        int pos = ensureCapacity(1);
+        m_buf[pos] = (byte) b;
+        m_count = pos + 1;
+        if (m_depth > 0) {
+            headWritten(b & 0xff, b & 0x1f);
+        }
+    }
+
+    @Override
+    protected void write(byte[] b, int off, int len) throws IOException {
+        int pos = ensureCapacity(len);
+        System.arraycopy(b, off, m_buf, pos, len);
+        m_count = pos + len;
+    }
+
+    @Override
+    protected void writeElements(Buffer values, int elementSize, ByteOrder order) throws IOException {
+        long len = (long) values.remaining() * elementSize;
+        if (len > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Encoded data too large!");
+        }
+        int pos = ensureCapacity((int) len);
+        CborTypedArrays.put(ByteBuffer.wrap(m_buf, pos, (int) len).order(order), values);
+        m_count = pos + (int) len;
+    }
+
+    @Override
+    protected void writeUInt16(int mt, int value) throws IOException {
+        int pos = ensureCapacity(3);
+        byte[] buf = m_buf;
+        buf[pos] = (byte) (mt | TWO_BYTES);
+        buf[pos + 1] = (byte) (value >> 8);
+        buf[pos + 2] = (byte) value;
+        m_count = pos + 3;
+        if (m_depth > 0) {
+            headWritten(mt | TWO_BYTES, value & 0xffff);
+        }
+    }
+
+    @Override
+    protected void writeUInt32(int mt, int value) throws IOException {
+        int pos = ensureCapacity(5);
+        byte[] buf = m_buf;
+        buf[pos] = (byte) (mt | FOUR_BYTES);
+        buf[pos + 1] = (byte) (value >> 24);
+        buf[pos + 2] = (byte) (value >> 16);
+        buf[pos + 3] = (byte) (value >> 8);
+        buf[pos + 4] = (byte) value;
+        m_count = pos + 5;
+        if (m_depth > 0) {
+            headWritten(mt | FOUR_BYTES, value & 0xffffffffL);
+        }
+    }
+
+    @Override
+    protected void writeUInt64(int mt, long value) throws IOException {
+        int pos = ensureCapacity(9);
+        byte[] buf = m_buf;
+        buf[pos] = (byte) (mt | EIGHT_BYTES);
+        buf[pos + 1] = (byte) (value >> 56);
+        buf[pos + 2] = (byte) (value >> 48);
+        buf[pos + 3] = (byte) (value >> 40);
+        buf[pos + 4] = (byte) (value >> 32);
+        buf[pos + 5] = (byte) (value >> 24);
+        buf[pos + 6] = (byte) (value >> 16);
+        buf[pos + 7] = (byte) (value >> 8);
+        buf[pos + 8] = (byte) value;
+        m_count = pos + 9;
+        if (m_depth > 0) {
+            headWritten(mt | EIGHT_BYTES, value);
+        }
+    }
+
+    @Override
+    protected void writeUInt8(int mt, int value) throws IOException {
+        int pos = ensureCapacity(2);
+        byte[] buf = m_buf;
+        buf[pos] = (byte) (mt | ONE_BYTE);
+        buf[pos + 1] = (byte) value;
+        m_count = pos + 2;
+        if (m_depth > 0) {
+            headWritten(mt | ONE_BYTE, value & 0xff);
+        }
+    }
+
+    @Override
+    protected void writeUtf8String(CharSequence value, int off, int len) throws IOException {
+        long utf8Len = CborUtf8.encodedLength(value, off, len);
+        if (utf8Len > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Encoded data too large!");
+        }
+        writeType(TYPE_TEXT_STRING, utf8Len);
+
+        int pos = ensureCapacity((int) utf8Len);
+        m_count = CborUtf8.encode(value, off, len, m_buf, pos);
+    }
+
+    private static int checkSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Encoded data too large!");
+        }
+        return (int) size;
+    }
+
+    private void begin(int kind) {
+        int pos = ensureCapacity(RESERVED_HEAD_LENGTH);
+        m_count = pos + RESERVED_HEAD_LENGTH;
+        push(kind, 0);
+        m_framePositions[m_depth - 1] = pos;
+    }
+
+    private void checkNoDeferredContainer() {
+        if (m_depth > 0) {
+            throw new IllegalStateException("Array or map not yet ended!");
+        }
+    }
+
+    /**
+     * Keeps track of the open containers after a header has been written inside a deferred-length container.
+     * 
+     * @param ib the initial byte of the written header;
+     * @param value the value or length of the written header.
+     */
+    private void headWritten(int ib, long value) {
+        int kind = m_frameKinds[m_depth - 1];
+        if (ib == ((TYPE_FLOAT_SIMPLE << 5) | BREAK)) {
+            if (kind != INDEFINITE && kind != INDEFINITE_STRING) {
+                throw new IllegalStateException("Break without indefinite-length item!");
+            }
+            m_depth--;
+            itemCompleted();
+            return;
+        }
+        if (kind == INDEFINITE_STRING) {
+            // chunks of an indefinite-length string are not items by themselves...
+            return;
+        }
+
+        int mt = ib >>> 5;
+        boolean indefinite = (ib & 0x1f) == BREAK;
+        if (mt == TYPE_ARRAY || mt == TYPE_MAP) {
+            if (indefinite) {
+                push(INDEFINITE, 0);
+            } else if (value == 0) {
+                itemCompleted();
+            } else {
+                push(DEFINITE, (mt == TYPE_MAP) ? 2 * value : value);
+            }
+        } else if (mt == TYPE_BYTE_STRING || mt == TYPE_TEXT_STRING) {
+            if (indefinite) {
+                push(INDEFINITE_STRING, 0);
+            } else {
+                itemCompleted();
+            }
+        } else if (mt == TYPE_TAG) {
+            // a tag is completed by the item following it...
+            push(DEFINITE, 1);
+        } else {
+            itemCompleted();
+        }
+    }
+
+    /**
+     * Counts a completed item in the innermost open container, completing definite-length containers as needed.
+     */
+    private void itemCompleted() {
+        for (int d = m_depth - 1; d >= 0; d--) {
+            int kind = m_frameKinds[d];
+            if (kind == DEFINITE) {
+                if (--m_frameValues[d] > 0) {
+                    return;
+                }
+                m_depth = d;
+            } else {
+                if (kind != INDEFINITE) {
+                    m_frameValues[d]++;
+                }
+                return;
+            }
+        }
+    }
+
+    private void push(int kind, long value) {
+        int d = m_depth;
+        if (m_frameKinds == null) {
+            m_frameKinds = new int[8];
+            m_framePositions = new int[8];
+            m_frameValues = new long[8];
+        } else if (d == m_frameKinds.length) {
+            m_frameKinds = Arrays.copyOf(m_frameKinds, d << 1);
+            m_framePositions = Arrays.copyOf(m_framePositions, d << 1);
+            m_frameValues = Arrays.copyOf(m_frameValues, d << 1);
+        }
+        m_frameKinds[d] = kind;
+        m_frameValues[d] = value;
+        m_depth = d + 1;
+    }
+}
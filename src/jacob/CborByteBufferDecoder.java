@@ -0,0 +1,178 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Provides a decoder capable of handling CBOR encoded data from a heap or direct {@link ByteBuffer}.
+ * <p>
+ * The decoder reads the bytes between the position and limit of the given buffer using absolute accesses, leaving
+ * the position, limit and byte order of the given buffer untouched.
+ * </p>
+ */
+public class CborByteBufferDecoder extends CborDecoder {
+    protected ByteBuffer m_buf;
+    protected int m_pos;
+    protected int m_limit;
+
+    /**
+     * Creates a new {@link CborByteBufferDecoder} instance.
+     * 
+     * @param buf the buffer to read the CBOR-encoded data from, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code>.
+     */
+    public CborByteBufferDecoder(ByteBuffer buf) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Buffer cannot be null!");
+        }
+        m_buf = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+        m_pos = buf.position();
+        m_limit = buf.limit();
+    }
+
+    /**
+     * @return the position in the underlying buffer of the next byte to read.
+     */
+    public int getPosition() {
+        return m_pos;
+    }
+
+    /**
+     * @return the number of bytes that are left to read, &gt;= 0.
+     */
+    public int remaining() {
+        return m_limit - m_pos;
+    }
+
+    /**
+     * Called when less than the given number of bytes are left to read, allowing subclasses to provide more data.
+     * <p>
+     * Implementations can replace {@link #m_buf} and adjust {@link #m_pos} and {@link #m_limit} as long as the bytes
+     * between the position and limit remain unread. This implementation does nothing.
+     * </p>
+     * 
+     * @param n the number of bytes that should be available to read, &gt; 0.
+     * @return <code>true</code> if at least the given number of bytes are available after this call,
+     *         <code>false</code> otherwise.
+     * @throws IOException in case of I/O problems obtaining more data.
+     */
+    protected boolean fill(int n) throws IOException {
+        return false;
+    }
+
+    @Override
+    protected int peek() throws IOException {
+        if (m_pos < m_limit || fill(1)) {
+            return m_buf.get(m_pos) & 0xff;
+        }
+        return -1;
+    }
+
+    @Override
+    protected int read() throws IOException {
+        if (m_pos < m_limit || fill(1)) {
+            int pos = m_pos;
+            m_pos = pos + 1;
+            return m_buf.get(pos) & 0xff;
+        }
+        return -1;
+    }
+
+    @Override
+    protected ByteBuffer readBuffer(int len) throws IOException {
+        int pos = require(len);
+        m_pos = pos + len;
+        ByteBuffer result = m_buf.duplicate();
+        result.limit(pos + len).position(pos);
+        return result.slice();
+    }
+
+    @Override
+    protected void readFully(byte[] buf, int off, int len) throws IOException {
+        int pos = require(len);
+        ByteBuffer src = m_buf;
+        src.position(pos);
+        src.get(buf, off, len);
+        m_pos = pos + len;
+    }
+
+    @Override
+    protected int readUInt16() throws IOException {
+        int pos = require(2);
+        m_pos = pos + 2;
+        return m_buf.getShort(pos) & 0xffff;
+    }
+
+    @Override
+    protected long readUInt32() throws IOException {
+        int pos = require(4);
+        m_pos = pos + 4;
+        return m_buf.getInt(pos) & 0xffffffffL;
+    }
+
+    @Override
+    protected long readUInt64() throws IOException {
+        int pos = require(8);
+        m_pos = pos + 8;
+        return m_buf.getLong(pos);
+    }
+
+    @Override
+    protected int readUInt8() throws IOException {
+        int pos = require(1);
+        m_pos = pos + 1;
+        return m_buf.get(pos) & 0xff;
+    }
+
+    @Override
+    protected String readUtf8String(int len) throws IOException {
+        if (!m_buf.hasArray()) {
+            return super.readUtf8String(len);
+        }
+        int pos = require(len);
+        // the buffer might be replaced while obtaining more data...
+        ByteBuffer buf = m_buf;
+        String result = decodeUtf8(buf.array(), buf.arrayOffset() + pos, len);
+        m_pos = pos + len;
+        return result;
+    }
+
+    @Override
+    protected void skip(long n) throws IOException {
+        if (n > m_limit - m_pos) {
+            if (n > Integer.MAX_VALUE) {
+                throw new EOFException();
+            }
+            require((int) n);
+        }
+        m_pos += (int) n;
+    }
+
+    /**
+     * Ensures that at least the given number of bytes can be read from the current position.
+     * 
+     * @param n the number of bytes to read, &gt;= 0.
+     * @return the current position.
+     * @throws EOFException in case less than the given number of bytes are left;
+     * @throws IOException in case of I/O problems obtaining more data.
+     */
+    protected final int require(int n) throws IOException {
+        int pos = m_pos;
+        if (m_limit - pos < n) {
+            if (!fill(n)) {
+                throw new EOFException();
+            }
+            pos = m_pos;
+        }
+        return pos;
+    }
+}
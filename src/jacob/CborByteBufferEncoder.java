@@ -0,0 +1,387 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Provides an encoder capable of encoding data into CBOR format directly into a heap or direct {@link ByteBuffer}.
+ * <p>
+ * Headers are written using absolute accesses, so the position of the buffer is only updated when it is obtained by
+ * {@link #getBuffer()}, or passed to an {@link OverflowHandler}. The encoded data can then be written to a channel
+ * without any intermediate copy, for example by {@link #writeTo(WritableByteChannel)}.
+ * </p>
+ * <p>
+ * In case the buffer is full, the {@link OverflowHandler} given upon construction is asked for room to continue. It can
+ * either grow the buffer, see {@link #growingHandler()}, or flush its contents, see
+ * {@link #flushingHandler(WritableByteChannel)}. Without handler, a {@link BufferOverflowException} is thrown.
+ * </p>
+ * <p>
+ * The encoder only uses the part of the given buffer between its position and limit. Bytes before the position are
+ * neither written to a channel nor given to the {@link OverflowHandler}.
+ * </p>
+ */
+public class CborByteBufferEncoder extends CborEncoder {
+
+    /**
+     * Called by a {@link CborByteBufferEncoder} in case its buffer is full.
+     */
+    public interface OverflowHandler {
+        /**
+         * Makes room for a number of bytes to encode.
+         * 
+         * @param buf the full buffer, starting at the first encoded byte, its position is set right after the last
+         *        encoded byte, never <code>null</code>;
+         * @param required the number of bytes that are about to be written, at most 9 bytes, &gt; 0.
+         * @return the buffer to continue encoding into, at its position, which should have at least the given number of
+         *         bytes remaining. Can be the given buffer, or a new one whose bytes up to its position are considered
+         *         to be encoded already.
+         * @throws IOException in case of I/O problems making room in the given buffer.
+         */
+        ByteBuffer handleOverflow(ByteBuffer buf, int required) throws IOException;
+    }
+
+    /**
+     * Flushes the buffer to a channel each time it is full.
+     */
+    private static class FlushingHandler implements OverflowHandler {
+        private final WritableByteChannel m_channel;
+
+        FlushingHandler(WritableByteChannel channel) {
+            m_channel = channel;
+        }
+
+        @Override
+        public ByteBuffer handleOverflow(ByteBuffer buf, int required) throws IOException {
+            flush(buf, m_channel);
+            return buf;
+        }
+    }
+
+    /**
+     * Replaces the buffer by one of twice its capacity each time it is full.
+     */
+    private static class GrowingHandler implements OverflowHandler {
+        @Override
+        public ByteBuffer handleOverflow(ByteBuffer buf, int required) throws IOException {
+            long capacity = Math.max(buf.capacity() * 2L, (long) buf.position() + required);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new OutOfMemoryError("Encoded data too large!");
+            }
+            ByteBuffer result;
+            if (buf.isDirect()) {
+                result = ByteBuffer.allocateDirect((int) capacity);
+            } else {
+                result = ByteBuffer.allocate((int) capacity);
+            }
+            buf.flip();
+            result.put(buf);
+            return result;
+        }
+    }
+
+    private final OverflowHandler m_handler;
+    private ByteBuffer m_buf;
+    // the position of the first encoded byte in the buffer...
+    private int m_start;
+    private int m_pos;
+    private int m_limit;
+
+    /**
+     * Creates a new {@link CborByteBufferEncoder} instance that fails in case the given buffer is full.
+     * 
+     * @param buf the buffer to encode into, starting at its position, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code> or read-only.
+     */
+    public CborByteBufferEncoder(ByteBuffer buf) {
+        this(buf, null);
+    }
+
+    /**
+     * Creates a new {@link CborByteBufferEncoder} instance.
+     * <p>
+     * The encoder writes into a duplicate of the given buffer, leaving the position, limit and byte order of the given
+     * buffer untouched. Use {@link #getBuffer()} to obtain the buffer holding the encoded data.
+     * </p>
+     * 
+     * @param buf the buffer to encode into, starting at its position, cannot be <code>null</code>;
+     * @param handler the handler to call in case the buffer is full, can be <code>null</code> in which case a
+     *        {@link BufferOverflowException} is thrown instead.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code> or read-only.
+     */
+    public CborByteBufferEncoder(ByteBuffer buf, OverflowHandler handler) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Buffer cannot be null!");
+        }
+        if (buf.isReadOnly()) {
+            throw new IllegalArgumentException("Buffer cannot be read-only!");
+        }
+        m_handler = handler;
+        setBuffer(buf.duplicate());
+        m_start = m_pos;
+    }
+
+    /**
+     * Returns an overflow handler that writes the encoded data to a given channel each time the buffer is full, and
+     * then continues encoding at the start of the buffer.
+     * <p>
+     * Large byte and text strings are written in parts, so the buffer only needs room for the largest header, which
+     * allows large values to be encoded using a small buffer.
+     * </p>
+     * 
+     * @param channel the channel to write the encoded data to, cannot be <code>null</code>.
+     * @return a new overflow handler, never <code>null</code>.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code>.
+     */
+    public static OverflowHandler flushingHandler(WritableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null!");
+        }
+        return new FlushingHandler(channel);
+    }
+
+    /**
+     * Returns an overflow handler that replaces the buffer by a buffer of (at least) twice its capacity each time it is
+     * full. The new buffer is a direct buffer in case the full buffer is a direct buffer.
+     * 
+     * @return a new overflow handler, never <code>null</code>.
+     */
+    public static OverflowHandler growingHandler() {
+        return new GrowingHandler();
+    }
+
+    /**
+     * Returns the buffer holding the encoded data.
+     * <p>
+     * The position of the returned buffer is set right after the last encoded byte, so it can be flipped to read the
+     * encoded data. Note that the returned buffer is not the buffer given upon construction, and can be replaced by the
+     * {@link OverflowHandler} while encoding. One should not modify the returned buffer while encoding more data, other
+     * than by {@link #writeTo(WritableByteChannel)}.
+     * </p>
+     * 
+     * @return the buffer holding the encoded data, never <code>null</code>.
+     */
+    public ByteBuffer getBuffer() {
+        m_buf.position(m_pos);
+        return m_buf;
+    }
+
+    /**
+     * @return the position in the buffer of the next byte to write.
+     */
+    public int getPosition() {
+        return m_pos;
+    }
+
+    /**
+     * Discards all encoded data, so the next encoded byte is written where the first encoded byte was written.
+     */
+    public void reset() {
+        m_pos = m_start;
+    }
+
+    /**
+     * Writes all encoded bytes to a given channel, and discards them so the next encoded byte is written where the
+     * first encoded byte was written.
+     * 
+     * @param channel the channel to write to, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems writing to the given channel.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer encoded = encoded();
+        encoded.flip();
+        while (encoded.hasRemaining()) {
+            channel.write(encoded);
+        }
+        m_pos = m_start;
+    }
+
+    /**
+     * Called when the buffer is full, to make room for a number of bytes to encode.
+     * <p>
+     * This implementation calls the {@link OverflowHandler} given upon construction with the encoded part of the
+     * buffer, or throws a {@link BufferOverflowException} in case no handler was given.
+     * </p>
+     * 
+     * @param buf the full buffer, its position is set right after the last encoded byte, never <code>null</code>;
+     * @param required the number of bytes that are about to be written, at most 9 bytes, &gt; 0.
+     * @return the buffer to continue encoding into, at its position, which should have at least the given number of
+     *         bytes remaining.
+     * @throws IOException in case of I/O problems making room in the given buffer.
+     * @see OverflowHandler#handleOverflow(ByteBuffer, int)
+     */
+    protected ByteBuffer overflow(ByteBuffer buf, int required) throws IOException {
+        if (m_handler == null) {
+            throw new BufferOverflowException();
+        }
+        ByteBuffer encoded = encoded();
+        ByteBuffer result = m_handler.handleOverflow(encoded, required);
+        if (result != encoded) {
+            return result;
+        }
+        // continue in the same buffer, after the bytes that are left in the encoded part...
+        m_buf.position(m_start + encoded.position());
+        return m_buf;
+    }
+
+    /**
+     * Replaces the buffer to encode into, continuing at its position.
+     * 
+     * @param buf the buffer to encode into, its bytes up to the position are considered to be encoded already,
+     *        cannot be <code>null</code>.
+     */
+    protected final void setBuffer(ByteBuffer buf) {
+        m_buf = buf.order(ByteOrder.BIG_ENDIAN);
+        m_start = 0;
+        m_pos = buf.position();
+        m_limit = buf.limit();
+    }
+
+    @Override
+    protected void write(int b) throws IOException {
+        int pos = require(1);
+        m_buf.put(pos, (byte) b);
+        m_pos = pos + 1;
+    }
+
+    @Override
+    protected void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int pos = require(1);
+            int n = Math.min(len, m_limit - pos);
+            ByteBuffer buf = m_buf;
+            buf.position(pos);
+            buf.put(b, off, n);
+            m_pos = pos + n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    protected void writeElements(Buffer values, int elementSize, ByteOrder order) throws IOException {
+        int pos = m_pos;
+        int len = values.remaining() * elementSize;
+        if (values.remaining() > (m_limit - pos) / elementSize) {
+            // does not fit, convert the elements in chunks...
+            super.writeElements(values, elementSize, order);
+            return;
+        }
+        ByteBuffer dst = m_buf.duplicate();
+        dst.limit(pos + len).position(pos);
+        CborTypedArrays.put(dst.slice().order(order), values);
+        m_pos = pos + len;
+    }
+
+    @Override
+    protected void writeUInt16(int mt, int value) throws IOException {
+        int pos = require(3);
+        ByteBuffer buf = m_buf;
+        buf.put(pos, (byte) (mt | TWO_BYTES));
+        buf.putShort(pos + 1, (short) value);
+        m_pos = pos + 3;
+    }
+
+    @Override
+    protected void writeUInt32(int mt, int value) throws IOException {
+        int pos = require(5);
+        ByteBuffer buf = m_buf;
+        buf.put(pos, (byte) (mt | FOUR_BYTES));
+        buf.putInt(pos + 1, value);
+        m_pos = pos + 5;
+    }
+
+    @Override
+    protected void writeUInt64(int mt, long value) throws IOException {
+        int pos = require(9);
+        ByteBuffer buf = m_buf;
+        buf.put(pos, (byte) (mt | EIGHT_BYTES));
+        buf.putLong(pos + 1, value);
+        m_pos = pos + 9;
+    }
+
+    @Override
+    protected void writeUInt8(int mt, int value) throws IOException {
+        int pos = require(2);
+        ByteBuffer buf = m_buf;
+        buf.put(pos, (byte) (mt | ONE_BYTE));
+        buf.put(pos + 1, (byte) value);
+        m_pos = pos + 2;
+    }
+
+    @Override
+    protected void writeUtf8String(CharSequence value, int off, int len) throws IOException {
+        long utf8Len = CborUtf8.encodedLength(value, off, len);
+        if (headLength(utf8Len) + utf8Len > m_limit - m_pos) {
+            // does not fit, encode the characters in chunks...
+            writeUtf8String(value, off, len, utf8Len);
+            return;
+        }
+        writeType(TYPE_TEXT_STRING, utf8Len);
+
+        ByteBuffer buf = m_buf;
+        if (buf.hasArray()) {
+            // encode directly into the backing array...
+            int arrayOffset = buf.arrayOffset();
+            m_pos = CborUtf8.encode(value, off, len, buf.array(), arrayOffset + m_pos) - arrayOffset;
+        } else {
+            m_pos = CborUtf8.encode(value, off, len, buf, m_pos);
+        }
+    }
+
+    private static void flush(ByteBuffer buf, WritableByteChannel channel) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * @return a view of the part of the buffer that is available to this encoder, starting at the first encoded byte,
+     *         with its position set right after the last encoded byte.
+     */
+    private ByteBuffer encoded() {
+        ByteBuffer result = m_buf.duplicate();
+        result.limit(m_limit).position(m_start);
+        result = result.slice();
+        result.position(m_pos - m_start);
+        return result;
+    }
+
+    /**
+     * Ensures the buffer has room for a given number of bytes, calling {@link #overflow(ByteBuffer, int)} if needed.
+     * 
+     * @param n the number of bytes that are about to be written, at most 9 bytes.
+     * @return the position to write the bytes at.
+     */
+    private int require(int n) throws IOException {
+        int pos = m_pos;
+        if (m_limit - pos >= n) {
+            return pos;
+        }
+        ByteBuffer buf = overflow(getBuffer(), n);
+        if (buf == null || buf.isReadOnly() || buf.remaining() < n) {
+            throw new BufferOverflowException();
+        }
+        if (buf == m_buf) {
+            // the encoded data keeps its start...
+            m_pos = buf.position();
+        } else {
+            setBuffer(buf);
+        }
+        return m_pos;
+    }
+}
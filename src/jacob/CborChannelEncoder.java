@@ -0,0 +1,191 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides an encoder capable of encoding data into CBOR format to a {@link GatheringByteChannel}, without copying the
+ * payload of large byte strings.
+ * <p>
+ * Headers, scalars and small strings are encoded into a reused, direct, scratch buffer. Byte strings of at least a
+ * given threshold are not copied, but referenced as a separate segment instead. All segments are written to the
+ * channel using a single gathering write upon {@link #flush()}, or when the scratch buffer is full.
+ * </p>
+ * <p>
+ * As referenced byte strings are only read when written to the channel, their contents should not be modified until
+ * the next flush.
+ * </p>
+ * <p>
+ * Byte strings read from a {@link FileChannel}, see {@link #writeByteString(ReadableByteChannel, long)}, are
+ * transferred directly to the channel using {@link FileChannel#transferTo(long, long, WritableByteChannel)}, after
+ * flushing all data encoded before.
+ * </p>
+ */
+public class CborChannelEncoder extends CborByteBufferEncoder {
+    private static final int DEFAULT_SCRATCH_SIZE = 8192;
+    private static final int DEFAULT_THRESHOLD = 4096;
+
+    private final GatheringByteChannel m_channel;
+    private final int m_threshold;
+    private final List<ByteBuffer> m_segments;
+    // the start of the part of the scratch buffer that is not yet added as segment...
+    private int m_segmentStart;
+
+    /**
+     * Creates a new {@link CborChannelEncoder} instance with a default scratch buffer size and threshold.
+     * 
+     * @param channel the channel to write the encoded data to, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code>.
+     */
+    public CborChannelEncoder(GatheringByteChannel channel) {
+        this(channel, DEFAULT_SCRATCH_SIZE, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a new {@link CborChannelEncoder} instance.
+     * 
+     * @param channel the channel to write the encoded data to, cannot be <code>null</code>;
+     * @param scratchSize the size of the scratch buffer, in bytes, should be &gt;= 9;
+     * @param threshold the minimal length of byte strings that are referenced instead of copied, in bytes, &gt;= 0.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code>, the given scratch size was
+     *         less than 9, or the given threshold was negative.
+     */
+    public CborChannelEncoder(GatheringByteChannel channel, int scratchSize, int threshold) {
+        super(ByteBuffer.allocateDirect(checkScratchSize(scratchSize)));
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null!");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Invalid threshold!");
+        }
+        m_channel = channel;
+        m_threshold = threshold;
+        m_segments = new ArrayList<ByteBuffer>();
+    }
+
+    /**
+     * Writes all encoded data, including the referenced byte strings, to the channel given upon construction.
+     * 
+     * @throws IOException in case of I/O problems writing to the channel.
+     */
+    public void flush() throws IOException {
+        writeTo(m_channel);
+    }
+
+    /**
+     * Discards all encoded data that is not yet written to the channel, including the referenced byte strings.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        m_segments.clear();
+        m_segmentStart = 0;
+    }
+
+    /**
+     * Writes all encoded data, including the referenced byte strings, to a given channel, using a single gathering
+     * write in case the given channel supports it.
+     * 
+     * @param channel the channel to write to, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems writing to the given channel.
+     */
+    @Override
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        addScratchSegment();
+        ByteBuffer[] segments = m_segments.toArray(new ByteBuffer[m_segments.size()]);
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gbc = (GatheringByteChannel) channel;
+            int i = 0;
+            while (i < segments.length) {
+                gbc.write(segments, i, segments.length - i);
+                while (i < segments.length && !segments[i].hasRemaining()) {
+                    i++;
+                }
+            }
+        } else {
+            for (ByteBuffer segment : segments) {
+                while (segment.hasRemaining()) {
+                    channel.write(segment);
+                }
+            }
+        }
+        reset();
+    }
+
+    /**
+     * Flushes all encoded data to the channel to make room in the scratch buffer.
+     */
+    @Override
+    protected ByteBuffer overflow(ByteBuffer buf, int required) throws IOException {
+        flush();
+        return getBuffer();
+    }
+
+    @Override
+    protected void transferFrom(ReadableByteChannel channel, long length) throws IOException {
+        if (!(channel instanceof FileChannel)) {
+            super.transferFrom(channel, length);
+            return;
+        }
+        flush();
+
+        FileChannel fc = (FileChannel) channel;
+        long pos = fc.position();
+        while (length > 0) {
+            long n = fc.transferTo(pos, length, m_channel);
+            if (n == 0 && pos >= fc.size()) {
+                throw new EOFException("Unexpected end of channel: " + length + " bytes left to read!");
+            }
+            pos += n;
+            length -= n;
+        }
+        fc.position(pos);
+    }
+
+    @Override
+    protected void writeString(int majorType, byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length < m_threshold) {
+            super.writeString(majorType, bytes);
+            return;
+        }
+        writeType(majorType, bytes.length);
+
+        addScratchSegment();
+        m_segments.add(ByteBuffer.wrap(bytes));
+    }
+
+    private static int checkScratchSize(int scratchSize) {
+        if (scratchSize < 9) {
+            throw new IllegalArgumentException("Invalid scratch size!");
+        }
+        return scratchSize;
+    }
+
+    /**
+     * Adds the part of the scratch buffer that is encoded since the last segment as new segment.
+     */
+    private void addScratchSegment() {
+        ByteBuffer buf = getBuffer();
+        int pos = buf.position();
+        if (pos > m_segmentStart) {
+            ByteBuffer segment = buf.duplicate();
+            segment.limit(pos).position(m_segmentStart);
+            m_segments.add(segment);
+            m_segmentStart = pos;
+        }
+    }
+}
@@ -84,6 +84,52 @@ public interface CborConstants {
     int TAG_REGEXP = 35;
     /** Semantic tag value describing a MIME message (UTF8 string, RFC2045). */
     int TAG_MIME_MESSAGE = 36;
+    /** Semantic tag value describing a typed array of unsigned 8-bit integers (byte string, RFC 8746). */
+    int TAG_UINT8_ARRAY = 64;
+    /** Semantic tag value describing a typed array of unsigned 16-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_UINT16_BE_ARRAY = 65;
+    /** Semantic tag value describing a typed array of unsigned 32-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_UINT32_BE_ARRAY = 66;
+    /** Semantic tag value describing a typed array of unsigned 64-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_UINT64_BE_ARRAY = 67;
+    /** Semantic tag value describing a typed array of unsigned 8-bit integers, clamped (byte string, RFC 8746). */
+    int TAG_UINT8_CLAMPED_ARRAY = 68;
+    /** Semantic tag value describing a typed array of unsigned 16-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_UINT16_LE_ARRAY = 69;
+    /** Semantic tag value describing a typed array of unsigned 32-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_UINT32_LE_ARRAY = 70;
+    /** Semantic tag value describing a typed array of unsigned 64-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_UINT64_LE_ARRAY = 71;
+    /** Semantic tag value describing a typed array of signed 8-bit integers (byte string, RFC 8746). */
+    int TAG_SINT8_ARRAY = 72;
+    /** Semantic tag value describing a typed array of signed 16-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_SINT16_BE_ARRAY = 73;
+    /** Semantic tag value describing a typed array of signed 32-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_SINT32_BE_ARRAY = 74;
+    /** Semantic tag value describing a typed array of signed 64-bit integers, big endian (byte string, RFC 8746). */
+    int TAG_SINT64_BE_ARRAY = 75;
+    /** Semantic tag value describing a typed array of signed 16-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_SINT16_LE_ARRAY = 77;
+    /** Semantic tag value describing a typed array of signed 32-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_SINT32_LE_ARRAY = 78;
+    /** Semantic tag value describing a typed array of signed 64-bit integers, little endian (byte string, RFC 8746). */
+    int TAG_SINT64_LE_ARRAY = 79;
+    /** Semantic tag value describing a typed array of 16-bit IEEE 754 floats, big endian (byte string, RFC 8746). */
+    int TAG_FLOAT16_BE_ARRAY = 80;
+    /** Semantic tag value describing a typed array of 32-bit IEEE 754 floats, big endian (byte string, RFC 8746). */
+    int TAG_FLOAT32_BE_ARRAY = 81;
+    /** Semantic tag value describing a typed array of 64-bit IEEE 754 floats, big endian (byte string, RFC 8746). */
+    int TAG_FLOAT64_BE_ARRAY = 82;
+    /** Semantic tag value describing a typed array of 128-bit IEEE 754 floats, big endian (byte string, RFC 8746). */
+    int TAG_FLOAT128_BE_ARRAY = 83;
+    /** Semantic tag value describing a typed array of 16-bit IEEE 754 floats, little endian (byte string, RFC 8746). */
+    int TAG_FLOAT16_LE_ARRAY = 84;
+    /** Semantic tag value describing a typed array of 32-bit IEEE 754 floats, little endian (byte string, RFC 8746). */
+    int TAG_FLOAT32_LE_ARRAY = 85;
+    /** Semantic tag value describing a typed array of 64-bit IEEE 754 floats, little endian (byte string, RFC 8746). */
+    int TAG_FLOAT64_LE_ARRAY = 86;
+    /** Semantic tag value describing a typed array of 128-bit IEEE 754 floats, little endian (byte string, RFC 8746). */
+    int TAG_FLOAT128_LE_ARRAY = 87;
     /** Semantic tag value describing CBOR content. */
     int TAG_CBOR_MARKER = 55799;
 }
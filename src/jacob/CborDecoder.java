@@ -11,13 +11,134 @@ import static jacob.CborType.*;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 
 /**
  * Provides a decoder capable of handling CBOR encoded data from a {@link InputStream}.
  */
 public class CborDecoder {
+    /** The maximum length of text strings that are decoded using reused buffers. */
+    private static final int TEXT_SCRATCH_SIZE = 4096;
+    /** The number of bytes copied at once when reading strings into a stream or channel. */
+    private static final int STREAM_CHUNK_SIZE = 8192;
+
+    /**
+     * Provides the payload of a definite- or indefinite-length byte or text string as input stream, reading the parts
+     * of indefinite-length strings as they are needed.
+     */
+    private class StringInputStream extends InputStream {
+        private final int m_majorType;
+        private final boolean m_indefinite;
+        /** The number of bytes left to read in the current part. */
+        private long m_remaining;
+        private boolean m_done;
+
+        StringInputStream(int majorType) throws IOException {
+            long len = readMajorTypeWithSize(majorType);
+            m_majorType = majorType;
+            m_indefinite = len < 0;
+            m_remaining = Math.max(0, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(m_remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // consume the remainder of the string, so the decoder can continue with the next value...
+            while (nextPart()) {
+                CborDecoder.this.skip(m_remaining);
+                m_remaining = 0;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextPart()) {
+                return -1;
+            }
+            int b = CborDecoder.this.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            m_remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextPart()) {
+                return -1;
+            }
+            int n = (int) Math.min(len, m_remaining);
+            readFully(b, off, n);
+            m_remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0 || !nextPart()) {
+                return 0;
+            }
+            long count = Math.min(n, m_remaining);
+            CborDecoder.this.skip(count);
+            m_remaining -= count;
+            return count;
+        }
+
+        /**
+         * @return the number of bytes left to read in the current part, &gt;= 0.
+         */
+        long remainingInPart() {
+            return m_remaining;
+        }
+
+        /**
+         * Advances to the next non-empty part of an indefinite-length string if the current part is read completely.
+         * 
+         * @return <code>true</code> if there are bytes left to read, <code>false</code> if the string is read
+         *         completely.
+         */
+        boolean nextPart() throws IOException {
+            while (m_remaining == 0) {
+                if (m_done || !m_indefinite) {
+                    m_done = true;
+                    return false;
+                }
+                if (peek() == ((TYPE_FLOAT_SIMPLE << 5) | BREAK)) {
+                    CborDecoder.this.read();
+                    m_done = true;
+                    return false;
+                }
+                long len = readMajorTypeWithSize(m_majorType);
+                if (len < 0) {
+                    fail("Nested infinite-length strings not allowed!");
+                }
+                m_remaining = len;
+            }
+            return true;
+        }
+    }
+
     protected final PushbackInputStream m_is;
+    /** Scratch buffer used for reading fixed-width values, avoids allocating a new array for each value. */
+    private final byte[] m_scratch = new byte[8];
+    /** Lazily allocated buffers used for decoding text strings. */
+    private byte[] m_textBuf;
+    private char[] m_chars;
+    private CborStringCache m_stringCache;
 
     /**
      * Creates a new {@link CborDecoder} instance.
@@ -31,6 +152,17 @@ public class CborDecoder {
         m_is = (is instanceof PushbackInputStream) ? (PushbackInputStream) is : new PushbackInputStream(is);
     }
 
+    /**
+     * Creates a new {@link CborDecoder} instance for subclasses that take care of reading the encoded data themselves.
+     * <p>
+     * Subclasses using this constructor <b>must</b> override {@link #read()}, {@link #peek()} and
+     * {@link #readFully(byte[], int, int)}.
+     * </p>
+     */
+    protected CborDecoder() {
+        m_is = null;
+    }
+
     private static void fail(String msg, Object... args) throws IOException {
         throw new IOException(String.format(msg, args));
     }
@@ -40,6 +172,34 @@ public class CborDecoder {
             : (len == FOUR_BYTES) ? "four bytes" : (len == EIGHT_BYTES) ? "eight bytes" : "(unknown)";
     }
 
+    /**
+     * Opens the payload of a byte string value in CBOR format as input stream, without reading it into memory as a
+     * whole.
+     * <p>
+     * Both definite-length and infinite-length byte strings are supported; the parts of the latter are transparently
+     * concatenated. The returned stream should be read completely or closed before reading the next value, in which
+     * case the remainder of the byte string is skipped.
+     * </p>
+     * 
+     * @return an input stream providing the bytes of the byte string, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     */
+    public InputStream openByteStringStream() throws IOException {
+        return new StringInputStream(TYPE_BYTE_STRING);
+    }
+
+    /**
+     * Opens the UTF-8 encoded payload of a text string value in CBOR format as input stream, without reading it into
+     * memory as a whole.
+     * 
+     * @return an input stream providing the UTF-8 encoded bytes of the text string, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     * @see #openByteStringStream()
+     */
+    public InputStream openTextStringStream() throws IOException {
+        return new StringInputStream(TYPE_TEXT_STRING);
+    }
+
     /**
      * Peeks in the input stream for the upcoming type.
      * 
@@ -47,12 +207,11 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-type from the underlying input stream.
      */
     public CborType peekType() throws IOException {
-        int p = m_is.read();
+        int p = peek();
         if (p < 0) {
             // EOF, nothing to peek at...
             return null;
         }
-        m_is.unread(p);
         return valueOf(p);
     }
 
@@ -97,6 +256,7 @@ public class CborDecoder {
      * 
      * @return the read byte string, never <code>null</code>. In case the encoded string has a length of <tt>0</tt>, an empty string is returned.
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     * @see #openByteStringStream()
      */
     public byte[] readByteString() throws IOException {
         long len = readMajorTypeWithSize(TYPE_BYTE_STRING);
@@ -109,6 +269,110 @@ public class CborDecoder {
         return readFully(new byte[(int) len]);
     }
 
+    /**
+     * Reads a byte string value in CBOR format into a given array.
+     * <p>
+     * Both definite-length and infinite-length byte strings are supported. No memory is allocated for the byte string
+     * itself, regardless of its length.
+     * </p>
+     * <p>
+     * In case a definite-length byte string does not fit in the given array, the given array is left untouched and the
+     * byte string is skipped, so decoding can continue with the next value. The total length of an infinite-length
+     * byte string is not known up front, so in case it does not fit, the given array can be partly overwritten and the
+     * decoder is left in the middle of the byte string, after which it can no longer be used.
+     * </p>
+     * 
+     * @param dst the array to read the byte string into, cannot be <code>null</code>;
+     * @param off the offset in the given array to store the first byte.
+     * @return the length of the read byte string, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offset was not within the given array;
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the byte string does not fit in the given array.
+     */
+    public int readByteString(byte[] dst, int off) throws IOException {
+        if (off < 0 || off > dst.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        StringInputStream is = new StringInputStream(TYPE_BYTE_STRING);
+        if (!is.m_indefinite && is.remainingInPart() > dst.length - off) {
+            // check the length before reading anything, and continue with the next value...
+            is.close();
+            fail("String length too long!");
+        }
+        int pos = off;
+        while (is.nextPart()) {
+            long n = is.remainingInPart();
+            if (n > dst.length - pos) {
+                fail("String length too long!");
+            }
+            pos += is.read(dst, pos, (int) n);
+        }
+        return pos - off;
+    }
+
+    /**
+     * Reads a byte string value in CBOR format, and writes its bytes to a given output stream.
+     * <p>
+     * Both definite-length and infinite-length byte strings are supported. The bytes are copied in chunks, so the
+     * memory used does not depend on the length of the byte string.
+     * </p>
+     * 
+     * @param out the output stream to write the byte string to, cannot be <code>null</code>.
+     * @return the length of the read byte string, &gt;= 0.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         writing to the given output stream.
+     */
+    public long readByteString(OutputStream out) throws IOException {
+        InputStream is = new StringInputStream(TYPE_BYTE_STRING);
+        byte[] buf = new byte[STREAM_CHUNK_SIZE];
+        long total = 0;
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads a byte string value in CBOR format, and writes its bytes to a given channel.
+     * 
+     * @param channel the channel to write the byte string to, should be in blocking mode, cannot be <code>null</code>.
+     * @return the length of the read byte string, &gt;= 0.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         writing to the given channel.
+     * @see #readByteString(OutputStream)
+     */
+    public long readByteString(WritableByteChannel channel) throws IOException {
+        InputStream is = new StringInputStream(TYPE_BYTE_STRING);
+        byte[] buf = new byte[STREAM_CHUNK_SIZE];
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        long total = 0;
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            bb.limit(n).position(0);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads a definite-length byte string value in CBOR format as byte buffer.
+     * <p>
+     * Decoders reading from memory, such as {@link CborByteArrayDecoder}, {@link CborByteBufferDecoder} and
+     * {@link CborMappedFileDecoder}, return a read-only view on their input instead of copying the bytes.
+     * </p>
+     * 
+     * @return the read byte string between the position and limit of the returned buffer, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     */
+    public ByteBuffer readByteStringBuffer() throws IOException {
+        return readStringBuffer(TYPE_BYTE_STRING);
+    }
+
     /**
      * Prolog to reading a byte string value in CBOR format.
      * 
@@ -143,6 +407,31 @@ public class CborDecoder {
         return Float.intBitsToFloat((int) readUInt32());
     }
 
+    /**
+     * Reads a half-, single- or double-precision float value in CBOR format.
+     * <p>
+     * This method accepts floating point values of any width, such as written by
+     * {@link CborEncoder#writeFloatingPoint(double)}. All widths are converted losslessly to a double value.
+     * </p>
+     * 
+     * @return the read floating point value, as double value.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     */
+    public double readFloatingPoint() throws IOException {
+        int st = readMajorType(TYPE_FLOAT_SIMPLE);
+        switch (st) {
+            case HALF_PRECISION_FLOAT:
+                return CborHalfFloat.toFloat(readUInt16());
+            case SINGLE_PRECISION_FLOAT:
+                return Float.intBitsToFloat((int) readUInt32());
+            case DOUBLE_PRECISION_FLOAT:
+                return Double.longBitsToDouble(readUInt64());
+            default:
+                fail("Unexpected subtype: %d, expected a floating point value!", st);
+                return Double.NaN; // never reached
+        }
+    }
+
     /**
      * Reads a half-precision float value in CBOR format.
      * 
@@ -152,22 +441,7 @@ public class CborDecoder {
     public double readHalfPrecisionFloat() throws IOException {
         readMajorTypeExact(TYPE_FLOAT_SIMPLE, HALF_PRECISION_FLOAT);
 
-        int half = readUInt16();
-        int exp = (half >> 10) & 0x1f;
-        int mant = half & 0x3ff;
-
-        double val;
-        if (exp == 0) {
-            val = mant * Math.pow(2, -24);
-        } else if (exp != 31) {
-            val = (mant + 1024) * Math.pow(2, exp - 25);
-        } else if (mant != 0) {
-            val = Double.NaN;
-        } else {
-            val = Double.POSITIVE_INFINITY;
-        }
-
-        return ((half & 0x8000) == 0) ? val : -val;
+        return CborHalfFloat.toFloat(readUInt16());
     }
 
     /**
@@ -177,7 +451,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
      */
     public long readInt() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -192,7 +466,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying output stream.
      */
     public int readInt16() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -207,7 +481,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying output stream.
      */
     public long readInt32() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -222,7 +496,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying output stream.
      */
     public long readInt64() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -237,7 +511,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying output stream.
      */
     public int readInt8() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -284,7 +558,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying output stream.
      */
     public int readSmallInt() throws IOException {
-        int ib = m_is.read();
+        int ib = read();
 
         // in case of negative integers, extends the sign to all bits; otherwise zero...
         long ui = expectIntegerType(ib);
@@ -306,7 +580,8 @@ public class CborDecoder {
      * Reads an UTF-8 encoded string value in CBOR format.
      * 
      * @return the read UTF-8 encoded string, never <code>null</code>. In case the encoded string has a length of <tt>0</tt>, an empty string is returned.
-     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the string is not valid UTF-8.
      */
     public String readTextString() throws IOException {
         long len = readMajorTypeWithSize(TYPE_TEXT_STRING);
@@ -316,7 +591,19 @@ public class CborDecoder {
         if (len > Integer.MAX_VALUE) {
             fail("String length too long!");
         }
-        return new String(readFully(new byte[(int) len]), "UTF-8");
+        return readUtf8String((int) len);
+    }
+
+    /**
+     * Reads the UTF-8 encoded bytes of a definite-length text string value in CBOR format as byte buffer, without
+     * decoding them.
+     * 
+     * @return the UTF-8 encoded bytes between the position and limit of the returned buffer, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
+     * @see #readByteStringBuffer()
+     */
+    public ByteBuffer readTextStringBuffer() throws IOException {
+        return readStringBuffer(TYPE_TEXT_STRING);
     }
 
     /**
@@ -329,6 +616,120 @@ public class CborDecoder {
         return readMajorTypeWithSize(TYPE_TEXT_STRING);
     }
 
+    /**
+     * Reads a typed array of floats, as defined in RFC 8746, into a double array.
+     * <p>
+     * Typed arrays of 16-, 32- and 64-bit floats, in either byte order, are supported.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a supported typed array.
+     */
+    public double[] readTypedDoubleArray() throws IOException {
+        int tag = readTypedArrayTag();
+        if (!CborTypedArrays.isFloat(tag) || CborTypedArrays.elementSize(tag) > 8) {
+            fail("Unexpected typed array tag: %d, expected a 16-, 32- or 64-bit float array!", tag);
+        }
+        return CborTypedArrays.toDoubleArray(tag, readTypedArrayPayload(tag));
+    }
+
+    /**
+     * Reads a typed array of 64-bit floats, as defined in RFC 8746, as a read-only double buffer.
+     * <p>
+     * Depending on the decoder, the returned buffer can be a view on the input of this decoder, without any copying
+     * of the values. In that case, the buffer reflects any later changes to the input.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a typed array of 64-bit floats.
+     */
+    public DoubleBuffer readTypedDoubleBuffer() throws IOException {
+        int tag = readTypedArrayTag();
+        if ((tag | 0x04) != TAG_FLOAT64_LE_ARRAY) {
+            fail("Unexpected typed array tag: %d, expected a 64-bit float array!", tag);
+        }
+        return readTypedArrayPayload(tag).asReadOnlyBuffer().order(CborTypedArrays.byteOrder(tag)).asDoubleBuffer();
+    }
+
+    /**
+     * Reads a typed array of floats, as defined in RFC 8746, into a float array.
+     * <p>
+     * Typed arrays of 16- and 32-bit floats, in either byte order, are supported.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a supported typed array.
+     */
+    public float[] readTypedFloatArray() throws IOException {
+        int tag = readTypedArrayTag();
+        if (!CborTypedArrays.isFloat(tag) || CborTypedArrays.elementSize(tag) > 4) {
+            fail("Unexpected typed array tag: %d, expected a 16- or 32-bit float array!", tag);
+        }
+        return CborTypedArrays.toFloatArray(tag, readTypedArrayPayload(tag));
+    }
+
+    /**
+     * Reads a typed array of integers, as defined in RFC 8746, into an int array.
+     * <p>
+     * Typed arrays of signed and unsigned 8- and 16-bit integers, and of signed 32-bit integers, in either byte order,
+     * are supported.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a supported typed array.
+     */
+    public int[] readTypedIntArray() throws IOException {
+        int tag = readTypedArrayTag();
+        int size = CborTypedArrays.elementSize(tag);
+        if (CborTypedArrays.isFloat(tag) || size > 4 || (size == 4 && !CborTypedArrays.isSigned(tag))) {
+            fail("Unexpected typed array tag: %d, expected an integer array that fits in an int array!", tag);
+        }
+        return CborTypedArrays.toIntArray(tag, readTypedArrayPayload(tag));
+    }
+
+    /**
+     * Reads a typed array of integers, as defined in RFC 8746, into a long array.
+     * <p>
+     * Typed arrays of signed and unsigned integers of any size, in either byte order, are supported. Unsigned 64-bit
+     * integers larger than {@link Long#MAX_VALUE} are returned as negative values.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a typed array of integers.
+     */
+    public long[] readTypedLongArray() throws IOException {
+        int tag = readTypedArrayTag();
+        if (CborTypedArrays.isFloat(tag)) {
+            fail("Unexpected typed array tag: %d, expected an integer array!", tag);
+        }
+        return CborTypedArrays.toLongArray(tag, readTypedArrayPayload(tag));
+    }
+
+    /**
+     * Reads a typed array of 64-bit integers, as defined in RFC 8746, as a read-only long buffer.
+     * <p>
+     * Both signed and unsigned integers are supported, the latter are returned as negative values in case they are
+     * larger than {@link Long#MAX_VALUE}. Depending on the decoder, the returned buffer can be a view on the input of
+     * this decoder, without any copying of the values. In that case, the buffer reflects any later changes to the input.
+     * </p>
+     * 
+     * @return the read values, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the next data item is not a typed array of 64-bit integers.
+     */
+    public LongBuffer readTypedLongBuffer() throws IOException {
+        int tag = readTypedArrayTag();
+        if (CborTypedArrays.isFloat(tag) || CborTypedArrays.elementSize(tag) != 8) {
+            fail("Unexpected typed array tag: %d, expected a 64-bit integer array!", tag);
+        }
+        return readTypedArrayPayload(tag).asReadOnlyBuffer().order(CborTypedArrays.byteOrder(tag)).asLongBuffer();
+    }
+
     /**
      * Reads an undefined value in CBOR format.
      * 
@@ -340,6 +741,137 @@ public class CborDecoder {
         return null;
     }
 
+    /**
+     * Sets the cache to use for decoding short text strings, such as map keys.
+     * <p>
+     * When set, decoding a text string that is in the cache returns the cached {@link String} instance, instead of
+     * creating a new one.
+     * </p>
+     * 
+     * @param cache the string cache to use, or <code>null</code> to disable caching.
+     */
+    public void setStringCache(CborStringCache cache) {
+        m_stringCache = cache;
+    }
+
+    /**
+     * Skips the next data item, including all of its nested data items, without decoding it.
+     * <p>
+     * Strings are skipped using their length headers, arrays, maps and tags are skipped by counting the data items
+     * they contain. Indefinite-length items are skipped up to and including their terminating "break" value.
+     * </p>
+     * 
+     * @throws EOFException in case the end-of-stream was reached before the data item was completely skipped;
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream, or
+     *         in case the data item was not well-formed.
+     */
+    public void skipValue() throws IOException {
+        // the number of items left to skip at the current level, or -1 in case all items up to a break are to be skipped...
+        long pending = 1;
+        // the pending counts of the enclosing levels...
+        long[] stack = null;
+        int depth = 0;
+
+        for (;;) {
+            if (pending == 0) {
+                if (depth == 0) {
+                    return;
+                }
+                pending = stack[--depth];
+                continue;
+            }
+
+            int ib = read();
+            if (ib < 0) {
+                throw new EOFException();
+            }
+            if (ib == ((TYPE_FLOAT_SIMPLE << 5) | BREAK)) {
+                if (pending > 0) {
+                    fail("Unexpected break!");
+                }
+                pending = 0;
+                continue;
+            }
+            if (pending > 0) {
+                pending--;
+            }
+
+            CborType type = valueOf(ib);
+            int mt = type.getMajorType();
+            long children = 0;
+
+            if (type.getAdditionalInfo() == BREAK) {
+                if (!type.isBreakAllowed()) {
+                    fail("Unexpected indefinite-length %s!", getName(mt));
+                }
+                children = -1;
+            } else if (mt == TYPE_UNSIGNED_INTEGER || mt == TYPE_NEGATIVE_INTEGER || mt == TYPE_FLOAT_SIMPLE) {
+                int width = type.getPayloadWidth();
+                if (width < 0) {
+                    fail("Not well-formed CBOR value found, invalid length: %d!", type.getAdditionalInfo());
+                }
+                skip(width);
+            } else {
+                long len = readUInt(type.getAdditionalInfo(), false /* breakAllowed */);
+                if (mt == TYPE_BYTE_STRING || mt == TYPE_TEXT_STRING) {
+                    skip(len);
+                } else if (mt == TYPE_ARRAY) {
+                    children = len;
+                } else if (mt == TYPE_MAP) {
+                    if (len > (Long.MAX_VALUE >> 1)) {
+                        fail("Map length too long!");
+                    }
+                    children = len << 1;
+                } else {
+                    // tags apply to exactly one data item...
+                    children = 1;
+                }
+            }
+
+            if (children == 0) {
+                continue;
+            }
+            if (children < 0 || pending < 0) {
+                // descend a level, as the current level cannot be continued by simply counting...
+                if (stack == null) {
+                    stack = new long[8];
+                } else if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth << 1);
+                }
+                stack[depth++] = pending;
+                pending = children;
+            } else if (children > Long.MAX_VALUE - pending) {
+                fail("Too many data items to skip!");
+            } else {
+                pending += children;
+            }
+        }
+    }
+
+    /**
+     * Decodes a range of UTF-8 encoded bytes into a string, using the string cache, if set.
+     * 
+     * @param src the bytes to decode, cannot be <code>null</code>;
+     * @param off the offset of the first byte to decode;
+     * @param len the number of bytes to decode.
+     * @return the decoded string, never <code>null</code>.
+     * @throws IOException in case the given bytes are not valid UTF-8.
+     */
+    protected final String decodeUtf8(byte[] src, int off, int len) throws IOException {
+        char[] chars = null;
+        if (len <= TEXT_SCRATCH_SIZE) {
+            chars = m_chars;
+            if (chars == null) {
+                chars = m_chars = new char[TEXT_SCRATCH_SIZE];
+            }
+        }
+        CborStringCache cache = m_stringCache;
+        if (cache != null) {
+            return cache.decode(src, off, len, chars);
+        }
+        return CborUtf8.decode(src, off, len, chars);
+    }
+
     /**
      * Reads the next major type from the underlying input stream, and verifies whether it matches the given expectation.
      * 
@@ -364,9 +896,9 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying input stream.
      */
     protected int readMajorType(int majorType) throws IOException {
-        int ib = m_is.read();
+        int ib = read();
         if (majorType != ((ib >>> 5) & 0x07)) {
-            fail("Unexpected type: %s, expected: %s!", getName(ib), getName(majorType));
+            fail("Unexpected type: %s, expected: %s!", getName((ib >>> 5) & 0x07), getName(majorType));
         }
         return ib & 0x1F;
     }
@@ -405,18 +937,29 @@ public class CborDecoder {
      */
     protected long readUInt(int length, boolean breakAllowed) throws IOException {
         long result = -1;
-        if (length < ONE_BYTE) {
-            result = length;
-        } else if (length == ONE_BYTE) {
-            result = readUInt8();
-        } else if (length == TWO_BYTES) {
-            result = readUInt16();
-        } else if (length == FOUR_BYTES) {
-            result = readUInt32();
-        } else if (length == EIGHT_BYTES) {
-            result = readUInt64();
-        } else if (breakAllowed && length == BREAK) {
-            return -1;
+        switch (length) {
+            case ONE_BYTE:
+                result = readUInt8();
+                break;
+            case TWO_BYTES:
+                result = readUInt16();
+                break;
+            case FOUR_BYTES:
+                result = readUInt32();
+                break;
+            case EIGHT_BYTES:
+                result = readUInt64();
+                break;
+            case BREAK:
+                if (breakAllowed) {
+                    return -1;
+                }
+                break;
+            default:
+                if (length < ONE_BYTE) {
+                    return length;
+                }
+                break;
         }
         if (result < 0) {
             fail("Not well-formed CBOR integer found, invalid length: %d!", result);
@@ -431,7 +974,8 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected int readUInt16() throws IOException {
-        byte[] buf = readFully(new byte[2]);
+        byte[] buf = m_scratch;
+        readFully(buf, 0, 2);
         return (buf[0] & 0xFF) << 8 | (buf[1] & 0xFF);
     }
 
@@ -442,7 +986,8 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected long readUInt32() throws IOException {
-        byte[] buf = readFully(new byte[4]);
+        byte[] buf = m_scratch;
+        readFully(buf, 0, 4);
         return ((buf[0] & 0xFF) << 24 | (buf[1] & 0xFF) << 16 | (buf[2] & 0xFF) << 8 | (buf[3] & 0xFF)) & 0xffffffffL;
     }
 
@@ -453,7 +998,8 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected long readUInt64() throws IOException {
-        byte[] buf = readFully(new byte[8]);
+        byte[] buf = m_scratch;
+        readFully(buf, 0, 8);
         return (buf[0] & 0xFFL) << 56 | (buf[1] & 0xFFL) << 48 | (buf[2] & 0xFFL) << 40 | (buf[3] & 0xFFL) << 32 | //
             (buf[4] & 0xFFL) << 24 | (buf[5] & 0xFFL) << 16 | (buf[6] & 0xFFL) << 8 | (buf[7] & 0xFFL);
     }
@@ -465,7 +1011,7 @@ public class CborDecoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected int readUInt8() throws IOException {
-        return m_is.read() & 0xff;
+        return read() & 0xff;
     }
 
     /**
@@ -483,9 +1029,57 @@ public class CborDecoder {
         return readUInt(length, false /* breakAllowed */);
     }
 
-    private byte[] readFully(byte[] buf) throws IOException {
-        int len = buf.length;
-        int n = 0, off = 0;
+    /**
+     * Peeks at the next byte of the underlying input stream without consuming it.
+     * 
+     * @return the next byte as unsigned value, or <tt>-1</tt> in case of an end-of-stream.
+     * @throws IOException in case of I/O problems reading from the underlying input stream.
+     */
+    protected int peek() throws IOException {
+        int p = m_is.read();
+        if (p >= 0) {
+            m_is.unread(p);
+        }
+        return p;
+    }
+
+    /**
+     * Reads the next byte from the underlying input stream.
+     * 
+     * @return the read byte as unsigned value, or <tt>-1</tt> in case of an end-of-stream.
+     * @throws IOException in case of I/O problems reading from the underlying input stream.
+     */
+    protected int read() throws IOException {
+        return m_is.read();
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the underlying input stream, and returns them as byte buffer.
+     * <p>
+     * This implementation reads the bytes into a new array. Subclasses can return a view on their input instead, as
+     * long as the returned bytes are not overwritten by later reads.
+     * </p>
+     * 
+     * @param len the number of bytes to read, &gt;= 0.
+     * @return a byte buffer with the read bytes between its position and limit, never <code>null</code>.
+     * @throws EOFException in case the end-of-stream was reached before all bytes were read;
+     * @throws IOException in case of I/O problems reading from the underlying input stream.
+     */
+    protected ByteBuffer readBuffer(int len) throws IOException {
+        return ByteBuffer.wrap(readFully(new byte[len]));
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the underlying input stream.
+     * 
+     * @param buf the buffer to read the bytes into, cannot be <code>null</code>;
+     * @param off the offset in the given buffer to start storing the bytes;
+     * @param len the number of bytes to read.
+     * @throws EOFException in case the end-of-stream was reached before all bytes were read;
+     * @throws IOException in case of I/O problems reading from the underlying input stream.
+     */
+    protected void readFully(byte[] buf, int off, int len) throws IOException {
+        int n = 0;
         while (n < len) {
             int count = m_is.read(buf, off + n, len - n);
             if (count < 0) {
@@ -493,6 +1087,90 @@ public class CborDecoder {
             }
             n += count;
         }
+    }
+
+    /**
+     * Reads and decodes an UTF-8 encoded string of a given length from the underlying input stream.
+     * <p>
+     * This implementation reads short strings into a reused buffer before decoding them.
+     * </p>
+     * 
+     * @param len the length, in bytes, of the string to read, &gt;= 0.
+     * @return the decoded string, never <code>null</code>.
+     * @throws IOException in case of I/O problems reading from the underlying input stream, or in case the string is
+     *         not valid UTF-8.
+     */
+    protected String readUtf8String(int len) throws IOException {
+        byte[] buf;
+        if (len <= TEXT_SCRATCH_SIZE) {
+            buf = m_textBuf;
+            if (buf == null) {
+                buf = m_textBuf = new byte[TEXT_SCRATCH_SIZE];
+            }
+        } else {
+            buf = new byte[len];
+        }
+        readFully(buf, 0, len);
+        return decodeUtf8(buf, 0, len);
+    }
+
+    /**
+     * Skips exactly the given number of bytes from the underlying input stream.
+     * 
+     * @param n the number of bytes to skip, &gt;= 0.
+     * @throws EOFException in case the end-of-stream was reached before all bytes were skipped;
+     * @throws IOException in case of I/O problems reading from the underlying input stream.
+     */
+    protected void skip(long n) throws IOException {
+        while (n > 0) {
+            long count = m_is.skip(n);
+            if (count <= 0) {
+                // the stream might not support skipping, or is at its end...
+                if (m_is.read() < 0) {
+                    throw new EOFException();
+                }
+                count = 1;
+            }
+            n -= count;
+        }
+    }
+
+    private byte[] readFully(byte[] buf) throws IOException {
+        readFully(buf, 0, buf.length);
         return buf;
     }
+
+    private ByteBuffer readStringBuffer(int majorType) throws IOException {
+        long len = readMajorTypeWithSize(majorType);
+        if (len < 0) {
+            fail("Infinite-length strings not supported!");
+        }
+        if (len > Integer.MAX_VALUE) {
+            fail("String length too long!");
+        }
+        return readBuffer((int) len).asReadOnlyBuffer();
+    }
+
+    private int readTypedArrayTag() throws IOException {
+        long tag = readTag();
+        if (!CborTypedArrays.isTypedArray(tag)) {
+            fail("Unexpected tag: %d, expected a typed array!", tag);
+        }
+        return (int) tag;
+    }
+
+    private ByteBuffer readTypedArrayPayload(int tag) throws IOException {
+        long len = readMajorTypeWithSize(TYPE_BYTE_STRING);
+        if (len < 0) {
+            fail("Infinite-length byte strings not supported!");
+        }
+        if (len > Integer.MAX_VALUE) {
+            fail("String length too long!");
+        }
+        int size = CborTypedArrays.elementSize(tag);
+        if (len % size != 0) {
+            fail("Typed array length %d is not a multiple of its element size %d!", len, size);
+        }
+        return readBuffer((int) len).order(CborTypedArrays.byteOrder(tag));
+    }
 }
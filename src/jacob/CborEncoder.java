@@ -9,16 +9,45 @@ package jacob;
 
 import static jacob.CborConstants.*;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * Provides an encoder capable of encoding data into CBOR format to a given {@link OutputStream}.
  */
 public class CborEncoder {
     private static final int NEG_INT_MASK = TYPE_NEGATIVE_INTEGER << 5;
+    /** The number of characters encoded at once when writing text strings. */
+    private static final int TEXT_CHUNK_SIZE = 256;
+    /** The number of bytes converted at once when writing typed arrays. */
+    private static final int TYPED_ARRAY_CHUNK_SIZE = 4096;
+    /** The number of bytes or characters read at once when writing strings from a stream, reader or channel. */
+    private static final int STREAM_CHUNK_SIZE = 8192;
 
     private final OutputStream m_os;
+    /** Whether or not floating point values are written in their shortest lossless form. */
+    private boolean m_shortestFloatingPoint;
+    /** Lazily allocated buffer used for encoding text strings and batches of array elements. */
+    private byte[] m_chunkBuf;
+    /** Lazily allocated buffer used for converting the elements of typed arrays. */
+    private ByteBuffer m_typedArrayBuf;
+    /** Lazily allocated buffer used for writing strings from a stream or channel. */
+    private byte[] m_streamBuf;
+    /** Lazily allocated buffer used for writing text strings from a reader. */
+    private char[] m_streamChars;
 
     /**
      * Creates a new {@link CborEncoder} instance.
@@ -33,43 +62,118 @@ public class CborEncoder {
     }
 
     /**
-     * Interprets a given float-value as a half-precision float value and
-     * converts it to its raw integer form, as defined in IEEE 754.
+     * Creates a new {@link CborEncoder} instance for subclasses that take care of writing the encoded data themselves.
      * <p>
-     * Taken from: <a href="http://stackoverflow.com/a/6162687/229140">this Stack Overflow answer</a>.
+     * Subclasses using this constructor <b>must</b> override {@link #write(int)} and {@link #write(byte[], int, int)}.
      * </p>
-     * 
-     * @param fval the value to convert.
-     * @return the raw integer representation of the given float value.
      */
-    static int halfPrecisionToRawIntBits(float fval) {
-        int fbits = Float.floatToIntBits(fval);
-        int sign = (fbits >>> 16) & 0x8000;
-        int val = (fbits & 0x7fffffff) + 0x1000;
+    protected CborEncoder() {
+        m_os = null;
+    }
 
-        // might be or become NaN/Inf
-        if (val >= 0x47800000) {
-            if ((fbits & 0x7fffffff) >= 0x47800000) { // is or must become NaN/Inf
-                if (val < 0x7f800000) {
-                    // was value but too large, make it +/-Inf
-                    return sign | 0x7c00;
-                }
-                return sign | 0x7c00 | (fbits & 0x007fffff) >>> 13; // keep NaN (and Inf) bits
-            }
-            return sign | 0x7bff; // unrounded not quite Inf
+    /**
+     * Returns the number of bytes a major type with a given payload is encoded in.
+     * 
+     * @param value the payload, such as a length or unsigned integer value, &gt;= 0.
+     * @return the encoded length, either 1, 2, 3, 5 or 9 bytes.
+     */
+    static int headLength(long value) {
+        if (value < 0x18L) {
+            return 1;
+        } else if (value < 0x100L) {
+            return 2;
+        } else if (value < 0x10000L) {
+            return 3;
+        } else if (value < 0x100000000L) {
+            return 5;
         }
-        if (val >= 0x38800000) {
-            // remains normalized value
-            return sign | val - 0x38000000 >>> 13; // exp - 127 + 15
+        return 9;
+    }
+
+    /**
+     * Encodes a major type with a given payload in canonical CBOR format into a given byte array.
+     * 
+     * @param buf the byte array to encode into, should have room for {@link #headLength(long)} bytes;
+     * @param pos the position in the given array to encode at;
+     * @param mt the major type, shifted into the upper three bits;
+     * @param value the payload, such as a length or unsigned integer value, &gt;= 0.
+     * @return the position directly after the encoded bytes.
+     */
+    static int putHead(byte[] buf, int pos, int mt, long value) {
+        if (value < 0x18L) {
+            buf[pos] = (byte) (mt | value);
+            return pos + 1;
+        } else if (value < 0x100L) {
+            buf[pos] = (byte) (mt | ONE_BYTE);
+            buf[pos + 1] = (byte) value;
+            return pos + 2;
+        } else if (value < 0x10000L) {
+            buf[pos] = (byte) (mt | TWO_BYTES);
+            buf[pos + 1] = (byte) (value >> 8);
+            buf[pos + 2] = (byte) value;
+            return pos + 3;
+        } else if (value < 0x100000000L) {
+            buf[pos] = (byte) (mt | FOUR_BYTES);
+            buf[pos + 1] = (byte) (value >> 24);
+            buf[pos + 2] = (byte) (value >> 16);
+            buf[pos + 3] = (byte) (value >> 8);
+            buf[pos + 4] = (byte) value;
+            return pos + 5;
         }
-        if (val < 0x33000000) {
-            // too small for subnormal
-            return sign; // becomes +/-0
+        buf[pos] = (byte) (mt | EIGHT_BYTES);
+        return putLong(buf, pos + 1, value);
+    }
+
+    /**
+     * Encodes a given value as eight big endian bytes into a given byte array.
+     * 
+     * @return the position directly after the encoded bytes.
+     */
+    static int putLong(byte[] buf, int pos, long value) {
+        buf[pos] = (byte) (value >> 56);
+        buf[pos + 1] = (byte) (value >> 48);
+        buf[pos + 2] = (byte) (value >> 40);
+        buf[pos + 3] = (byte) (value >> 32);
+        buf[pos + 4] = (byte) (value >> 24);
+        buf[pos + 5] = (byte) (value >> 16);
+        buf[pos + 6] = (byte) (value >> 8);
+        buf[pos + 7] = (byte) value;
+        return pos + 8;
+    }
+
+    /**
+     * Verifies that a given offset and length denote a valid range in an array of a given length.
+     * 
+     * @throws IndexOutOfBoundsException in case the range is invalid.
+     */
+    static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException("Invalid offset and/or length!");
         }
+    }
 
-        val = (fbits & 0x7fffffff) >>> 23;
-        // add subnormal bit, round depending on cut off and div by 2^(1-(exp-127+15)) and >> 13 | exp=0
-        return sign | ((fbits & 0x7fffff | 0x800000) + (0x800000 >>> val - 102) >>> 126 - val);
+    /**
+     * @return <code>true</code> if {@link #writeDouble(double)} and {@link #writeFloat(float)} write their values in
+     *         the shortest lossless form, <code>false</code> if they always use the width implied by their name.
+     * @see #setShortestFloatingPoint(boolean)
+     */
+    public boolean isShortestFloatingPoint() {
+        return m_shortestFloatingPoint;
+    }
+
+    /**
+     * Sets whether all floating point values written by this encoder are written in their shortest lossless form.
+     * <p>
+     * When enabled, {@link #writeDouble(double)} and {@link #writeFloat(float)} behave like
+     * {@link #writeFloatingPoint(double)}. This does not affect {@link #writeHalfPrecisionFloat(float)}. By default,
+     * this is disabled.
+     * </p>
+     * 
+     * @param shortest <code>true</code> to write floating point values in their shortest lossless form,
+     *        <code>false</code> to write them in the width implied by the method used.
+     */
+    public void setShortestFloatingPoint(boolean shortest) {
+        m_shortestFloatingPoint = shortest;
     }
 
     /**
@@ -131,6 +235,105 @@ public class CborEncoder {
         writeString(TYPE_BYTE_STRING, bytes);
     }
 
+    /**
+     * Writes a byte string read from a given input stream, without reading it into memory as a whole.
+     * <p>
+     * In case the length of the byte string is known, it is written as definite-length byte string, of which the
+     * payload is read and written in chunks. Otherwise, it is written as indefinite-length byte string, of which each
+     * part is read until the end of the stream is reached.
+     * </p>
+     * 
+     * @param in the input stream to read the byte string from, cannot be <code>null</code>. The stream is not closed;
+     * @param length the number of bytes to read from the given stream, or <tt>-1</tt> in case it is unknown.
+     * @throws EOFException in case the given stream ended before the given number of bytes were read;
+     * @throws IOException in case of I/O problems reading from the given stream or writing the CBOR-encoded value to the
+     *         underlying output stream.
+     */
+    public void writeByteString(InputStream in, long length) throws IOException {
+        byte[] buf = streamBuffer();
+        if (length < 0) {
+            writeByteStringStart();
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                if (n > 0) {
+                    writeType(TYPE_BYTE_STRING, n);
+                    write(buf, 0, n);
+                }
+            }
+            writeBreak();
+            return;
+        }
+
+        writeType(TYPE_BYTE_STRING, length);
+        while (length > 0) {
+            int n = in.read(buf, 0, (int) Math.min(length, buf.length));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of stream: " + length + " bytes left to read!");
+            }
+            write(buf, 0, n);
+            length -= n;
+        }
+    }
+
+    /**
+     * Writes a byte string read from a given channel, without reading it into memory as a whole.
+     * <p>
+     * This method behaves like {@link #writeByteString(InputStream, long)}, but reads the bytes from a channel. In case
+     * the length of the byte string is known, the payload is written by {@link #transferFrom(ReadableByteChannel, long)},
+     * which allows subclasses to transfer the bytes directly from, for example, a file channel.
+     * </p>
+     * 
+     * @param channel the channel to read the byte string from, should be in blocking mode, cannot be <code>null</code>.
+     *        The channel is not closed;
+     * @param length the number of bytes to read from the given channel, or <tt>-1</tt> in case it is unknown.
+     * @throws EOFException in case the given channel reached its end before the given number of bytes were read;
+     * @throws IOException in case of I/O problems reading from the given channel or writing the CBOR-encoded value to
+     *         the underlying output stream.
+     */
+    public void writeByteString(ReadableByteChannel channel, long length) throws IOException {
+        if (length < 0) {
+            byte[] buf = streamBuffer();
+            ByteBuffer bb = ByteBuffer.wrap(buf);
+            writeByteStringStart();
+            int n;
+            while ((n = channel.read(bb)) >= 0) {
+                if (n > 0) {
+                    writeType(TYPE_BYTE_STRING, n);
+                    write(buf, 0, n);
+                }
+                bb.clear();
+            }
+            writeBreak();
+            return;
+        }
+
+        writeType(TYPE_BYTE_STRING, length);
+        transferFrom(channel, length);
+    }
+
+    /**
+     * Writes a number of byte strings as definite-length array in canonical CBOR format.
+     * <p>
+     * This is equivalent to calling {@link #writeArrayStart(int)} followed by {@link #writeByteString(byte[])} for
+     * each byte string, but avoids the per-element overhead of doing so.
+     * </p>
+     * 
+     * @param values the array containing the byte strings to write, cannot be <code>null</code>. A <code>null</code>
+     *        element is written as byte string of length <tt>0</tt>;
+     * @param off the offset of the first byte string to write;
+     * @param len the number of byte strings to write, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeByteStringArray(byte[][] values, int off, int len) throws IOException {
+        checkRange(values.length, off, len);
+        writeType(TYPE_ARRAY, len);
+        for (int i = off, end = off + len; i < end; i++) {
+            writeString(TYPE_BYTE_STRING, values[i]);
+        }
+    }
+
     /**
      * Writes the start of an indefinite-length byte string.
      * <p>
@@ -151,9 +354,51 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     public void writeDouble(double value) throws IOException {
+        if (m_shortestFloatingPoint) {
+            writeFloatingPoint(value);
+            return;
+        }
         writeUInt64(TYPE_FLOAT_SIMPLE << 5, Double.doubleToRawLongBits(value));
     }
 
+    /**
+     * Writes a number of double-precision floats as definite-length array in CBOR format.
+     * <p>
+     * This is equivalent to calling {@link #writeArrayStart(int)} followed by {@link #writeDouble(double)} for each
+     * value, but encodes the values in batches instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     * @see #setShortestFloatingPoint(boolean)
+     */
+    public void writeDoubleArray(double[] values, int off, int len) throws IOException {
+        checkRange(values.length, off, len);
+        writeType(TYPE_ARRAY, len);
+        if (m_shortestFloatingPoint) {
+            for (int i = off, end = off + len; i < end; i++) {
+                writeFloatingPoint(values[i]);
+            }
+            return;
+        }
+
+        byte[] buf = chunkBuffer();
+        int pos = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            if (pos > buf.length - 9) {
+                write(buf, 0, pos);
+                pos = 0;
+            }
+            buf[pos] = (byte) ((TYPE_FLOAT_SIMPLE << 5) | DOUBLE_PRECISION_FLOAT);
+            pos = putLong(buf, pos + 1, Double.doubleToRawLongBits(values[i]));
+        }
+        write(buf, 0, pos);
+    }
+
     /**
      * Writes a single-precision float value in canonical CBOR format.
      * 
@@ -161,9 +406,81 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     public void writeFloat(float value) throws IOException {
+        if (m_shortestFloatingPoint) {
+            writeFloatingPoint(value);
+            return;
+        }
         writeUInt32(TYPE_FLOAT_SIMPLE << 5, Float.floatToRawIntBits(value));
     }
 
+    /**
+     * Writes a floating point value in the shortest form that represents it exactly.
+     * <p>
+     * The value is written as half-precision float if that is lossless, otherwise as single-precision float if that is
+     * lossless, or as double-precision float. This is the "preferred serialization" of floating point values, as
+     * defined in RFC 8949. The width is determined by inspecting the exponent and trailing zero bits of the value,
+     * infinities and zeros are always written as half-precision float, and NaN values are written in the shortest form
+     * that keeps their payload.
+     * </p>
+     * 
+     * @param value the value to write, any double value is supported.
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeFloatingPoint(double value) throws IOException {
+        long bits = Double.doubleToRawLongBits(value);
+        int sign = (int) (bits >>> 63);
+        int exp = (int) (bits >>> 52) & 0x7ff;
+        long mant = bits & 0xfffffffffffffL;
+        // 64 in case of a zero mantissa...
+        int tz = Long.numberOfTrailingZeros(mant);
+        int mt = TYPE_FLOAT_SIMPLE << 5;
+
+        if (exp == 0x7ff) {
+            // infinity or NaN, keep the payload...
+            if (tz >= 42) {
+                writeUInt16(mt, (sign << 15) | 0x7c00 | (int) (mant >>> 42));
+                return;
+            }
+            if (tz >= 29) {
+                writeUInt32(mt, (sign << 31) | 0x7f800000 | (int) (mant >>> 29));
+                return;
+            }
+        } else if (exp == 0) {
+            // zero or subnormal value; the latter is too small for any shorter form...
+            if (mant == 0) {
+                writeUInt16(mt, sign << 15);
+                return;
+            }
+        } else {
+            int e = exp - 1023;
+            if (e >= -24 && e <= 15) {
+                if (e >= -14) {
+                    if (tz >= 42) {
+                        writeUInt16(mt, (sign << 15) | ((e + 15) << 10) | (int) (mant >>> 42));
+                        return;
+                    }
+                } else if (tz >= 42 + (-14 - e)) {
+                    // subnormal half-precision value...
+                    writeUInt16(mt, (sign << 15) | (int) ((mant | (1L << 52)) >>> (42 + (-14 - e))));
+                    return;
+                }
+            }
+            if (e >= -149 && e <= 127) {
+                if (e >= -126) {
+                    if (tz >= 29) {
+                        writeUInt32(mt, (sign << 31) | ((e + 127) << 23) | (int) (mant >>> 29));
+                        return;
+                    }
+                } else if (tz >= 29 + (-126 - e)) {
+                    // subnormal single-precision value...
+                    writeUInt32(mt, (sign << 31) | (int) ((mant | (1L << 52)) >>> (29 + (-126 - e))));
+                    return;
+                }
+            }
+        }
+        writeUInt64(mt, bits);
+    }
+
     /**
      * Writes a half-precision float value in canonical CBOR format.
      * 
@@ -171,7 +488,7 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     public void writeHalfPrecisionFloat(float value) throws IOException {
-        writeUInt16(TYPE_FLOAT_SIMPLE << 5, halfPrecisionToRawIntBits(value));
+        writeUInt16(TYPE_FLOAT_SIMPLE << 5, CborHalfFloat.fromFloat(value));
     }
 
     /**
@@ -251,6 +568,38 @@ public class CborEncoder {
         writeUInt8(mt, (sign ^ value) & 0xff);
     }
 
+    /**
+     * Writes a number of signed or unsigned integer values as definite-length array in canonical CBOR format.
+     * <p>
+     * This is equivalent to calling {@link #writeArrayStart(int)} followed by {@link #writeInt(long)} for each value,
+     * but encodes the values in batches instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeIntArray(long[] values, int off, int len) throws IOException {
+        checkRange(values.length, off, len);
+        writeType(TYPE_ARRAY, len);
+
+        byte[] buf = chunkBuffer();
+        int pos = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            if (pos > buf.length - 9) {
+                write(buf, 0, pos);
+                pos = 0;
+            }
+            long value = values[i];
+            long sign = value >> 63;
+            pos = putHead(buf, pos, (int) (sign & NEG_INT_MASK), sign ^ value);
+        }
+        write(buf, 0, pos);
+    }
+
     /**
      * Writes the start of an indefinite-length map.
      * <p>
@@ -316,7 +665,7 @@ public class CborEncoder {
         // complement negative value...
         value = Math.min(0x17, (sign ^ value));
 
-        m_os.write((int) (mt | value));
+        write(mt | value);
     }
 
     /**
@@ -333,18 +682,105 @@ public class CborEncoder {
         writeType(TYPE_TAG, tag);
     }
 
+    /**
+     * Writes a number of UTF-8 strings as definite-length array in canonical CBOR format.
+     * <p>
+     * This is equivalent to calling {@link #writeArrayStart(int)} followed by {@link #writeTextString(String)} for
+     * each string, but avoids the per-element overhead of doing so.
+     * </p>
+     * 
+     * @param values the array containing the strings to write, cannot be <code>null</code>. A <code>null</code> element
+     *        is written as string of length <tt>0</tt>;
+     * @param off the offset of the first string to write;
+     * @param len the number of strings to write, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTextArray(String[] values, int off, int len) throws IOException {
+        checkRange(values.length, off, len);
+        writeType(TYPE_ARRAY, len);
+        for (int i = off, end = off + len; i < end; i++) {
+            writeTextString(values[i]);
+        }
+    }
+
     /**
      * Writes an UTF-8 string in canonical CBOR-format.
      * <p>
-     * Note that this method is <em>platform</em> specific, as the given string value will be encoded in a byte array
-     * using the <em>platform</em> encoding! This means that the encoding must be standardized and known.
+     * The characters of the given string are encoded as UTF-8 directly, without creating an intermediate byte array.
+     * Unpaired surrogate characters are encoded as <tt>'?'</tt>.
      * </p>
      * 
      * @param value the UTF-8 string to write, can be <code>null</code> in which case an UTF-8 string of length <tt>0</tt> is written.
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     public void writeTextString(String value) throws IOException {
-        writeString(TYPE_TEXT_STRING, value == null ? null : value.getBytes("UTF-8"));
+        writeTextString((CharSequence) value);
+    }
+
+    /**
+     * Writes a sequence of characters as UTF-8 string in canonical CBOR-format.
+     * 
+     * @param value the characters to write, can be <code>null</code> in which case an UTF-8 string of length <tt>0</tt> is written.
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     * @see #writeTextString(String)
+     */
+    public void writeTextString(CharSequence value) throws IOException {
+        if (value == null) {
+            writeType(TYPE_TEXT_STRING, 0);
+        } else {
+            writeUtf8String(value, 0, value.length());
+        }
+    }
+
+    /**
+     * Writes a range of characters as UTF-8 string in canonical CBOR-format.
+     * 
+     * @param value the characters to write, cannot be <code>null</code>;
+     * @param off the index of the first character to write;
+     * @param len the number of characters to write.
+     * @throws IndexOutOfBoundsException in case the given offset and length do not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     * @see #writeTextString(String)
+     */
+    public void writeTextString(char[] value, int off, int len) throws IOException {
+        writeUtf8String(CharBuffer.wrap(value, off, len), 0, len);
+    }
+
+    /**
+     * Writes the characters read from a given reader as indefinite-length UTF-8 string, without reading them into
+     * memory as a whole.
+     * <p>
+     * The characters are read and written in parts, each of which is a definite-length UTF-8 string. Surrogate pairs
+     * are never split over two parts.
+     * </p>
+     * 
+     * @param reader the reader to read the characters from, cannot be <code>null</code>. The reader is not closed.
+     * @throws IOException in case of I/O problems reading from the given reader or writing the CBOR-encoded value to the
+     *         underlying output stream.
+     */
+    public void writeTextString(Reader reader) throws IOException {
+        char[] chars = streamCharBuffer();
+        CharBuffer cb = CharBuffer.wrap(chars);
+        writeTextStringStart();
+        int len = 0;
+        int n;
+        while ((n = reader.read(chars, len, chars.length - len)) >= 0) {
+            len += n;
+            // keep a trailing high surrogate for the next part...
+            int partLen = (len > 0 && Character.isHighSurrogate(chars[len - 1])) ? len - 1 : len;
+            if (partLen > 0 && (partLen == len || len == chars.length)) {
+                writeUtf8String(cb, 0, partLen);
+                System.arraycopy(chars, partLen, chars, 0, len - partLen);
+                len -= partLen;
+            }
+        }
+        if (len > 0) {
+            writeUtf8String(cb, 0, len);
+        }
+        writeBreak();
     }
 
     /**
@@ -360,6 +796,101 @@ public class CborEncoder {
         writeSimpleType(TYPE_TEXT_STRING, BREAK);
     }
 
+    /**
+     * Writes a number of double-precision floats as typed array, as defined in RFC 8746.
+     * <p>
+     * The values are written as a single byte string, tagged with {@link CborConstants#TAG_FLOAT64_BE_ARRAY} or its little
+     * endian counterpart, and are copied in bulk instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0;
+     * @param order the byte order to write the values in, cannot be <code>null</code>.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTypedArray(double[] values, int off, int len, ByteOrder order) throws IOException {
+        writeTypedArray(DoubleBuffer.wrap(values, off, len), TAG_FLOAT64_BE_ARRAY, order);
+    }
+
+    /**
+     * Writes a number of single-precision floats as typed array, as defined in RFC 8746.
+     * <p>
+     * The values are written as a single byte string, tagged with {@link CborConstants#TAG_FLOAT32_BE_ARRAY} or its little
+     * endian counterpart, and are copied in bulk instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0;
+     * @param order the byte order to write the values in, cannot be <code>null</code>.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTypedArray(float[] values, int off, int len, ByteOrder order) throws IOException {
+        writeTypedArray(FloatBuffer.wrap(values, off, len), TAG_FLOAT32_BE_ARRAY, order);
+    }
+
+    /**
+     * Writes a number of signed 32-bit integers as typed array, as defined in RFC 8746.
+     * <p>
+     * The values are written as a single byte string, tagged with {@link CborConstants#TAG_SINT32_BE_ARRAY} or its little
+     * endian counterpart, and are copied in bulk instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0;
+     * @param order the byte order to write the values in, cannot be <code>null</code>.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTypedArray(int[] values, int off, int len, ByteOrder order) throws IOException {
+        writeTypedArray(IntBuffer.wrap(values, off, len), TAG_SINT32_BE_ARRAY, order);
+    }
+
+    /**
+     * Writes a number of signed 64-bit integers as typed array, as defined in RFC 8746.
+     * <p>
+     * The values are written as a single byte string, tagged with {@link CborConstants#TAG_SINT64_BE_ARRAY} or its little
+     * endian counterpart, and are copied in bulk instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0;
+     * @param order the byte order to write the values in, cannot be <code>null</code>.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTypedArray(long[] values, int off, int len, ByteOrder order) throws IOException {
+        writeTypedArray(LongBuffer.wrap(values, off, len), TAG_SINT64_BE_ARRAY, order);
+    }
+
+    /**
+     * Writes a number of signed 16-bit integers as typed array, as defined in RFC 8746.
+     * <p>
+     * The values are written as a single byte string, tagged with {@link CborConstants#TAG_SINT16_BE_ARRAY} or its little
+     * endian counterpart, and are copied in bulk instead of one by one.
+     * </p>
+     * 
+     * @param values the array containing the values to write, cannot be <code>null</code>;
+     * @param off the offset of the first value to write;
+     * @param len the number of values to write, &gt;= 0;
+     * @param order the byte order to write the values in, cannot be <code>null</code>.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array;
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    public void writeTypedArray(short[] values, int off, int len, ByteOrder order) throws IOException {
+        writeTypedArray(ShortBuffer.wrap(values, off, len), TAG_SINT16_BE_ARRAY, order);
+    }
+
     /**
      * Writes an "undefined" value in canonical CBOR format.
      * 
@@ -369,6 +900,89 @@ public class CborEncoder {
         writeSimpleType(TYPE_FLOAT_SIMPLE, UNDEFINED);
     }
 
+    /**
+     * Reads a given number of bytes from a channel and writes them as raw bytes to the underlying output stream.
+     * <p>
+     * This implementation reads the bytes in chunks into a reused buffer, and writes each chunk using
+     * {@link #write(byte[], int, int)}. Subclasses can transfer the bytes more efficiently, for example by using
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     * </p>
+     * 
+     * @param channel the channel to read the bytes from, cannot be <code>null</code>;
+     * @param length the number of bytes to read, &gt;= 0.
+     * @throws EOFException in case the given channel reached its end before the given number of bytes were read;
+     * @throws IOException in case of I/O problems reading from the given channel or writing the bytes to the underlying
+     *         output stream.
+     */
+    protected void transferFrom(ReadableByteChannel channel, long length) throws IOException {
+        byte[] buf = streamBuffer();
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        while (length > 0) {
+            bb.limit((int) Math.min(length, buf.length));
+            int n = channel.read(bb);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of channel: " + length + " bytes left to read!");
+            }
+            write(buf, 0, n);
+            length -= n;
+            bb.clear();
+        }
+    }
+
+    /**
+     * Writes a single byte to the underlying output stream.
+     * 
+     * @param b the byte to write, only the lower 8 bits are used.
+     * @throws IOException in case of I/O problems writing the byte to the underlying output stream.
+     */
+    protected void write(int b) throws IOException {
+        m_os.write(b);
+    }
+
+    /**
+     * Writes a range of bytes to the underlying output stream.
+     * 
+     * @param b the bytes to write, cannot be <code>null</code>;
+     * @param off the offset in the given array to start writing from;
+     * @param len the number of bytes to write.
+     * @throws IOException in case of I/O problems writing the bytes to the underlying output stream.
+     */
+    protected void write(byte[] b, int off, int len) throws IOException {
+        m_os.write(b, off, len);
+    }
+
+    /**
+     * Writes all remaining elements of a given buffer as raw bytes to the underlying output stream.
+     * <p>
+     * This implementation converts the elements in chunks into a reused byte buffer, and writes each chunk using
+     * {@link #write(byte[], int, int)}.
+     * </p>
+     * 
+     * @param values the short, int, long, float or double buffer containing the elements to write, cannot be
+     *        <code>null</code>;
+     * @param elementSize the size, in bytes, of a single element;
+     * @param order the byte order to write the elements in, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems writing the elements to the underlying output stream.
+     */
+    protected void writeElements(Buffer values, int elementSize, ByteOrder order) throws IOException {
+        ByteBuffer chunk = m_typedArrayBuf;
+        if (chunk == null) {
+            chunk = m_typedArrayBuf = ByteBuffer.allocate(TYPED_ARRAY_CHUNK_SIZE);
+        }
+        chunk.order(order);
+
+        int limit = values.limit();
+        int perChunk = TYPED_ARRAY_CHUNK_SIZE / elementSize;
+        while (values.hasRemaining()) {
+            int n = Math.min(values.remaining(), perChunk);
+            values.limit(values.position() + n);
+            CborTypedArrays.put(chunk, values);
+            values.limit(limit);
+
+            write(chunk.array(), 0, n * elementSize);
+        }
+    }
+
     /**
      * Encodes and writes the major type and value as a simple type.
      * 
@@ -377,7 +991,7 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected void writeSimpleType(int majorType, int value) throws IOException {
-        m_os.write((majorType << 5) | (value & 0x1f));
+        write((majorType << 5) | (value & 0x1f));
     }
 
     /**
@@ -390,8 +1004,8 @@ public class CborEncoder {
     protected void writeString(int majorType, byte[] bytes) throws IOException {
         int len = (bytes == null) ? 0 : bytes.length;
         writeType(majorType, len);
-        for (int i = 0; i < len; i++) {
-            m_os.write(bytes[i]);
+        if (len > 0) {
+            write(bytes, 0, len);
         }
     }
 
@@ -415,7 +1029,7 @@ public class CborEncoder {
      */
     protected void writeUInt(int mt, long value) throws IOException {
         if (value < 0x18L) {
-            m_os.write((int) (mt | value));
+            write((int) (mt | value));
         } else if (value < 0x100L) {
             writeUInt8(mt, (int) value);
         } else if (value < 0x10000L) {
@@ -435,9 +1049,9 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected void writeUInt16(int mt, int value) throws IOException {
-        m_os.write(mt | TWO_BYTES);
-        m_os.write(value >> 8);
-        m_os.write(value & 0xFF);
+        write(mt | TWO_BYTES);
+        write(value >> 8);
+        write(value & 0xFF);
     }
 
     /**
@@ -448,11 +1062,11 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected void writeUInt32(int mt, int value) throws IOException {
-        m_os.write(mt | FOUR_BYTES);
-        m_os.write(value >> 24);
-        m_os.write(value >> 16);
-        m_os.write(value >> 8);
-        m_os.write(value & 0xFF);
+        write(mt | FOUR_BYTES);
+        write(value >> 24);
+        write(value >> 16);
+        write(value >> 8);
+        write(value & 0xFF);
     }
 
     /**
@@ -463,15 +1077,15 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected void writeUInt64(int mt, long value) throws IOException {
-        m_os.write(mt | EIGHT_BYTES);
-        m_os.write((int) (value >> 56));
-        m_os.write((int) (value >> 48));
-        m_os.write((int) (value >> 40));
-        m_os.write((int) (value >> 32));
-        m_os.write((int) (value >> 24));
-        m_os.write((int) (value >> 16));
-        m_os.write((int) (value >> 8));
-        m_os.write((int) (value & 0xFF));
+        write(mt | EIGHT_BYTES);
+        write((int) (value >> 56));
+        write((int) (value >> 48));
+        write((int) (value >> 40));
+        write((int) (value >> 32));
+        write((int) (value >> 24));
+        write((int) (value >> 16));
+        write((int) (value >> 8));
+        write((int) (value & 0xFF));
     }
 
     /**
@@ -482,7 +1096,81 @@ public class CborEncoder {
      * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
      */
     protected void writeUInt8(int mt, int value) throws IOException {
-        m_os.write(mt | ONE_BYTE);
-        m_os.write(value & 0xFF);
+        write(mt | ONE_BYTE);
+        write(value & 0xFF);
+    }
+
+    /**
+     * Writes a range of characters as UTF-8 string in canonical CBOR-format.
+     * <p>
+     * This implementation determines the encoded length up front, and then calls
+     * {@link #writeUtf8String(CharSequence, int, int, long)}.
+     * </p>
+     * 
+     * @param value the characters to write, cannot be <code>null</code>;
+     * @param off the index of the first character to write;
+     * @param len the number of characters to write.
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    protected void writeUtf8String(CharSequence value, int off, int len) throws IOException {
+        writeUtf8String(value, off, len, CborUtf8.encodedLength(value, off, len));
+    }
+
+    /**
+     * Writes a range of characters, of which the encoded length is already known, as UTF-8 string in canonical
+     * CBOR-format, by encoding the characters in chunks into a small, reused, buffer.
+     * 
+     * @param value the characters to write, cannot be <code>null</code>;
+     * @param off the index of the first character to write;
+     * @param len the number of characters to write;
+     * @param utf8Len the number of bytes the given characters are encoded in as UTF-8, &gt;= <tt>len</tt>.
+     * @throws IOException in case of I/O problems writing the CBOR-encoded value to the underlying output stream.
+     */
+    protected final void writeUtf8String(CharSequence value, int off, int len, long utf8Len) throws IOException {
+        writeType(TYPE_TEXT_STRING, utf8Len);
+
+        byte[] buf = chunkBuffer();
+        int end = off + len;
+        while (off < end) {
+            int n = CborUtf8.chunkLength(value, off, Math.min(TEXT_CHUNK_SIZE, end - off));
+            write(buf, 0, CborUtf8.encode(value, off, n, buf, 0));
+            off += n;
+        }
+    }
+
+    private byte[] chunkBuffer() {
+        byte[] buf = m_chunkBuf;
+        if (buf == null) {
+            buf = m_chunkBuf = new byte[TEXT_CHUNK_SIZE * CborUtf8.MAX_BYTES_PER_CHAR];
+        }
+        return buf;
+    }
+
+    private byte[] streamBuffer() {
+        byte[] buf = m_streamBuf;
+        if (buf == null) {
+            buf = m_streamBuf = new byte[STREAM_CHUNK_SIZE];
+        }
+        return buf;
+    }
+
+    private char[] streamCharBuffer() {
+        char[] chars = m_streamChars;
+        if (chars == null) {
+            chars = m_streamChars = new char[STREAM_CHUNK_SIZE];
+        }
+        return chars;
+    }
+
+    private void writeTypedArray(Buffer values, int bigEndianTag, ByteOrder order) throws IOException {
+        if (order == null) {
+            throw new IllegalArgumentException("Byte order cannot be null!");
+        }
+        int tag = CborTypedArrays.tag(bigEndianTag, order);
+        int elementSize = CborTypedArrays.elementSize(tag);
+
+        writeTag(tag);
+        writeType(TYPE_BYTE_STRING, (long) values.remaining() * elementSize);
+        writeElements(values, elementSize, order);
     }
 }
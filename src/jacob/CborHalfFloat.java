@@ -0,0 +1,145 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+/**
+ * Provides conversions between single-precision floats and raw half-precision floats, as defined in IEEE 754, both
+ * for single values and for arrays of values.
+ * <p>
+ * All conversions are done by bit manipulation only, without any floating point arithmetic other than scaling
+ * subnormal values, which is exact.
+ * </p>
+ */
+public final class CborHalfFloat {
+    /** The scale of the least significant bit of a subnormal half-precision float, 2<sup>-24</sup>. */
+    private static final float SUBNORMAL_SCALE = 0x1p-24f;
+
+    private CborHalfFloat() {
+        // Nop
+    }
+
+    /**
+     * Converts a given float value to its raw half-precision float representation, as defined in IEEE 754.
+     * <p>
+     * Values are rounded to the nearest half-precision float, with ties rounded away from zero. Values that are too
+     * large for a half-precision float are converted to infinity, except for values that only become too large by
+     * rounding, which are converted to the largest half-precision float (65504). Values that are too small are
+     * converted to zero. All NaN values are converted to the canonical NaN value.
+     * </p>
+     * <p>
+     * Taken from: <a href="http://stackoverflow.com/a/6162687/229140">this Stack Overflow answer</a>.
+     * </p>
+     * 
+     * @param value the value to convert.
+     * @return the raw half-precision float representation of the given value, in the lower 16 bits.
+     */
+    public static int fromFloat(float value) {
+        int fbits = Float.floatToIntBits(value);
+        int sign = (fbits >>> 16) & 0x8000;
+        int abs = fbits & 0x7fffffff;
+        int val = abs + 0x1000;
+
+        if (val >= 0x38800000 && val < 0x47800000) {
+            // remains normalized value, by far the most common case...
+            return sign | val - 0x38000000 >>> 13; // exp - 127 + 15
+        }
+        if (val >= 0x47800000) {
+            // might be or become NaN/Inf
+            if (abs >= 0x47800000) { // is or must become NaN/Inf
+                if (val < 0x7f800000) {
+                    // was value but too large, make it +/-Inf
+                    return sign | 0x7c00;
+                }
+                return sign | 0x7c00 | (abs & 0x007fffff) >>> 13; // keep NaN (and Inf) bits
+            }
+            return sign | 0x7bff; // unrounded not quite Inf
+        }
+        if (val < 0x33000000) {
+            // too small for subnormal
+            return sign; // becomes +/-0
+        }
+
+        int exp = abs >>> 23;
+        // add subnormal bit, round depending on cut off and div by 2^(1-(exp-127+15)) and >> 13 | exp=0
+        return sign | ((abs & 0x7fffff | 0x800000) + (0x800000 >>> exp - 102) >>> 126 - exp);
+    }
+
+    /**
+     * Converts a number of float values to big-endian, raw half-precision floats, as used in CBOR.
+     * 
+     * @param src the values to convert, cannot be <code>null</code>;
+     * @param srcOff the offset of the first value to convert;
+     * @param len the number of values to convert, &gt;= 0;
+     * @param dst the array to store the converted values in, two bytes per value, cannot be <code>null</code>;
+     * @param dstOff the offset in the given destination array to store the first converted value.
+     * @throws IndexOutOfBoundsException in case the given offsets and length did not denote valid ranges in the given
+     *         arrays.
+     * @see #fromFloat(float)
+     */
+    public static void fromFloats(float[] src, int srcOff, int len, byte[] dst, int dstOff) {
+        checkRanges(src.length, srcOff, len, dst.length, dstOff);
+        for (int i = 0; i < len; i++) {
+            int half = fromFloat(src[srcOff + i]);
+            dst[dstOff++] = (byte) (half >> 8);
+            dst[dstOff++] = (byte) half;
+        }
+    }
+
+    /**
+     * Converts a given raw half-precision float value, as defined in IEEE 754, to a float value.
+     * <p>
+     * As every half-precision float can be represented exactly as float, this conversion is lossless, and NaN values
+     * keep their payload.
+     * </p>
+     * 
+     * @param half the raw half-precision float value to convert, only the lower 16 bits are used.
+     * @return the converted float value.
+     */
+    public static float toFloat(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exp = half & 0x7c00;
+        int mant = half & 0x3ff;
+
+        if (exp == 0x7c00) {
+            // Inf or NaN...
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        }
+        if (exp != 0) {
+            // normalized value: rebias the exponent from 15 to 127...
+            return Float.intBitsToFloat(sign | ((exp | mant) + 0x1c000) << 13);
+        }
+        // zero or subnormal value...
+        return Float.intBitsToFloat(sign | Float.floatToRawIntBits(mant * SUBNORMAL_SCALE));
+    }
+
+    /**
+     * Converts a number of big-endian, raw half-precision floats, as used in CBOR, to float values.
+     * 
+     * @param src the raw half-precision floats to convert, two bytes per value, cannot be <code>null</code>;
+     * @param srcOff the offset of the first raw value to convert;
+     * @param dst the array to store the converted values in, cannot be <code>null</code>;
+     * @param dstOff the offset in the given destination array to store the first converted value;
+     * @param len the number of values to convert, &gt;= 0.
+     * @throws IndexOutOfBoundsException in case the given offsets and length did not denote valid ranges in the given
+     *         arrays.
+     * @see #toFloat(int)
+     */
+    public static void toFloats(byte[] src, int srcOff, float[] dst, int dstOff, int len) {
+        checkRanges(dst.length, dstOff, len, src.length, srcOff);
+        for (int i = 0; i < len; i++) {
+            dst[dstOff + i] = toFloat((src[srcOff] & 0xff) << 8 | (src[srcOff + 1] & 0xff));
+            srcOff += 2;
+        }
+    }
+
+    private static void checkRanges(int floatsLength, int floatsOff, int len, int bytesLength, int bytesOff) {
+        if (floatsOff < 0 || len < 0 || len > floatsLength - floatsOff || bytesOff < 0 || len > (bytesLength - bytesOff) / 2) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Provides a decoder capable of handling CBOR encoded data from a file of arbitrary size using memory-mapped I/O.
+ * <p>
+ * The file is mapped in windows of a fixed size, which are replaced when decoding crosses their end. A window is
+ * enlarged when a single string or typed array does not fit in it, so values up to 2 GB are always read from a single
+ * mapping. The positions of {@link #getFilePosition()} and {@link #seek(long)} are absolute file positions,
+ * regardless of the current window, and the number of bytes left to read is {@link #getFileSize()} minus
+ * {@link #getFilePosition()}. As the current window is an implementation detail, {@link #getPosition()} and
+ * {@link #remaining()} are not supported.
+ * </p>
+ * <p>
+ * Strings read by {@link #readByteStringBuffer()} and {@link #readTextStringBuffer()} are views on the mapping and are
+ * not copied. They remain valid after the window is replaced, but should not be used after the file is truncated.
+ * </p>
+ * <p>
+ * The size of the file is determined upon construction; data appended to the file afterwards is not decoded.
+ * </p>
+ */
+public class CborMappedFileDecoder extends CborByteBufferDecoder {
+    /** The default size of the mapped windows, in bytes. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel m_channel;
+    private final long m_size;
+    private final int m_windowSize;
+    // the file position of the first byte of the current window...
+    private long m_base;
+
+    /**
+     * Creates a new {@link CborMappedFileDecoder} instance with a default window size, starting at the current
+     * position of the given channel.
+     * 
+     * @param channel the file channel to read the CBOR-encoded data from, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code>;
+     * @throws IOException in case of I/O problems accessing the given channel.
+     */
+    public CborMappedFileDecoder(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a new {@link CborMappedFileDecoder} instance, starting at the current position of the given channel.
+     * 
+     * @param channel the file channel to read the CBOR-encoded data from, cannot be <code>null</code>;
+     * @param windowSize the size of the mapped windows, in bytes, should be &gt;= 9.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code> or the given window size was
+     *         too small;
+     * @throws IOException in case of I/O problems accessing the given channel.
+     */
+    public CborMappedFileDecoder(FileChannel channel, int windowSize) throws IOException {
+        super(ByteBuffer.allocate(0));
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null!");
+        }
+        if (windowSize < 9) {
+            throw new IllegalArgumentException("Window size should be at least 9 bytes!");
+        }
+        m_channel = channel;
+        m_size = channel.size();
+        m_windowSize = windowSize;
+        m_base = Math.min(channel.position(), m_size);
+    }
+
+    /**
+     * @return the position in the file of the next byte to read, &gt;= 0.
+     */
+    public long getFilePosition() {
+        return m_base + m_pos;
+    }
+
+    /**
+     * @return the size of the file, as determined upon construction, in bytes.
+     */
+    public long getFileSize() {
+        return m_size;
+    }
+
+    /**
+     * Not supported, as positions in the current window are meaningless to callers.
+     * 
+     * @throws UnsupportedOperationException always, use {@link #getFilePosition()} instead.
+     */
+    @Override
+    public int getPosition() {
+        throw new UnsupportedOperationException("Use getFilePosition() instead!");
+    }
+
+    /**
+     * Not supported, as the number of bytes left in the current window does not indicate the end of the file.
+     * 
+     * @throws UnsupportedOperationException always, use {@link #getFileSize()} and {@link #getFilePosition()} instead.
+     */
+    @Override
+    public int remaining() {
+        throw new UnsupportedOperationException("Use getFileSize() - getFilePosition() instead!");
+    }
+
+    /**
+     * Moves the decoder to a given position in the file, which should be the start of a CBOR data item.
+     * <p>
+     * The current window is kept when the given position is within it; otherwise, a new window is mapped upon the next
+     * read.
+     * </p>
+     * 
+     * @param position the position in the file of the next byte to read, &gt;= 0 and &lt;= the file size.
+     * @throws IllegalArgumentException in case the given position was outside the file.
+     */
+    public void seek(long position) {
+        if (position < 0 || position > m_size) {
+            throw new IllegalArgumentException("Invalid position: " + position + "!");
+        }
+        long offset = position - m_base;
+        if (offset >= 0 && offset <= m_limit) {
+            m_pos = (int) offset;
+        } else {
+            m_buf = ByteBuffer.allocate(0);
+            m_base = position;
+            m_pos = m_limit = 0;
+        }
+    }
+
+    /**
+     * Maps a new window, starting at the next byte to read, that is large enough to hold the given number of bytes.
+     */
+    @Override
+    protected boolean fill(int n) throws IOException {
+        long pos = m_base + m_pos;
+        if (m_size - pos < n) {
+            return false;
+        }
+        long len = Math.min(m_size - pos, Math.max(m_windowSize, n));
+        m_buf = m_channel.map(MapMode.READ_ONLY, pos, len);
+        m_base = pos;
+        m_pos = 0;
+        m_limit = (int) len;
+        return true;
+    }
+
+    @Override
+    protected void skip(long n) throws IOException {
+        if (n > m_size - getFilePosition()) {
+            throw new EOFException();
+        }
+        seek(getFilePosition() + n);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provides an encoder that appends CBOR encoded data items to a log of pre-sized, memory-mapped segment files.
+ * <p>
+ * Segments are stored in a single directory and named after their index, such as <tt>00000000000000000000.cbor</tt>.
+ * Each segment starts with a header of two CBOR unsigned integers of 8 bytes each:
+ * </p>
+ * <ol>
+ * <li>the <em>durable</em> end offset, up to which the data is written to the storage device before the offset itself
+ * is written, so it is valid after a crash of the system;</li>
+ * <li>the <em>committed</em> end offset, which is at least the durable end offset and is valid after a crash of the
+ * process, but not necessarily after a crash of the system.</li>
+ * </ol>
+ * <p>
+ * The data up to either offset consists of complete CBOR data items, so a segment can be read using any
+ * {@link CborDecoder} by first reading the header, and then reading data items up to one of the offsets:
+ * </p>
+ *
+ * <pre>
+ * CborMappedFileDecoder decoder = new CborMappedFileDecoder(channel);
+ * long durableEnd = decoder.readInt();
+ * long committedEnd = decoder.readInt();
+ * while (decoder.getFilePosition() &lt; durableEnd) {
+ *     // read the next data item...
+ * }
+ * </pre>
+ * <p>
+ * Data items are committed explicitly, by either {@link #commit()} or {@link #force()}. The former only updates the
+ * committed end offset in memory, while the latter also writes the segment to the storage device and then updates
+ * the durable end offset. Data that is encoded but not committed is discarded by {@link #reset()} or by a crash. When
+ * the log is reopened, encoding continues after the durable data, so committed data that was not forced is overwritten.
+ * </p>
+ * <p>
+ * When a segment is full, it is forced and the data items encoded since the last commit are moved to a new segment, so
+ * a data item never spans multiple segments. Therefore, the data encoded between two commits should fit in a single
+ * segment.
+ * </p>
+ */
+public class CborMappedLogEncoder extends CborEncoder implements Closeable {
+    /** The size of the header at the start of each segment, in bytes. */
+    public static final int HEADER_SIZE = 18;
+    /** The default size of new segments, in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int DURABLE_END_OFFSET = 0;
+    private static final int COMMITTED_END_OFFSET = 9;
+    private static final int MIN_SEGMENT_SIZE = 64;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.cbor");
+
+    /**
+     * Encodes into the current segment, rolling over to a new segment when it is full.
+     */
+    private class SegmentEncoder extends CborByteBufferEncoder {
+        SegmentEncoder(ByteBuffer segment) {
+            super(segment);
+        }
+
+        @Override
+        protected ByteBuffer overflow(ByteBuffer buf, int required) throws IOException {
+            return rollOver(buf, required);
+        }
+    }
+
+    private final File m_directory;
+    private final int m_segmentSize;
+    private final SegmentEncoder m_encoder;
+    private MappedByteBuffer m_segment;
+    private long m_index;
+    // the end offsets of the durable and committed data in the current segment...
+    private int m_durable;
+    private int m_committed;
+
+    /**
+     * Creates a new {@link CborMappedLogEncoder} instance with a default segment size.
+     * 
+     * @param directory the directory holding the segments, is created if it does not exist, cannot be
+     *        <code>null</code>.
+     * @throws IllegalArgumentException in case the given directory was <code>null</code>;
+     * @throws IOException in case of I/O problems opening the last segment, or in case its header is corrupt.
+     * @see #CborMappedLogEncoder(File, int)
+     */
+    public CborMappedLogEncoder(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new {@link CborMappedLogEncoder} instance.
+     * <p>
+     * In case the given directory already holds segments, encoding continues after the durable data of the last
+     * segment.
+     * </p>
+     * 
+     * @param directory the directory holding the segments, is created if it does not exist, cannot be
+     *        <code>null</code>;
+     * @param segmentSize the size of new segments, in bytes, should be &gt;= 64.
+     * @throws IllegalArgumentException in case the given directory was <code>null</code>, or the given segment size was
+     *         too small;
+     * @throws IOException in case of I/O problems opening the last segment, or in case its header is corrupt.
+     */
+    public CborMappedLogEncoder(File directory, int segmentSize) throws IOException {
+        m_index = lastSegmentIndex(directory, segmentSize);
+        m_directory = directory;
+        m_segmentSize = segmentSize;
+        m_segment = mapSegment(directory, m_index, segmentSize);
+        m_durable = m_committed = m_segment.position();
+        m_encoder = new SegmentEncoder(m_segment);
+    }
+
+    /**
+     * Returns the file of a segment in a given directory.
+     * 
+     * @param directory the directory holding the segments, cannot be <code>null</code>;
+     * @param index the index of the segment, &gt;= 0.
+     * @return the segment file, never <code>null</code>.
+     */
+    public static File getSegmentFile(File directory, long index) {
+        return new File(directory, String.format("%020d.cbor", index));
+    }
+
+    /**
+     * Commits and forces all encoded data to the storage device.
+     * 
+     * @throws IOException in case of I/O problems writing the segment.
+     * @see #force()
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+    }
+
+    /**
+     * Marks all data encoded so far as committed, by updating the committed end offset of the current segment.
+     * <p>
+     * This only writes to memory, so committed data survives a crash of the process, but not necessarily a crash of
+     * the system. The data encoded so far should consist of complete data items only.
+     * </p>
+     */
+    public void commit() {
+        m_committed = m_encoder.getPosition();
+        writeHeader(m_segment, COMMITTED_END_OFFSET, m_committed);
+    }
+
+    /**
+     * Marks all data encoded so far as committed, and writes it to the storage device.
+     * <p>
+     * The segment is forced before the durable end offset is updated, after which the segment is forced once more. So,
+     * the durable end offset never refers to data that is not yet stored. As forcing is expensive, multiple data items
+     * are best committed in a single call.
+     * </p>
+     * 
+     * @throws IOException in case of I/O problems writing the segment.
+     */
+    public void force() throws IOException {
+        commit();
+        forceSegment();
+    }
+
+    /**
+     * @return the index of the segment data is currently encoded into, &gt;= 0.
+     */
+    public long getSegmentIndex() {
+        return m_index;
+    }
+
+    /**
+     * Discards all data that is encoded since the last commit.
+     */
+    public void reset() {
+        ByteBuffer buf = m_segment.duplicate();
+        buf.position(m_committed);
+        m_encoder.setBuffer(buf);
+    }
+
+    @Override
+    protected void write(int b) throws IOException {
+        m_encoder.write(b);
+    }
+
+    @Override
+    protected void write(byte[] b, int off, int len) throws IOException {
+        m_encoder.write(b, off, len);
+    }
+
+    @Override
+    protected void writeElements(Buffer values, int elementSize, ByteOrder order) throws IOException {
+        m_encoder.writeElements(values, elementSize, order);
+    }
+
+    @Override
+    protected void writeUInt16(int mt, int value) throws IOException {
+        m_encoder.writeUInt16(mt, value);
+    }
+
+    @Override
+    protected void writeUInt32(int mt, int value) throws IOException {
+        m_encoder.writeUInt32(mt, value);
+    }
+
+    @Override
+    protected void writeUInt64(int mt, long value) throws IOException {
+        m_encoder.writeUInt64(mt, value);
+    }
+
+    @Override
+    protected void writeUInt8(int mt, int value) throws IOException {
+        m_encoder.writeUInt8(mt, value);
+    }
+
+    @Override
+    protected void writeUtf8String(CharSequence value, int off, int len) throws IOException {
+        m_encoder.writeUtf8String(value, off, len);
+    }
+
+    /**
+     * Determines the index of the last segment in a given directory, creating the directory if needed.
+     */
+    private static long lastSegmentIndex(File directory, int segmentSize) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null!");
+        }
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size should be at least " + MIN_SEGMENT_SIZE + " bytes!");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory: " + directory + "!");
+        }
+        long result = 0;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher m = SEGMENT_NAME.matcher(name);
+                if (m.matches()) {
+                    result = Math.max(result, Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Maps a segment, creating it if it does not exist, positioned after its durable data.
+     */
+    private static MappedByteBuffer mapSegment(File directory, long index, int segmentSize) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(getSegmentFile(directory, index), "rw");
+        MappedByteBuffer segment;
+        try {
+            if (raf.length() < segmentSize) {
+                raf.setLength(segmentSize);
+            }
+            segment = raf.getChannel().map(MapMode.READ_WRITE, 0, Math.min(raf.length(), Integer.MAX_VALUE));
+        } finally {
+            // the mapping remains valid after closing the file...
+            raf.close();
+        }
+
+        int head = (TYPE_UNSIGNED_INTEGER << 5) | EIGHT_BYTES;
+        long durable = segment.getLong(DURABLE_END_OFFSET + 1);
+        long committed = segment.getLong(COMMITTED_END_OFFSET + 1);
+        if (segment.get(DURABLE_END_OFFSET) == 0 && segment.get(COMMITTED_END_OFFSET) == 0 && durable == 0
+            && committed == 0) {
+            // a new segment...
+            durable = HEADER_SIZE;
+            writeHeader(segment, DURABLE_END_OFFSET, HEADER_SIZE);
+        } else if ((segment.get(DURABLE_END_OFFSET) & 0xff) != head
+            || (segment.get(COMMITTED_END_OFFSET) & 0xff) != head || durable < HEADER_SIZE
+            || durable > segment.limit()) {
+            throw new IOException("Corrupt header in segment " + index + "!");
+        }
+        // committed data that was not forced might not be stored completely...
+        writeHeader(segment, COMMITTED_END_OFFSET, durable);
+        segment.position((int) durable);
+        return segment;
+    }
+
+    private static void writeHeader(ByteBuffer segment, int offset, long end) {
+        segment.putLong(offset + 1, end);
+        segment.put(offset, (byte) ((TYPE_UNSIGNED_INTEGER << 5) | EIGHT_BYTES));
+    }
+
+    /**
+     * Writes the current segment to the storage device, and then makes its committed data durable.
+     */
+    private void forceSegment() {
+        // ensure the data is stored before the header refers to it...
+        m_segment.force();
+        if (m_committed > m_durable) {
+            m_durable = m_committed;
+            writeHeader(m_segment, DURABLE_END_OFFSET, m_durable);
+            m_segment.force();
+        }
+    }
+
+    /**
+     * Forces the current segment and continues in a new segment, moving the data encoded since the last commit.
+     */
+    private ByteBuffer rollOver(ByteBuffer buf, int required) throws IOException {
+        int start = m_committed;
+        int len = buf.position() - start;
+        if ((long) HEADER_SIZE + len + required > m_segmentSize) {
+            throw new IOException("Uncommitted data does not fit in a single segment!");
+        }
+        // ensure no committed data is lost while later segments are already stored...
+        forceSegment();
+
+        MappedByteBuffer segment = mapSegment(m_directory, m_index + 1, m_segmentSize);
+        ByteBuffer uncommitted = buf.duplicate();
+        uncommitted.limit(start + len).position(start);
+        segment.put(uncommitted);
+
+        m_segment = segment;
+        m_index++;
+        m_durable = m_committed = HEADER_SIZE;
+        return segment.duplicate();
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Provides a non-blocking, incremental parser for CBOR-encoded data that arrives in chunks, for example, from a
+ * non-blocking channel.
+ * <p>
+ * Input is supplied through {@link #feed(ByteBuffer)}, after which {@link #nextToken()} reports the tokens that can be
+ * completely decoded from it. Once all fed input is consumed, {@link CborToken#NOT_AVAILABLE} is returned, and the next
+ * chunk of input can be fed. The parser keeps all state needed to resume in the middle of a header or string, so input
+ * is never parsed twice. The end of the input is signalled by {@link #endOfInput()}.
+ * </p>
+ * <p>
+ * Fed buffers are read directly and not copied. A definite-length string whose payload is contained in a single fed
+ * buffer is decoded straight from that buffer in case it has a backing array, while its bytes are copied once into the
+ * resulting byte array in case of a byte string. Strings that are split across fed buffers, as well as
+ * indefinite-length strings, are first collected in an internal buffer, and then copied or decoded. A fed buffer
+ * should not be modified until the parser has consumed it completely, see {@link #needsInput()}.
+ * </p>
+ */
+public class CborNonBlockingParser extends AbstractCborParser {
+    private static final int BREAK_BYTE = (TYPE_FLOAT_SIMPLE << 5) | BREAK;
+
+    private ByteBuffer m_input;
+    private boolean m_eof;
+
+    /** The initial byte of the header being parsed, or <tt>-1</tt> if not in the middle of a header. */
+    private int m_ib = -1;
+    /** The number of payload bytes of the current header that are not yet parsed. */
+    private int m_argRemaining;
+    private long m_arg;
+
+    /** The major type of the string being parsed, or <tt>-1</tt> if not in the middle of a string. */
+    private int m_strType = -1;
+    /** Whether the string being parsed is an indefinite-length string. */
+    private boolean m_strChunked;
+    /** The number of bytes left to read of the current (chunk of the) string, or <tt>-1</tt> if awaiting a chunk. */
+    private long m_strRemaining;
+    private byte[] m_strBuf = new byte[64];
+    private int m_strLen;
+
+    /**
+     * Signals that no more input will be fed to this parser.
+     * <p>
+     * After calling this method, {@link #nextToken()} returns <code>null</code> once all data items are completely
+     * parsed, or throws an {@link EOFException} in case the input ended in the middle of a data item.
+     * </p>
+     */
+    public void endOfInput() {
+        m_eof = true;
+    }
+
+    /**
+     * Feeds the next chunk of input to this parser.
+     * <p>
+     * The bytes between the position and limit of the given buffer are consumed by subsequent calls to
+     * {@link #nextToken()}, which advance the position of the given buffer.
+     * </p>
+     * 
+     * @param buf the buffer containing the next chunk of input, cannot be <code>null</code>.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code>;
+     * @throws IllegalStateException in case the previously fed input is not yet consumed completely, or in case the
+     *         end of input is already signalled.
+     */
+    public void feed(ByteBuffer buf) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Buffer cannot be null!");
+        }
+        if (!needsInput()) {
+            throw new IllegalStateException("Previous input not yet consumed!");
+        }
+        if (m_eof) {
+            throw new IllegalStateException("End of input already signalled!");
+        }
+        m_input = buf;
+    }
+
+    /**
+     * @return <code>true</code> if all fed input is consumed and more input can be fed, <code>false</code> otherwise.
+     */
+    public boolean needsInput() {
+        return (m_input == null) || !m_input.hasRemaining();
+    }
+
+    /**
+     * Advances this parser to the next token, using as much of the fed input as needed.
+     * 
+     * @return the next token, {@link CborToken#NOT_AVAILABLE} in case more input is needed to complete the next token,
+     *         or <code>null</code> in case the end of the input is reached at the top level.
+     * @throws EOFException in case the end of the input is reached in the middle of a data item;
+     * @throws IOException in case the CBOR-encoded data was not well-formed.
+     */
+    @Override
+    public CborToken nextToken() throws IOException {
+        m_text = null;
+        m_bytes = null;
+
+        for (;;) {
+            if (m_strType >= 0 && m_strRemaining >= 0) {
+                CborToken token = readWholeString();
+                if (token != null) {
+                    return m_token = token;
+                }
+                if (!readStringPayload()) {
+                    return notAvailable();
+                }
+                if (!m_strChunked) {
+                    return m_token = completeString();
+                }
+            }
+
+            if (m_ib < 0 && m_strType < 0 && m_depth > 0 && m_remaining[m_depth - 1] == 0) {
+                m_depth--;
+                return m_token = CborToken.END;
+            }
+
+            if (!readHeader()) {
+                return notAvailable();
+            }
+            int ib = m_ib;
+            m_ib = -1;
+
+            CborToken token = (m_strType >= 0) ? handleChunkHeader(ib) : handleHeader(ib);
+            if (token != null) {
+                return m_token = token;
+            }
+        }
+    }
+
+    private CborToken completeString() throws IOException {
+        int type = m_strType;
+        m_strType = -1;
+        if (type == TYPE_TEXT_STRING) {
+            m_text = CborUtf8.decode(m_strBuf, 0, m_strLen, null);
+            return CborToken.TEXT;
+        }
+        m_bytes = Arrays.copyOf(m_strBuf, m_strLen);
+        return CborToken.BYTES;
+    }
+
+    private CborToken handleChunkHeader(int ib) throws IOException {
+        if (ib == BREAK_BYTE) {
+            return completeString();
+        }
+        if ((ib >>> 5) != m_strType || (ib & 0x1f) == BREAK) {
+            throw new IOException("Unexpected chunk in indefinite-length string: " + CborType.valueOf(ib) + "!");
+        }
+        startStringPayload(m_arg);
+        return null;
+    }
+
+    private CborToken handleHeader(int ib) throws IOException {
+        CborType type = CborType.valueOf(ib);
+        int mt = type.getMajorType();
+        int ai = type.getAdditionalInfo();
+        long arg = m_arg;
+
+        if (ib == BREAK_BYTE) {
+            checkBreak();
+            m_depth--;
+            return CborToken.END;
+        }
+        if (ai == BREAK && !type.isBreakAllowed()) {
+            throw new IOException("Unexpected indefinite-length " + CborType.getName(mt) + "!");
+        }
+        if (mt != TYPE_TAG) {
+            // a tag and its data item count as a single item...
+            countItem();
+        }
+
+        switch (mt) {
+            case TYPE_UNSIGNED_INTEGER:
+            case TYPE_NEGATIVE_INTEGER:
+                if (arg < 0) {
+                    throw new IOException("Integer value too large!");
+                }
+                m_longValue = (mt == TYPE_NEGATIVE_INTEGER) ? ~arg : arg;
+                return CborToken.INT;
+
+            case TYPE_BYTE_STRING:
+            case TYPE_TEXT_STRING:
+                m_strType = mt;
+                m_strLen = 0;
+                m_strChunked = (ai == BREAK);
+                if (m_strChunked) {
+                    m_strRemaining = -1;
+                } else {
+                    startStringPayload(arg);
+                }
+                return null;
+
+            case TYPE_ARRAY:
+                m_longValue = (ai == BREAK) ? -1 : checkLength(arg);
+                push(m_longValue);
+                return CborToken.START_ARRAY;
+
+            case TYPE_MAP:
+                m_longValue = (ai == BREAK) ? -1 : checkLength(arg);
+                pushMap(m_longValue);
+                return CborToken.START_MAP;
+
+            case TYPE_TAG:
+                m_longValue = checkLength(arg);
+                m_tagPending = true;
+                return CborToken.TAG;
+
+            default:
+                if (ai == HALF_PRECISION_FLOAT) {
+                    m_doubleValue = CborHalfFloat.toFloat((int) arg);
+                } else if (ai == SINGLE_PRECISION_FLOAT) {
+                    m_doubleValue = Float.intBitsToFloat((int) arg);
+                } else if (ai == DOUBLE_PRECISION_FLOAT) {
+                    m_doubleValue = Double.longBitsToDouble(arg);
+                } else {
+                    m_longValue = arg;
+                    return CborToken.SIMPLE;
+                }
+                return CborToken.FLOAT;
+        }
+    }
+
+    private static long checkLength(long value) throws IOException {
+        if (value < 0) {
+            throw new IOException("Not well-formed CBOR integer found, value too large!");
+        }
+        return value;
+    }
+
+    private CborToken notAvailable() throws EOFException {
+        if (m_eof) {
+            if (m_ib >= 0 || m_strType >= 0) {
+                throw new EOFException();
+            }
+            checkEndOfInput();
+            return m_token = null;
+        }
+        return m_token = CborToken.NOT_AVAILABLE;
+    }
+
+    /**
+     * Reads (the remainder of) a header from the fed input.
+     * 
+     * @return <code>true</code> if a complete header is read, <code>false</code> if more input is needed.
+     */
+    private boolean readHeader() throws IOException {
+        ByteBuffer input = m_input;
+        if (m_ib < 0) {
+            if (input == null || !input.hasRemaining()) {
+                return false;
+            }
+            int ib = input.get() & 0xff;
+            CborType type = CborType.valueOf(ib);
+            int width = type.getPayloadWidth();
+            if (width < 0) {
+                throw new IOException("Not well-formed CBOR value found, invalid length: " + type.getAdditionalInfo() + "!");
+            }
+            m_ib = ib;
+            m_arg = (width == 0) ? type.getAdditionalInfo() : 0L;
+            m_argRemaining = width;
+        }
+        while (m_argRemaining > 0) {
+            if (input == null || !input.hasRemaining()) {
+                return false;
+            }
+            m_arg = (m_arg << 8) | (input.get() & 0xff);
+            m_argRemaining--;
+        }
+        return true;
+    }
+
+    /**
+     * Reads (the remainder of) a string payload from the fed input.
+     * 
+     * @return <code>true</code> if the complete payload is read, <code>false</code> if more input is needed.
+     */
+    private boolean readStringPayload() {
+        ByteBuffer input = m_input;
+        if (m_strRemaining > 0 && input != null && input.hasRemaining()) {
+            int n = (int) Math.min(m_strRemaining, input.remaining());
+            if (m_strLen + n > m_strBuf.length) {
+                m_strBuf = Arrays.copyOf(m_strBuf, Math.max(m_strLen + n, m_strBuf.length << 1));
+            }
+            input.get(m_strBuf, m_strLen, n);
+            m_strLen += n;
+            m_strRemaining -= n;
+        }
+        if (m_strRemaining > 0) {
+            return false;
+        }
+        // await the next chunk, if any...
+        m_strRemaining = -1;
+        return true;
+    }
+
+    /**
+     * Reads a definite-length string straight from the fed input, in case its complete payload is available.
+     * 
+     * @return the string token, or <code>null</code> in case the string should be collected in the internal buffer.
+     */
+    private CborToken readWholeString() throws IOException {
+        ByteBuffer input = m_input;
+        if (m_strChunked || m_strLen > 0 || input == null || input.remaining() < m_strRemaining) {
+            return null;
+        }
+        int type = m_strType;
+        int len = (int) m_strRemaining;
+        m_strType = -1;
+        if (type == TYPE_BYTE_STRING) {
+            m_bytes = new byte[len];
+            input.get(m_bytes);
+            return CborToken.BYTES;
+        }
+        if (input.hasArray()) {
+            int pos = input.position();
+            input.position(pos + len);
+            m_text = CborUtf8.decode(input.array(), input.arrayOffset() + pos, len, null);
+        } else {
+            if (len > m_strBuf.length) {
+                m_strBuf = new byte[Math.max(len, m_strBuf.length << 1)];
+            }
+            input.get(m_strBuf, 0, len);
+            m_text = CborUtf8.decode(m_strBuf, 0, len, null);
+        }
+        return CborToken.TEXT;
+    }
+
+    private void startStringPayload(long len) throws IOException {
+        if (len < 0 || len > Integer.MAX_VALUE - m_strLen) {
+            throw new IOException("String length too long!");
+        }
+        m_strRemaining = len;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Provides a streaming pull parser on top of a {@link CborDecoder}, which reports the decoded data as a sequence of
+ * {@link CborToken}s.
+ * <p>
+ * The parser keeps track of the nesting of arrays and maps itself, so callers do not need to know the type of the
+ * upcoming data in advance, and definite- and indefinite-length containers are reported in the same way: as a
+ * {@link CborToken#START_ARRAY} or {@link CborToken#START_MAP} token, followed by the tokens of their contents, and
+ * terminated by an {@link CborToken#END} token. Maps report their keys and values as alternating tokens.
+ * </p>
+ * <p>
+ * Apart from a counter per nesting level, the parser does not hold on to any decoded data, so arbitrary large
+ * documents can be parsed in a single pass.
+ * </p>
+ */
+public class CborParser extends AbstractCborParser {
+    private static final CborType BREAK_TYPE = CborType.valueOf((TYPE_FLOAT_SIMPLE << 5) | BREAK);
+
+    private final CborDecoder m_decoder;
+
+    /**
+     * Creates a new {@link CborParser} instance.
+     * 
+     * @param decoder the decoder to read the CBOR-encoded data from, cannot be <code>null</code>.
+     */
+    public CborParser(CborDecoder decoder) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("Decoder cannot be null!");
+        }
+        m_decoder = decoder;
+    }
+
+    /**
+     * Advances this parser to the next token.
+     * 
+     * @return the next token, or <code>null</code> in case the end of the input is reached at the top level.
+     * @throws EOFException in case the end of the input is reached inside an array or map, or after a tag;
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying decoder, or in case
+     *         the CBOR-encoded data was not well-formed.
+     */
+    @Override
+    public CborToken nextToken() throws IOException {
+        m_text = null;
+        m_bytes = null;
+
+        CborType type = m_decoder.peekType();
+        if (m_depth > 0 && m_remaining[m_depth - 1] == 0) {
+            m_depth--;
+            return m_token = CborToken.END;
+        }
+        if (type == null) {
+            checkEndOfInput();
+            return m_token = null;
+        }
+        if (type == BREAK_TYPE) {
+            checkBreak();
+            m_decoder.readBreak();
+            m_depth--;
+            return m_token = CborToken.END;
+        }
+
+        int mt = type.getMajorType();
+        if (mt != TYPE_TAG) {
+            // a tag and its data item count as a single item...
+            countItem();
+        }
+
+        switch (mt) {
+            case TYPE_UNSIGNED_INTEGER:
+            case TYPE_NEGATIVE_INTEGER:
+                m_longValue = m_decoder.readInt();
+                return m_token = CborToken.INT;
+
+            case TYPE_BYTE_STRING:
+                m_bytes = (type.getAdditionalInfo() == BREAK) ? readByteStringChunks() : m_decoder.readByteString();
+                return m_token = CborToken.BYTES;
+
+            case TYPE_TEXT_STRING:
+                m_text = (type.getAdditionalInfo() == BREAK) ? readTextStringChunks() : m_decoder.readTextString();
+                return m_token = CborToken.TEXT;
+
+            case TYPE_ARRAY:
+                m_longValue = m_decoder.readArrayLength();
+                push(m_longValue);
+                return m_token = CborToken.START_ARRAY;
+
+            case TYPE_MAP:
+                m_longValue = m_decoder.readMapLength();
+                pushMap(m_longValue);
+                return m_token = CborToken.START_MAP;
+
+            case TYPE_TAG:
+                m_longValue = m_decoder.readTag();
+                m_tagPending = true;
+                return m_token = CborToken.TAG;
+
+            default:
+                return m_token = readFloatOrSimple(type.getAdditionalInfo());
+        }
+    }
+
+    /**
+     * Skips the contents of the current array or map, positioning this parser at its {@link CborToken#END} token.
+     * <p>
+     * In case the parser is not positioned at a {@link CborToken#START_ARRAY} or {@link CborToken#START_MAP} token,
+     * this method does nothing.
+     * </p>
+     * 
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the underlying decoder, or in case
+     *         the CBOR-encoded data was not well-formed.
+     */
+    public void skipChildren() throws IOException {
+        if (m_token != CborToken.START_ARRAY && m_token != CborToken.START_MAP) {
+            return;
+        }
+        int idx = m_depth - 1;
+        if (m_remaining[idx] < 0) {
+            while (m_decoder.peekType() != BREAK_TYPE) {
+                m_decoder.skipValue();
+            }
+            m_decoder.readBreak();
+        } else {
+            for (long i = m_remaining[idx]; i > 0; i--) {
+                m_decoder.skipValue();
+            }
+        }
+        m_depth = idx;
+        m_token = CborToken.END;
+    }
+
+    private byte[] readByteStringChunks() throws IOException {
+        m_decoder.readByteStringLength();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        while (m_decoder.peekType() != BREAK_TYPE) {
+            byte[] chunk = m_decoder.readByteString();
+            baos.write(chunk, 0, chunk.length);
+        }
+        m_decoder.readBreak();
+        return baos.toByteArray();
+    }
+
+    private CborToken readFloatOrSimple(int subtype) throws IOException {
+        switch (subtype) {
+            case HALF_PRECISION_FLOAT:
+                m_doubleValue = m_decoder.readHalfPrecisionFloat();
+                return CborToken.FLOAT;
+            case SINGLE_PRECISION_FLOAT:
+                m_doubleValue = m_decoder.readFloat();
+                return CborToken.FLOAT;
+            case DOUBLE_PRECISION_FLOAT:
+                m_doubleValue = m_decoder.readDouble();
+                return CborToken.FLOAT;
+            case ONE_BYTE:
+                m_longValue = m_decoder.readSimpleValue() & 0xff;
+                return CborToken.SIMPLE;
+            default:
+                if (subtype >= ONE_BYTE) {
+                    throw new IOException("Not well-formed CBOR simple value found, invalid subtype: " + subtype + "!");
+                }
+                // simple values without payload consist of their initial byte only...
+                m_decoder.skipValue();
+                m_longValue = subtype;
+                return CborToken.SIMPLE;
+        }
+    }
+
+    private String readTextStringChunks() throws IOException {
+        m_decoder.readTextStringLength();
+
+        StringBuilder sb = new StringBuilder();
+        while (m_decoder.peekType() != BREAK_TYPE) {
+            sb.append(m_decoder.readTextString());
+        }
+        m_decoder.readBreak();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides a projection of a number of fields out of the data items of a CBOR sequence, decoding only the selected
+ * values and skipping everything else.
+ * <p>
+ * Fields are selected by paths of map keys separated by dots, where each key can be followed by one or more array
+ * selectors, such as <tt>user.id</tt>, <tt>events[*].ts</tt> or <tt>matrix[0][1]</tt>. The selector <tt>[*]</tt>
+ * selects all elements of an array, while <tt>[n]</tt> selects the element at index <tt>n</tt>. Only map keys that are
+ * text strings are matched, and tags are ignored while following a path.
+ * </p>
+ * <p>
+ * For each data item, {@link #read(CborDecoder)} returns an array with a value per path, in the order in which the
+ * paths were given. Paths containing <tt>[*]</tt> yield a {@link List} of all matching values, while other paths yield
+ * the matching value, or <code>null</code> in case there is no such value. Values are decoded as {@link Long},
+ * {@link Double}, {@link Boolean}, {@link String}, <tt>byte[]</tt>, {@link List} or {@link Map}, where CBOR null and
+ * undefined values are decoded as <code>null</code>.
+ * </p>
+ * <p>
+ * Map entries and array elements that are not selected by any path are skipped using their length headers, without
+ * being decoded. Map keys are compared in their UTF-8 encoded form, so for decoders reading from memory, such as
+ * {@link CborByteArrayDecoder}, no strings are created for keys. Filtering on the selected values, see
+ * {@link #read(CborDecoder, Filter)}, therefore only costs decoding the selected values of each data item.
+ * </p>
+ * <p>
+ * Data items nested more than {@link #MAX_DEPTH} levels deep, counting arrays, maps and tags, are rejected, so
+ * untrusted input cannot exhaust the stack.
+ * </p>
+ */
+public final class CborProjection {
+    /** The maximum nesting depth of arrays, maps and tags in the data items read. */
+    public static final int MAX_DEPTH = 512;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Decides whether a data item is to be returned, based on its projected values.
+     */
+    public interface Filter {
+        /**
+         * @param values the projected values of a data item, never <code>null</code>.
+         * @return <code>true</code> if the data item is to be returned, <code>false</code> if it is to be skipped.
+         */
+        boolean accept(Object[] values);
+    }
+
+    /**
+     * Represents a step in one or more paths.
+     */
+    private static class Node {
+        Map<ByteBuffer, Node> m_keys;
+        Map<Long, Node> m_indices;
+        Node m_wildcard;
+        // the index of the value selected by this node, or -1 if it does not end a path...
+        int m_slot = -1;
+
+        boolean hasChildren() {
+            return m_keys != null || m_indices != null || m_wildcard != null;
+        }
+    }
+
+    private final String[] m_paths;
+    private final boolean[] m_multiple;
+    private final Node m_root;
+
+    /**
+     * Creates a new {@link CborProjection} instance.
+     * 
+     * @param paths the paths of the values to select, cannot be <code>null</code> or empty. No path can be a prefix
+     *        of another path.
+     * @throws IllegalArgumentException in case no paths were given, or in case a path was invalid or overlapped with
+     *         another path.
+     */
+    public CborProjection(String... paths) {
+        if (paths == null || paths.length == 0) {
+            throw new IllegalArgumentException("Paths cannot be null or empty!");
+        }
+        m_paths = paths.clone();
+        m_multiple = new boolean[paths.length];
+        m_root = new Node();
+        for (int i = 0; i < paths.length; i++) {
+            addPath(i);
+        }
+    }
+
+    /**
+     * Creates a filter that accepts the data items whose value for a given path equals a given value.
+     * <p>
+     * Numbers are compared by value, regardless of their type, so <tt>42</tt> matches both an encoded integer and an
+     * encoded floating point value of <tt>42.0</tt>.
+     * </p>
+     * 
+     * @param path the path of the value to compare, should be one of the paths of this projection;
+     * @param value the value to compare with, can be <code>null</code>.
+     * @return a new filter, never <code>null</code>.
+     * @throws IllegalArgumentException in case the given path was not one of the paths of this projection.
+     */
+    public Filter equalTo(String path, final Object value) {
+        final int slot = indexOf(path);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unknown path: " + path + "!");
+        }
+        return new Filter() {
+            @Override
+            public boolean accept(Object[] values) {
+                return valueEquals(values[slot], value);
+            }
+        };
+    }
+
+    /**
+     * @param path the path to look up, can be <code>null</code>.
+     * @return the index of the given path in the projected values, or <tt>-1</tt> in case it is not a path of this
+     *         projection.
+     */
+    public int indexOf(String path) {
+        for (int i = 0; i < m_paths.length; i++) {
+            if (m_paths[i].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the next data item and returns its projected values.
+     * 
+     * @param decoder the decoder to read the data item from, cannot be <code>null</code>.
+     * @return the projected values of the read data item, or <code>null</code> in case the end of the input is reached.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the given decoder, or in case
+     *         the data item was not well-formed or nested more than {@link #MAX_DEPTH} levels deep.
+     */
+    public Object[] read(CborDecoder decoder) throws IOException {
+        if (decoder.peekType() == null) {
+            return null;
+        }
+        Object[] values = new Object[m_paths.length];
+        for (int i = 0; i < values.length; i++) {
+            if (m_multiple[i]) {
+                values[i] = new ArrayList<Object>();
+            }
+        }
+        select(m_root, decoder, values, 0);
+        return values;
+    }
+
+    /**
+     * Reads data items until one is accepted by a given filter, and returns its projected values.
+     * 
+     * @param decoder the decoder to read the data items from, cannot be <code>null</code>;
+     * @param filter the filter to apply to the projected values, cannot be <code>null</code>.
+     * @return the projected values of the accepted data item, or <code>null</code> in case the end of the input is
+     *         reached.
+     * @throws IOException in case of I/O problems reading the CBOR-encoded value from the given decoder, or in case a
+     *         data item was not well-formed or nested more than {@link #MAX_DEPTH} levels deep.
+     */
+    public Object[] read(CborDecoder decoder, Filter filter) throws IOException {
+        Object[] values;
+        while ((values = read(decoder)) != null) {
+            if (filter.accept(values)) {
+                return values;
+            }
+        }
+        return null;
+    }
+
+    private static void checkDepth(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Data item nested more than " + MAX_DEPTH + " levels deep!");
+        }
+    }
+
+    private static boolean isBreak(CborDecoder decoder) throws IOException {
+        CborType type = decoder.peekType();
+        if (type == null) {
+            throw new EOFException();
+        }
+        return type.getMajorType() == TYPE_FLOAT_SIMPLE && type.getAdditionalInfo() == BREAK;
+    }
+
+    private static byte[] readStringBytes(CborDecoder decoder, boolean text) throws IOException {
+        InputStream is = text ? decoder.openTextStringStream() : decoder.openByteStringStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes a complete data item into its Java representation.
+     */
+    private static Object readValue(CborDecoder decoder, int depth) throws IOException {
+        checkDepth(depth);
+        CborType type = decoder.peekType();
+        if (type == null) {
+            throw new EOFException();
+        }
+        boolean indefinite = type.getAdditionalInfo() == BREAK;
+        switch (type.getMajorType()) {
+            case TYPE_UNSIGNED_INTEGER:
+            case TYPE_NEGATIVE_INTEGER:
+                return Long.valueOf(decoder.readInt());
+            case TYPE_BYTE_STRING:
+                return indefinite ? readStringBytes(decoder, false) : decoder.readByteString();
+            case TYPE_TEXT_STRING:
+                return indefinite ? new String(readStringBytes(decoder, true), UTF8) : decoder.readTextString();
+            case TYPE_ARRAY: {
+                long len = decoder.readArrayLength();
+                List<Object> result = new ArrayList<Object>();
+                for (long i = 0; (len < 0) ? !isBreak(decoder) : (i < len); i++) {
+                    result.add(readValue(decoder, depth + 1));
+                }
+                if (len < 0) {
+                    decoder.readBreak();
+                }
+                return result;
+            }
+            case TYPE_MAP: {
+                long len = decoder.readMapLength();
+                Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+                for (long i = 0; (len < 0) ? !isBreak(decoder) : (i < len); i++) {
+                    Object key = readValue(decoder, depth + 1);
+                    result.put(key, readValue(decoder, depth + 1));
+                }
+                if (len < 0) {
+                    decoder.readBreak();
+                }
+                return result;
+            }
+            case TYPE_TAG:
+                decoder.readTag();
+                return readValue(decoder, depth + 1);
+            default:
+                switch (type.getAdditionalInfo()) {
+                    case FALSE:
+                    case TRUE:
+                        return Boolean.valueOf(decoder.readBoolean());
+                    case NULL:
+                        return decoder.readNull();
+                    case UNDEFINED:
+                        return decoder.readUndefined();
+                    case HALF_PRECISION_FLOAT:
+                    case SINGLE_PRECISION_FLOAT:
+                    case DOUBLE_PRECISION_FLOAT:
+                        return Double.valueOf(decoder.readFloatingPoint());
+                    default:
+                        return Integer.valueOf(decoder.readSimpleValue() & 0xff);
+                }
+        }
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number && expected instanceof Number) {
+            Number a = (Number) actual;
+            Number e = (Number) expected;
+            if ((a instanceof Double || a instanceof Float) || (e instanceof Double || e instanceof Float)) {
+                return a.doubleValue() == e.doubleValue();
+            }
+            return a.longValue() == e.longValue();
+        }
+        return (actual == null) ? expected == null : actual.equals(expected);
+    }
+
+    /**
+     * Parses the path with the given index and adds its steps to the tree of nodes.
+     */
+    private void addPath(int slot) {
+        String path = m_paths[slot];
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Path cannot be null or empty!");
+        }
+        Node node = m_root;
+        int i = 0;
+        int len = path.length();
+        while (i < len) {
+            if (node.m_slot >= 0) {
+                throw new IllegalArgumentException("Path " + path + " overlaps with " + m_paths[node.m_slot] + "!");
+            }
+            char c = path.charAt(i);
+            if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Missing ] in path: " + path + "!");
+                }
+                String selector = path.substring(i + 1, end);
+                if ("*".equals(selector)) {
+                    if (node.m_indices != null) {
+                        throw new IllegalArgumentException("Cannot combine [*] and [n] in path: " + path + "!");
+                    }
+                    if (node.m_wildcard == null) {
+                        node.m_wildcard = new Node();
+                    }
+                    node = node.m_wildcard;
+                    m_multiple[slot] = true;
+                } else {
+                    if (node.m_wildcard != null) {
+                        throw new IllegalArgumentException("Cannot combine [*] and [n] in path: " + path + "!");
+                    }
+                    Long index = parseIndex(path, selector);
+                    if (node.m_indices == null) {
+                        node.m_indices = new HashMap<Long, Node>();
+                    }
+                    Node child = node.m_indices.get(index);
+                    if (child == null) {
+                        node.m_indices.put(index, child = new Node());
+                    }
+                    node = child;
+                }
+                i = end + 1;
+            } else {
+                if (c == '.') {
+                    if (node == m_root) {
+                        throw new IllegalArgumentException("Invalid path: " + path + "!");
+                    }
+                    i++;
+                }
+                int end = i;
+                while (end < len && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i) {
+                    throw new IllegalArgumentException("Empty key in path: " + path + "!");
+                }
+                ByteBuffer key = ByteBuffer.wrap(path.substring(i, end).getBytes(UTF8));
+                if (node.m_keys == null) {
+                    node.m_keys = new HashMap<ByteBuffer, Node>();
+                }
+                Node child = node.m_keys.get(key);
+                if (child == null) {
+                    node.m_keys.put(key, child = new Node());
+                }
+                node = child;
+                i = end;
+            }
+        }
+        if (node.m_slot >= 0 || node.hasChildren()) {
+            throw new IllegalArgumentException("Path " + path + " overlaps with another path!");
+        }
+        node.m_slot = slot;
+    }
+
+    private static Long parseIndex(String path, String selector) {
+        try {
+            long result = Long.parseLong(selector);
+            if (result >= 0) {
+                return Long.valueOf(result);
+            }
+        } catch (NumberFormatException e) {
+            // Fall through...
+        }
+        throw new IllegalArgumentException("Invalid array selector [" + selector + "] in path: " + path + "!");
+    }
+
+    /**
+     * Reads the UTF-8 encoded bytes of a map key that is a text string.
+     */
+    private static ByteBuffer readKey(CborDecoder decoder, CborType type) throws IOException {
+        if (type.getAdditionalInfo() == BREAK) {
+            return ByteBuffer.wrap(readStringBytes(decoder, true));
+        }
+        return decoder.readTextStringBuffer();
+    }
+
+    /**
+     * Follows the steps of the given node into the next data item, skipping all parts that are not selected.
+     */
+    private void select(Node node, CborDecoder decoder, Object[] values, int depth) throws IOException {
+        checkDepth(depth);
+        if (node.m_slot >= 0) {
+            Object value = readValue(decoder, depth);
+            if (m_multiple[node.m_slot]) {
+                @SuppressWarnings("unchecked")
+                List<Object> list = (List<Object>) values[node.m_slot];
+                list.add(value);
+            } else {
+                values[node.m_slot] = value;
+            }
+            return;
+        }
+
+        CborType type = decoder.peekType();
+        if (type == null) {
+            throw new EOFException();
+        }
+        int mt = type.getMajorType();
+        if (mt == TYPE_TAG) {
+            decoder.readTag();
+            select(node, decoder, values, depth + 1);
+        } else if (mt == TYPE_MAP && node.m_keys != null) {
+            long len = decoder.readMapLength();
+            for (long i = 0; (len < 0) ? !isBreak(decoder) : (i < len); i++) {
+                CborType keyType = decoder.peekType();
+                Node child = null;
+                if (keyType != null && keyType.getMajorType() == TYPE_TEXT_STRING) {
+                    child = node.m_keys.get(readKey(decoder, keyType));
+                } else {
+                    decoder.skipValue();
+                }
+                if (child != null) {
+                    select(child, decoder, values, depth + 1);
+                } else {
+                    decoder.skipValue();
+                }
+            }
+            if (len < 0) {
+                decoder.readBreak();
+            }
+        } else if (mt == TYPE_ARRAY && (node.m_wildcard != null || node.m_indices != null)) {
+            long len = decoder.readArrayLength();
+            for (long i = 0; (len < 0) ? !isBreak(decoder) : (i < len); i++) {
+                Node child = node.m_wildcard;
+                if (child == null) {
+                    child = node.m_indices.get(Long.valueOf(i));
+                }
+                if (child != null) {
+                    select(child, decoder, values, depth + 1);
+                } else {
+                    decoder.skipValue();
+                }
+            }
+            if (len < 0) {
+                decoder.readBreak();
+            }
+        } else {
+            decoder.skipValue();
+        }
+    }
+}
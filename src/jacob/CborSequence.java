@@ -0,0 +1,203 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides access to the top-level data items of a CBOR sequence, as defined in RFC 8742, held in memory.
+ * <p>
+ * Iterating over a sequence yields each top-level data item as read-only slice of the underlying buffer, without
+ * copying or decoding it. A data item can be decoded from its slice using a {@link CborByteBufferDecoder}:
+ * </p>
+ *
+ * <pre>
+ * for (ByteBuffer item : sequence) {
+ *     CborDecoder decoder = new CborByteBufferDecoder(item);
+ *     // decode the data item...
+ * }
+ * </pre>
+ * <p>
+ * To process a sequence concurrently, it can be split into a number of sequences of whole data items by
+ * {@link #split(int)}, which can be processed by separate threads. Large files are split into memory-mapped sequences
+ * by {@link #mapFile(FileChannel, int)}. Finding the boundaries of the data items only requires their headers to be
+ * read, as the payloads of strings are skipped.
+ * </p>
+ */
+public final class CborSequence implements Iterable<ByteBuffer> {
+
+    /**
+     * Iterates over the data items of a sequence by skipping each data item.
+     */
+    private class ItemIterator implements Iterator<ByteBuffer> {
+        private final CborByteBufferDecoder m_decoder;
+
+        ItemIterator() {
+            m_decoder = new CborByteBufferDecoder(range(m_start, m_end));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return m_decoder.remaining() > 0;
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int pos = m_decoder.getPosition();
+            try {
+                m_decoder.skipValue();
+            } catch (IOException e) {
+                throw new IllegalStateException("Malformed CBOR data item at position " + pos + "!", e);
+            }
+            return slice(pos, m_decoder.getPosition());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final ByteBuffer m_buf;
+    private final int m_start;
+    private final int m_end;
+
+    /**
+     * Creates a new {@link CborSequence} instance.
+     * 
+     * @param buf the buffer holding the CBOR sequence between its position and limit, cannot be <code>null</code>.
+     *        The position, limit and byte order of the given buffer are left untouched.
+     * @throws IllegalArgumentException in case the given buffer was <code>null</code>.
+     */
+    public CborSequence(ByteBuffer buf) {
+        if (buf == null) {
+            throw new IllegalArgumentException("Buffer cannot be null!");
+        }
+        m_buf = buf.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+        m_start = buf.position();
+        m_end = buf.limit();
+    }
+
+    /**
+     * Maps the CBOR sequence in a file, starting at the current position of the given channel, as one or more
+     * sequences of whole data items.
+     * <p>
+     * Each returned sequence holds at most the given number of bytes, unless it consists of a single data item that is
+     * larger.
+     * </p>
+     * 
+     * @param channel the file channel to map, cannot be <code>null</code>;
+     * @param maxPartSize the maximum size of the returned sequences, in bytes, &gt; 0.
+     * @return the mapped sequences, in order, never <code>null</code>. In case the file holds no data items, an empty
+     *         list is returned.
+     * @throws IllegalArgumentException in case the given channel was <code>null</code> or the given size was not
+     *         positive;
+     * @throws IOException in case of I/O problems reading the given channel, or in case the file does not hold a
+     *         well-formed CBOR sequence.
+     */
+    public static List<CborSequence> mapFile(FileChannel channel, int maxPartSize) throws IOException {
+        if (maxPartSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum part size!");
+        }
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(channel);
+        List<CborSequence> result = new ArrayList<CborSequence>();
+
+        long partStart = decoder.getFilePosition();
+        long pos = partStart;
+        while (decoder.peekType() != null) {
+            decoder.skipValue();
+            long next = decoder.getFilePosition();
+            if (next - partStart > maxPartSize && pos > partStart) {
+                result.add(new CborSequence(channel.map(MapMode.READ_ONLY, partStart, pos - partStart)));
+                partStart = pos;
+            }
+            if (next - partStart > Integer.MAX_VALUE) {
+                throw new IOException("Data item too large to map at position " + partStart + "!");
+            }
+            pos = next;
+        }
+        if (pos > partStart) {
+            result.add(new CborSequence(channel.map(MapMode.READ_ONLY, partStart, pos - partStart)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the top-level data items of this sequence.
+     * <p>
+     * The returned iterator throws an {@link IllegalStateException} in case the next data item is not well-formed.
+     * </p>
+     * 
+     * @return an iterator yielding each data item as read-only buffer holding its encoded bytes between its position
+     *         and limit, never <code>null</code>.
+     */
+    @Override
+    public Iterator<ByteBuffer> iterator() {
+        return new ItemIterator();
+    }
+
+    /**
+     * @return the size of this sequence, in bytes, &gt;= 0.
+     */
+    public int size() {
+        return m_end - m_start;
+    }
+
+    /**
+     * Splits this sequence into a number of sequences of whole data items of roughly equal size.
+     * 
+     * @param parts the maximum number of sequences to return, &gt; 0.
+     * @return the sequences, in order, at most the given number, never <code>null</code>. In case this sequence is
+     *         empty, an empty list is returned.
+     * @throws IllegalArgumentException in case the given number of parts was not positive;
+     * @throws IOException in case this sequence is not well-formed.
+     */
+    public List<CborSequence> split(int parts) throws IOException {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Invalid number of parts!");
+        }
+        int target = (int) ((size() + (long) parts - 1) / parts);
+        List<CborSequence> result = new ArrayList<CborSequence>(parts);
+
+        CborByteBufferDecoder decoder = new CborByteBufferDecoder(range(m_start, m_end));
+        int partStart = m_start;
+        while (decoder.remaining() > 0) {
+            decoder.skipValue();
+            int pos = decoder.getPosition();
+            if (pos - partStart >= target && result.size() < parts - 1) {
+                result.add(new CborSequence(slice(partStart, pos)));
+                partStart = pos;
+            }
+        }
+        if (m_end > partStart) {
+            result.add(new CborSequence(slice(partStart, m_end)));
+        }
+        return result;
+    }
+
+    private ByteBuffer range(int start, int end) {
+        ByteBuffer result = m_buf.duplicate();
+        result.limit(end).position(start);
+        return result;
+    }
+
+    private ByteBuffer slice(int start, int end) {
+        return range(start, end).slice();
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborEncoder.checkRange;
+import static jacob.CborEncoder.headLength;
+
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+/**
+ * Computes the exact number of bytes values are encoded in by {@link CborEncoder}, without encoding them.
+ * <p>
+ * Each method mirrors the corresponding <tt>write</tt> method of {@link CborEncoder}, using the same rules to determine
+ * the width of headers. This allows one to compute the size of the encoded data in a first pass, allocate a buffer of
+ * exactly that size, and encode the data into it in a second pass, for example using
+ * {@link CborByteArrayEncoder#CborByteArrayEncoder(int)}.
+ * </p>
+ */
+public final class CborSize {
+
+    private CborSize() {
+        // Nop
+    }
+
+    /**
+     * @return the size of the start of an indefinite-length array, see {@link CborEncoder#writeArrayStart()}.
+     */
+    public static int sizeOfArrayStart() {
+        return 1;
+    }
+
+    /**
+     * @param length the number of items in the array, &gt;= 0.
+     * @return the size of the start of a definite-length array, see {@link CborEncoder#writeArrayStart(int)}.
+     * @throws IllegalArgumentException in case the given length was negative.
+     */
+    public static int sizeOfArrayStart(int length) {
+        return sizeOfLength(length);
+    }
+
+    /**
+     * @return the size of a boolean value, see {@link CborEncoder#writeBoolean(boolean)}.
+     */
+    public static int sizeOfBoolean() {
+        return 1;
+    }
+
+    /**
+     * @return the size of a break value, see {@link CborEncoder#writeBreak()}.
+     */
+    public static int sizeOfBreak() {
+        return 1;
+    }
+
+    /**
+     * @param bytes the byte string, can be <code>null</code>.
+     * @return the size of the given byte string, see {@link CborEncoder#writeByteString(byte[])}.
+     */
+    public static long sizeOfByteString(byte[] bytes) {
+        return sizeOfByteString((bytes == null) ? 0 : bytes.length);
+    }
+
+    /**
+     * @param length the length of the byte string, in bytes, &gt;= 0.
+     * @return the size of a byte string of the given length, see {@link CborEncoder#writeByteString(byte[])}.
+     * @throws IllegalArgumentException in case the given length was negative.
+     */
+    public static long sizeOfByteString(long length) {
+        return sizeOfLength(length) + length;
+    }
+
+    /**
+     * @param values the array containing the byte strings, cannot be <code>null</code>;
+     * @param off the offset of the first byte string;
+     * @param len the number of byte strings, &gt;= 0.
+     * @return the size of the given byte strings written as array, see
+     *         {@link CborEncoder#writeByteStringArray(byte[][], int, int)}.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array.
+     */
+    public static long sizeOfByteStringArray(byte[][] values, int off, int len) {
+        checkRange(values.length, off, len);
+        long size = headLength(len);
+        for (int i = off, end = off + len; i < end; i++) {
+            int n = (values[i] == null) ? 0 : values[i].length;
+            size += headLength(n) + n;
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the start of an indefinite-length byte string, see
+     *         {@link CborEncoder#writeByteStringStart()}.
+     */
+    public static int sizeOfByteStringStart() {
+        return 1;
+    }
+
+    /**
+     * @return the size of a double-precision float, see {@link CborEncoder#writeDouble(double)}. In case the encoder
+     *         writes floating point values in their shortest form, use {@link #sizeOfFloatingPoint(double)} instead.
+     */
+    public static int sizeOfDouble() {
+        return 9;
+    }
+
+    /**
+     * @param values the array containing the values, cannot be <code>null</code>;
+     * @param off the offset of the first value;
+     * @param len the number of values, &gt;= 0;
+     * @param shortest <code>true</code> if the values are written in their shortest form, <code>false</code> if they
+     *        are written as double-precision floats.
+     * @return the size of the given values written as array, see
+     *         {@link CborEncoder#writeDoubleArray(double[], int, int)}.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array.
+     */
+    public static long sizeOfDoubleArray(double[] values, int off, int len, boolean shortest) {
+        checkRange(values.length, off, len);
+        long size = headLength(len);
+        if (!shortest) {
+            return size + 9L * len;
+        }
+        for (int i = off, end = off + len; i < end; i++) {
+            size += sizeOfFloatingPoint(values[i]);
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of a single-precision float, see {@link CborEncoder#writeFloat(float)}. In case the encoder
+     *         writes floating point values in their shortest form, use {@link #sizeOfFloatingPoint(double)} instead.
+     */
+    public static int sizeOfFloat() {
+        return 5;
+    }
+
+    /**
+     * @param value the floating point value.
+     * @return the size of the shortest form of the given value, either 3, 5 or 9 bytes, see
+     *         {@link CborEncoder#writeFloatingPoint(double)}.
+     */
+    public static int sizeOfFloatingPoint(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        int exp = (int) (bits >>> 52) & 0x7ff;
+        long mant = bits & 0xfffffffffffffL;
+        int tz = Long.numberOfTrailingZeros(mant);
+
+        if (exp == 0x7ff) {
+            // infinity or NaN, keep the payload...
+            return (tz >= 42) ? 3 : (tz >= 29) ? 5 : 9;
+        } else if (exp == 0) {
+            // zero or subnormal value; the latter is too small for any shorter form...
+            return (mant == 0) ? 3 : 9;
+        }
+        int e = exp - 1023;
+        if (e >= -24 && e <= 15 && tz >= 42 + Math.max(0, -14 - e)) {
+            return 3;
+        }
+        if (e >= -149 && e <= 127 && tz >= 29 + Math.max(0, -126 - e)) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * @return the size of a half-precision float, see {@link CborEncoder#writeHalfPrecisionFloat(float)}.
+     */
+    public static int sizeOfHalfPrecisionFloat() {
+        return 3;
+    }
+
+    /**
+     * @param value the integer value.
+     * @return the size of the given value, either 1, 2, 3, 5 or 9 bytes, see {@link CborEncoder#writeInt(long)}.
+     */
+    public static int sizeOfInt(long value) {
+        return headLength((value >> 63) ^ value);
+    }
+
+    /**
+     * @return the size of a 16-bit integer value, see {@link CborEncoder#writeInt16(int)}.
+     */
+    public static int sizeOfInt16() {
+        return 3;
+    }
+
+    /**
+     * @return the size of a 32-bit integer value, see {@link CborEncoder#writeInt32(long)}.
+     */
+    public static int sizeOfInt32() {
+        return 5;
+    }
+
+    /**
+     * @return the size of a 64-bit integer value, see {@link CborEncoder#writeInt64(long)}.
+     */
+    public static int sizeOfInt64() {
+        return 9;
+    }
+
+    /**
+     * @return the size of an 8-bit integer value, see {@link CborEncoder#writeInt8(int)}.
+     */
+    public static int sizeOfInt8() {
+        return 2;
+    }
+
+    /**
+     * @param values the array containing the values, cannot be <code>null</code>;
+     * @param off the offset of the first value;
+     * @param len the number of values, &gt;= 0.
+     * @return the size of the given values written as array, see {@link CborEncoder#writeIntArray(long[], int, int)}.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array.
+     */
+    public static long sizeOfIntArray(long[] values, int off, int len) {
+        checkRange(values.length, off, len);
+        long size = headLength(len);
+        for (int i = off, end = off + len; i < end; i++) {
+            long value = values[i];
+            size += headLength((value >> 63) ^ value);
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the start of an indefinite-length map, see {@link CborEncoder#writeMapStart()}.
+     */
+    public static int sizeOfMapStart() {
+        return 1;
+    }
+
+    /**
+     * @param length the number of entries in the map, &gt;= 0.
+     * @return the size of the start of a definite-length map, see {@link CborEncoder#writeMapStart(int)}.
+     * @throws IllegalArgumentException in case the given length was negative.
+     */
+    public static int sizeOfMapStart(int length) {
+        return sizeOfLength(length);
+    }
+
+    /**
+     * @return the size of a <code>null</code> value, see {@link CborEncoder#writeNull()}.
+     */
+    public static int sizeOfNull() {
+        return 1;
+    }
+
+    /**
+     * @param simpleValue the simple value.
+     * @return the size of the given simple value, either 1 or 2 bytes, see {@link CborEncoder#writeSimpleValue(byte)}.
+     */
+    public static int sizeOfSimpleValue(byte simpleValue) {
+        return headLength(simpleValue & 0xff);
+    }
+
+    /**
+     * @return the size of a small integer value, see {@link CborEncoder#writeSmallInt(int)}.
+     */
+    public static int sizeOfSmallInt() {
+        return 1;
+    }
+
+    /**
+     * @param tag the tag, &gt;= 0.
+     * @return the size of the given tag, excluding the tagged item, see {@link CborEncoder#writeTag(long)}.
+     * @throws IllegalArgumentException in case the given tag was negative.
+     */
+    public static int sizeOfTag(long tag) {
+        if (tag < 0) {
+            throw new IllegalArgumentException("Invalid tag specification, cannot be negative!");
+        }
+        return headLength(tag);
+    }
+
+    /**
+     * @param values the array containing the strings, cannot be <code>null</code>;
+     * @param off the offset of the first string;
+     * @param len the number of strings, &gt;= 0.
+     * @return the size of the given strings written as array, see
+     *         {@link CborEncoder#writeTextArray(String[], int, int)}.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array.
+     */
+    public static long sizeOfTextArray(String[] values, int off, int len) {
+        checkRange(values.length, off, len);
+        long size = headLength(len);
+        for (int i = off, end = off + len; i < end; i++) {
+            size += sizeOfTextString(values[i]);
+        }
+        return size;
+    }
+
+    /**
+     * @param value the characters to encode as UTF-8, cannot be <code>null</code>;
+     * @param off the index of the first character;
+     * @param len the number of characters.
+     * @return the size of the given characters written as UTF-8 string, see
+     *         {@link CborEncoder#writeTextString(char[], int, int)}.
+     * @throws IndexOutOfBoundsException in case the given offset and length did not denote a valid range in the given
+     *         array.
+     */
+    public static long sizeOfTextString(char[] value, int off, int len) {
+        long utf8Len = CborUtf8.encodedLength(CharBuffer.wrap(value, off, len), 0, len);
+        return headLength(utf8Len) + utf8Len;
+    }
+
+    /**
+     * @param value the characters to encode as UTF-8, can be <code>null</code>.
+     * @return the size of the given characters written as UTF-8 string, see
+     *         {@link CborEncoder#writeTextString(CharSequence)}.
+     */
+    public static long sizeOfTextString(CharSequence value) {
+        if (value == null) {
+            return 1;
+        }
+        long utf8Len = CborUtf8.encodedLength(value, 0, value.length());
+        return headLength(utf8Len) + utf8Len;
+    }
+
+    /**
+     * @return the size of the start of an indefinite-length UTF-8 string, see
+     *         {@link CborEncoder#writeTextStringStart()}.
+     */
+    public static int sizeOfTextStringStart() {
+        return 1;
+    }
+
+    /**
+     * @param length the number of elements, &gt;= 0;
+     * @param elementSize the size of a single element, in bytes, for example <tt>8</tt> for an array of longs.
+     * @return the size of a typed array with the given number of elements, including its tag, see
+     *         {@link CborEncoder#writeTypedArray(long[], int, int, ByteOrder)}.
+     * @throws IllegalArgumentException in case the given length was negative.
+     */
+    public static long sizeOfTypedArray(int length, int elementSize) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid length, cannot be negative!");
+        }
+        // all typed array tags are encoded in two bytes...
+        return 2 + sizeOfByteString((long) length * elementSize);
+    }
+
+    /**
+     * @return the size of an undefined value, see {@link CborEncoder#writeUndefined()}.
+     */
+    public static int sizeOfUndefined() {
+        return 1;
+    }
+
+    private static int sizeOfLength(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid length, cannot be negative!");
+        }
+        return headLength(length);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.IOException;
+
+/**
+ * Provides a bounded cache of decoded text strings, to return the same {@link String} instance for short, frequently
+ * repeated, text strings such as map keys.
+ * <p>
+ * The cache is a fixed-size, direct-mapped table indexed by a hash of the UTF-8 encoded bytes: a lookup costs a single
+ * hash calculation and byte comparison, and colliding strings simply replace each other. Only text strings up to a
+ * given maximum length are cached.
+ * </p>
+ * <p>
+ * This class is <b>not</b> thread-safe. It can be shared between decoders that are used by the same thread.
+ * </p>
+ * 
+ * @see CborDecoder#setStringCache(CborStringCache)
+ */
+public final class CborStringCache {
+    /** The default number of cached strings. */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** The default maximum length, in bytes, of cached strings. */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final byte[][] m_keys;
+    private final String[] m_values;
+    private final int m_mask;
+    private final int m_maxLength;
+
+    /**
+     * Creates a new {@link CborStringCache} instance with a default capacity and maximum string length.
+     */
+    public CborStringCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a new {@link CborStringCache} instance.
+     * 
+     * @param capacity the number of strings to cache, rounded up to the next power of two, &gt; 0;
+     * @param maxLength the maximum length, in bytes, of the UTF-8 encoded strings to cache, &gt;= 0.
+     * @throws IllegalArgumentException in case the given capacity or maximum length was invalid.
+     */
+    public CborStringCache(int capacity, int maxLength) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity!");
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Invalid maximum length!");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        m_keys = new byte[size][];
+        m_values = new String[size];
+        m_mask = size - 1;
+        m_maxLength = maxLength;
+    }
+
+    /**
+     * @return the maximum length, in bytes, of the UTF-8 encoded strings that are cached.
+     */
+    public int getMaxLength() {
+        return m_maxLength;
+    }
+
+    /**
+     * Decodes the given UTF-8 encoded bytes, returning a cached instance if the same string was decoded before.
+     * 
+     * @param src the bytes to decode, cannot be <code>null</code>;
+     * @param off the offset of the first byte to decode;
+     * @param len the number of bytes to decode;
+     * @param chars a buffer to decode the characters in, can be <code>null</code>.
+     * @return the decoded string, never <code>null</code>.
+     * @throws IOException in case the given bytes are not valid UTF-8.
+     */
+    String decode(byte[] src, int off, int len, char[] chars) throws IOException {
+        if (len > m_maxLength) {
+            return CborUtf8.decode(src, off, len, chars);
+        }
+
+        int hash = len;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            hash = 31 * hash + src[i];
+        }
+        int idx = (hash ^ (hash >>> 16)) & m_mask;
+
+        byte[] key = m_keys[idx];
+        if (key != null && key.length == len && regionEquals(key, src, off)) {
+            return m_values[idx];
+        }
+
+        String value = CborUtf8.decode(src, off, len, chars);
+        key = new byte[len];
+        System.arraycopy(src, off, key, 0, len);
+        m_keys[idx] = key;
+        m_values[idx] = value;
+        return value;
+    }
+
+    private static boolean regionEquals(byte[] key, byte[] src, int off) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != src[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
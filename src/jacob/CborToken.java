@@ -0,0 +1,34 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+/**
+ * Denotes the kinds of tokens reported by {@link CborParser}.
+ */
+public enum CborToken {
+    /** Start of an array, either of definite or indefinite length. */
+    START_ARRAY,
+    /** Start of a map, either of definite or indefinite length. */
+    START_MAP,
+    /** End of the innermost array or map. */
+    END,
+    /** A signed or unsigned integer value. */
+    INT,
+    /** A half-, single- or double-precision float value. */
+    FLOAT,
+    /** An UTF-8 string value, with all chunks of indefinite-length strings concatenated. */
+    TEXT,
+    /** A byte string value, with all chunks of indefinite-length strings concatenated. */
+    BYTES,
+    /** A semantic tag, which applies to the data item following it. */
+    TAG,
+    /** A simple value, such as a boolean, <code>null</code> or "undefined" value. */
+    SIMPLE,
+    /** Not enough input is available yet to report the next token, see {@link CborNonBlockingParser}. */
+    NOT_AVAILABLE;
+}
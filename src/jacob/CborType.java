@@ -14,14 +14,31 @@ import static jacob.CborConstants.*;
  * <p>
  * The major type is encoded in the upper three bits of each initial byte. The lower 5 bytes represent any additional information.
  * </p>
+ * <p>
+ * As an initial byte can only have 256 different values, all {@link CborType}s are created up front and shared, see
+ * {@link #valueOf(int)}.
+ * </p>
  */
 public class CborType {
+    private static final CborType[] TYPES = new CborType[256];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            TYPES[i] = new CborType(i >>> 5, i & 0x1f);
+        }
+    }
+
     private final int m_major;
     private final int m_additional;
+    private final int m_payloadWidth;
+    private final boolean m_breakAllowed;
 
     private CborType(int major, int additional) {
         m_major = major;
         m_additional = additional;
+        m_payloadWidth = payloadWidth(additional);
+        m_breakAllowed = major == TYPE_ARRAY || major == TYPE_BYTE_STRING || major == TYPE_MAP
+            || major == TYPE_TEXT_STRING;
     }
 
     /**
@@ -58,10 +75,28 @@ public class CborType {
      * Decodes a given byte value to a {@link CborType} value.
      * 
      * @param i the input byte (8-bit) to decode into a {@link CborType} instance.
-     * @return a {@link CborType} instance, never <code>null</code>.
+     * @return a shared {@link CborType} instance, never <code>null</code>.
      */
     public static CborType valueOf(int i) {
-        return new CborType((i & 0xff) >>> 5, i & 0x1f);
+        return TYPES[i & 0xff];
+    }
+
+    private static int payloadWidth(int additional) {
+        switch (additional) {
+            case ONE_BYTE:
+                return 1;
+            case TWO_BYTES:
+                return 2;
+            case FOUR_BYTES:
+                return 4;
+            case EIGHT_BYTES:
+                return 8;
+            case BREAK:
+                return 0;
+            default:
+                // reserved values (28..30) have no defined payload...
+                return (additional < ONE_BYTE) ? 0 : -1;
+        }
     }
 
     @Override
@@ -91,6 +126,15 @@ public class CborType {
         return m_major;
     }
 
+    /**
+     * @return the number of bytes following the initial byte that hold the payload (value or length) of this type,
+     *         either <tt>0</tt>, <tt>1</tt>, <tt>2</tt>, <tt>4</tt> or <tt>8</tt>, or <tt>-1</tt> in case the
+     *         additional information is a reserved value.
+     */
+    public int getPayloadWidth() {
+        return m_payloadWidth;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -105,8 +149,7 @@ public class CborType {
      *         <code>false</code> if only definite-length payloads are allowed.
      */
     public boolean isBreakAllowed() {
-        return m_major == TYPE_ARRAY || m_major == TYPE_BYTE_STRING || m_major == TYPE_MAP
-            || m_major == TYPE_TEXT_STRING;
+        return m_breakAllowed;
     }
 
     /**
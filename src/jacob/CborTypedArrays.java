@@ -0,0 +1,206 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Provides the bulk conversions between primitive arrays and the payloads of typed arrays, as defined in RFC 8746.
+ * <p>
+ * The tag of a typed array encodes its element type in its lower five bits: <tt>f s e l l</tt>, denoting whether the
+ * elements are floats, whether integer elements are signed, whether the elements are little endian, and the element
+ * size.
+ * </p>
+ */
+final class CborTypedArrays {
+    private static final int FLOAT_BIT = 0x10;
+    private static final int SIGNED_BIT = 0x08;
+    private static final int LITTLE_ENDIAN_BIT = 0x04;
+
+    private CborTypedArrays() {
+        // Nop
+    }
+
+    /**
+     * @return the byte order of the elements of a typed array with the given tag.
+     */
+    static ByteOrder byteOrder(int tag) {
+        // for 8-bit integers, this bit denotes clamping instead...
+        return ((tag & LITTLE_ENDIAN_BIT) != 0 && elementSize(tag) > 1) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * @return the size, in bytes, of a single element of a typed array with the given tag.
+     */
+    static int elementSize(int tag) {
+        int ll = tag & 0x03;
+        return isFloat(tag) ? (2 << ll) : (1 << ll);
+    }
+
+    /**
+     * @return <code>true</code> if the given tag denotes a typed array of floats, <code>false</code> otherwise.
+     */
+    static boolean isFloat(int tag) {
+        return (tag & FLOAT_BIT) != 0;
+    }
+
+    /**
+     * @return <code>true</code> if the given tag denotes a typed array of signed integers, <code>false</code> otherwise.
+     */
+    static boolean isSigned(int tag) {
+        return (tag & (FLOAT_BIT | SIGNED_BIT)) == SIGNED_BIT;
+    }
+
+    /**
+     * @return <code>true</code> if the given tag denotes a typed array, <code>false</code> otherwise.
+     */
+    static boolean isTypedArray(long tag) {
+        return tag >= TAG_UINT8_ARRAY && tag <= TAG_FLOAT128_LE_ARRAY && tag != (TAG_SINT8_ARRAY | LITTLE_ENDIAN_BIT);
+    }
+
+    /**
+     * Copies all remaining elements of a given buffer into the given byte buffer, in the byte order of the latter.
+     * 
+     * @param dst the byte buffer to copy the elements to, its position is not changed;
+     * @param src the short, int, long, float or double buffer to copy the elements from.
+     */
+    static void put(ByteBuffer dst, Buffer src) {
+        if (src instanceof LongBuffer) {
+            dst.asLongBuffer().put((LongBuffer) src);
+        } else if (src instanceof DoubleBuffer) {
+            dst.asDoubleBuffer().put((DoubleBuffer) src);
+        } else if (src instanceof IntBuffer) {
+            dst.asIntBuffer().put((IntBuffer) src);
+        } else if (src instanceof FloatBuffer) {
+            dst.asFloatBuffer().put((FloatBuffer) src);
+        } else {
+            dst.asShortBuffer().put((ShortBuffer) src);
+        }
+    }
+
+    /**
+     * @return the tag for a typed array with the given big endian tag, in the given byte order.
+     */
+    static int tag(int bigEndianTag, ByteOrder order) {
+        return (order == ByteOrder.LITTLE_ENDIAN) ? (bigEndianTag | LITTLE_ENDIAN_BIT) : bigEndianTag;
+    }
+
+    /**
+     * Converts the payload of a typed array of 16-, 32- or 64-bit floats to a double array.
+     */
+    static double[] toDoubleArray(int tag, ByteBuffer payload) {
+        int size = elementSize(tag);
+        double[] result = new double[payload.remaining() / size];
+        if (size == 8) {
+            payload.asDoubleBuffer().get(result);
+        } else if (size == 4) {
+            FloatBuffer src = payload.asFloatBuffer();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = src.get(i);
+            }
+        } else {
+            ShortBuffer src = payload.asShortBuffer();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = CborHalfFloat.toFloat(src.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the payload of a typed array of 16- or 32-bit floats to a float array.
+     */
+    static float[] toFloatArray(int tag, ByteBuffer payload) {
+        int size = elementSize(tag);
+        float[] result = new float[payload.remaining() / size];
+        if (size == 4) {
+            payload.asFloatBuffer().get(result);
+        } else {
+            ShortBuffer src = payload.asShortBuffer();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = CborHalfFloat.toFloat(src.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the payload of a typed array of 8-, 16- or signed 32-bit integers to an int array.
+     */
+    static int[] toIntArray(int tag, ByteBuffer payload) {
+        int size = elementSize(tag);
+        int[] result = new int[payload.remaining() / size];
+        if (size == 4) {
+            payload.asIntBuffer().get(result);
+        } else if (size == 2) {
+            ShortBuffer src = payload.asShortBuffer();
+            if (isSigned(tag)) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = src.get(i);
+                }
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = src.get(i) & 0xffff;
+                }
+            }
+        } else {
+            int pos = payload.position();
+            if (isSigned(tag)) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = payload.get(pos + i);
+                }
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = payload.get(pos + i) & 0xff;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts the payload of a typed array of integers to a long array.
+     */
+    static long[] toLongArray(int tag, ByteBuffer payload) {
+        int size = elementSize(tag);
+        if (size < 4) {
+            int[] values = toIntArray(tag, payload);
+            long[] result = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = values[i];
+            }
+            return result;
+        }
+
+        long[] result = new long[payload.remaining() / size];
+        if (size == 8) {
+            payload.asLongBuffer().get(result);
+        } else {
+            IntBuffer src = payload.asIntBuffer();
+            if (isSigned(tag)) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = src.get(i);
+                }
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = src.get(i) & 0xffffffffL;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Provides UTF-8 encoding of character sequences straight into byte arrays or buffers, and strict UTF-8 decoding of
+ * byte arrays.
+ * <p>
+ * Unpaired surrogate characters are encoded as <tt>'?'</tt>, like {@link String#getBytes(String)} does.
+ * </p>
+ */
+final class CborUtf8 {
+    /** The maximum number of bytes a single character can be encoded in. */
+    static final int MAX_BYTES_PER_CHAR = 3;
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private CborUtf8() {
+        // Nop
+    }
+
+    /**
+     * Decodes a range of UTF-8 encoded bytes into a string.
+     * <p>
+     * Runs of ASCII characters are detected eight bytes at a time. All other sequences are strictly validated:
+     * overlong encodings, encoded surrogates, code points beyond U+10FFFF and truncated sequences are rejected.
+     * </p>
+     * 
+     * @param src the bytes to decode, cannot be <code>null</code>;
+     * @param off the offset of the first byte to decode;
+     * @param len the number of bytes to decode;
+     * @param chars a buffer to decode the characters in, should be able to hold at least <tt>len</tt> characters, or
+     *        <code>null</code> to allocate a new buffer if needed.
+     * @return the decoded string, never <code>null</code>.
+     * @throws IOException in case the given bytes are not valid UTF-8.
+     */
+    static String decode(byte[] src, int off, int len, char[] chars) throws IOException {
+        int end = off + len;
+        int i = off;
+        // fast path for runs of ASCII characters...
+        while (i + 8 <= end
+            && ((src[i] | src[i + 1] | src[i + 2] | src[i + 3] | src[i + 4] | src[i + 5] | src[i + 6] | src[i + 7]) & 0x80) == 0) {
+            i += 8;
+        }
+        while (i < end && src[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            // pure ASCII, which is a subset of ISO-8859-1...
+            return new String(src, off, len, ISO_8859_1);
+        }
+
+        if (chars == null || chars.length < len) {
+            chars = new char[len];
+        }
+        int n = 0;
+        for (int j = off; j < i; j++) {
+            chars[n++] = (char) src[j];
+        }
+        while (i < end) {
+            int b = src[i++];
+            if (b >= 0) {
+                chars[n++] = (char) b;
+                continue;
+            }
+            int cp;
+            int min;
+            int more;
+            if ((b & 0xe0) == 0xc0) {
+                cp = b & 0x1f;
+                min = 0x80;
+                more = 1;
+            } else if ((b & 0xf0) == 0xe0) {
+                cp = b & 0x0f;
+                min = 0x800;
+                more = 2;
+            } else if ((b & 0xf8) == 0xf0) {
+                cp = b & 0x07;
+                min = 0x10000;
+                more = 3;
+            } else {
+                throw invalid(i - 1 - off);
+            }
+            if (end - i < more) {
+                throw new IOException("Invalid UTF-8: truncated sequence at index " + (i - 1 - off) + "!");
+            }
+            for (; more > 0; more--) {
+                int c = src[i++];
+                if ((c & 0xc0) != 0x80) {
+                    throw invalid(i - 1 - off);
+                }
+                cp = (cp << 6) | (c & 0x3f);
+            }
+            if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                throw new IOException("Invalid UTF-8: illegal code point U+" + Integer.toHexString(cp) + "!");
+            }
+            if (cp >= 0x10000) {
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            } else {
+                chars[n++] = (char) cp;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Encodes a range of characters as UTF-8 into a given byte array.
+     * <p>
+     * The given byte array should be large enough to hold the encoded characters, for example, by sizing it using
+     * {@link #encodedLength(CharSequence, int, int)}, or by reserving {@link #MAX_BYTES_PER_CHAR} bytes per character.
+     * </p>
+     * 
+     * @param s the characters to encode, cannot be <code>null</code>;
+     * @param off the index of the first character to encode;
+     * @param len the number of characters to encode;
+     * @param dst the byte array to store the encoded characters in, cannot be <code>null</code>;
+     * @param pos the position in the given byte array to store the first encoded byte.
+     * @return the position in the given byte array directly after the last encoded byte.
+     */
+    static int encode(CharSequence s, int off, int len, byte[] dst, int pos) {
+        int end = off + len;
+        int i = off;
+        // fast path for ASCII characters...
+        char c;
+        while (i < end && (c = s.charAt(i)) < 0x80) {
+            dst[pos++] = (byte) c;
+            i++;
+        }
+        while (i < end) {
+            c = s.charAt(i++);
+            if (c < 0x80) {
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[pos++] = (byte) (0xc0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char d;
+                if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(d = s.charAt(i))) {
+                    int cp = Character.toCodePoint(c, d);
+                    i++;
+                    dst[pos++] = (byte) (0xf0 | (cp >> 18));
+                    dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    dst[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    // unpaired surrogate...
+                    dst[pos++] = '?';
+                }
+            } else {
+                dst[pos++] = (byte) (0xe0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dst[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes a range of characters as UTF-8 into a given buffer, using absolute puts.
+     * <p>
+     * Like {@link #encode(CharSequence, int, int, byte[], int)}, but for buffers without an accessible backing array,
+     * such as direct or memory-mapped buffers. The position and limit of the given buffer are left untouched.
+     * </p>
+     * 
+     * @param s the characters to encode, cannot be <code>null</code>;
+     * @param off the index of the first character to encode;
+     * @param len the number of characters to encode;
+     * @param dst the buffer to store the encoded characters in, cannot be <code>null</code>;
+     * @param pos the index in the given buffer to store the first encoded byte.
+     * @return the index in the given buffer directly after the last encoded byte.
+     */
+    static int encode(CharSequence s, int off, int len, ByteBuffer dst, int pos) {
+        int end = off + len;
+        int i = off;
+        // fast path for ASCII characters...
+        char c;
+        while (i < end && (c = s.charAt(i)) < 0x80) {
+            dst.put(pos++, (byte) c);
+            i++;
+        }
+        while (i < end) {
+            c = s.charAt(i++);
+            if (c < 0x80) {
+                dst.put(pos++, (byte) c);
+            } else if (c < 0x800) {
+                dst.put(pos++, (byte) (0xc0 | (c >> 6)));
+                dst.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                char d;
+                if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(d = s.charAt(i))) {
+                    int cp = Character.toCodePoint(c, d);
+                    i++;
+                    dst.put(pos++, (byte) (0xf0 | (cp >> 18)));
+                    dst.put(pos++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+                    dst.put(pos++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+                    dst.put(pos++, (byte) (0x80 | (cp & 0x3f)));
+                } else {
+                    // unpaired surrogate...
+                    dst.put(pos++, (byte) '?');
+                }
+            } else {
+                dst.put(pos++, (byte) (0xe0 | (c >> 12)));
+                dst.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                dst.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Determines the number of bytes needed to encode a range of characters as UTF-8.
+     * 
+     * @param s the characters to encode, cannot be <code>null</code>;
+     * @param off the index of the first character to encode;
+     * @param len the number of characters to encode.
+     * @return the number of bytes the given characters are encoded in, &gt;= <tt>len</tt>.
+     */
+    static long encodedLength(CharSequence s, int off, int len) {
+        int end = off + len;
+        int i = off;
+        // fast path for ASCII characters...
+        while (i < end && s.charAt(i) < 0x80) {
+            i++;
+        }
+        long result = len;
+        while (i < end) {
+            char c = s.charAt(i++);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                result++;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < end && Character.isLowSurrogate(s.charAt(i))) {
+                    // two characters encoded as four bytes...
+                    i++;
+                    result += 2;
+                }
+            } else {
+                result += 2;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines how many of the given characters can be encoded in chunks without splitting a surrogate pair.
+     * 
+     * @param s the characters to encode, cannot be <code>null</code>;
+     * @param off the index of the first character to encode;
+     * @param len the maximum number of characters to encode, &gt; 0.
+     * @return the number of characters to encode, either <tt>len</tt> or <tt>len - 1</tt>.
+     */
+    static int chunkLength(CharSequence s, int off, int len) {
+        if (len > 1 && Character.isHighSurrogate(s.charAt(off + len - 1))) {
+            return len - 1;
+        }
+        return len;
+    }
+
+    private static IOException invalid(int idx) {
+        return new IOException("Invalid UTF-8: unexpected byte at index " + idx + "!");
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborBlockWriter} and {@link CborBlockReader}.
+ */
+public class CborBlockFileTest {
+    private File m_file;
+    private RandomAccessFile m_raf;
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = File.createTempFile("jacob", ".cbor");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (m_raf != null) {
+            m_raf.close();
+        }
+        m_file.delete();
+    }
+
+    private void writeItems(int count, int itemsPerBlock, boolean checksum) throws IOException {
+        CborBlockWriter writer = new CborBlockWriter(new FileOutputStream(m_file), itemsPerBlock, checksum);
+        CborEncoder encoder = writer.getEncoder();
+        for (int i = 0; i < count; i++) {
+            encoder.writeArrayStart(2);
+            encoder.writeInt(i);
+            encoder.writeByteString(new byte[i % 50]);
+            writer.endItem();
+            if (i == count / 2) {
+                // writes a partial block...
+                writer.flush();
+            }
+        }
+        writer.close();
+        assertEquals(m_file.length(), writer.getPosition());
+    }
+
+    private FileChannel open() throws IOException {
+        m_raf = new RandomAccessFile(m_file, "rw");
+        return m_raf.getChannel();
+    }
+
+    private static void readItems(CborBlockReader.Block block, List<Integer> result) throws IOException {
+        int count = 0;
+        for (ByteBuffer item : block.getItems()) {
+            CborDecoder decoder = new CborByteBufferDecoder(item);
+            assertEquals(2, decoder.readArrayLength());
+            int i = (int) decoder.readInt();
+            assertEquals(i % 50, decoder.readByteString().length);
+            result.add(i);
+            count++;
+        }
+        assertEquals(block.getItemCount(), count);
+    }
+
+    /**
+     * Reads the blocks that start in a given range, as a single worker would do.
+     */
+    private static List<Integer> readRange(FileChannel channel, long start, long end) throws IOException {
+        List<Integer> result = new ArrayList<Integer>();
+        CborBlockReader reader = new CborBlockReader(channel);
+        long stop = Math.min(end, reader.getBlocksEnd());
+        long pos = reader.sync(start);
+        while (pos < stop) {
+            CborBlockReader.Block block = reader.readBlock(pos);
+            readItems(block, result);
+            pos = block.getNextPosition();
+        }
+        return result;
+    }
+
+    private static void assertIndices(int count, List<Integer> indices) {
+        assertEquals(count, indices.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) indices.get(i));
+        }
+    }
+
+    @Test
+    public void testReadBlocksFromIndex() throws IOException {
+        writeItems(2500, 100, true);
+        CborBlockReader reader = new CborBlockReader(open());
+
+        long[] index = reader.readIndex();
+        // one partial block is flushed halfway...
+        assertEquals(26, index.length);
+
+        List<Integer> indices = new ArrayList<Integer>();
+        for (int i = 0; i < index.length; i++) {
+            CborBlockReader.Block block = reader.readBlock(index[i]);
+            assertEquals(index[i], block.getPosition());
+            assertEquals(i + 1 < index.length ? index[i + 1] : reader.getBlocksEnd(), block.getNextPosition());
+            readItems(block, indices);
+        }
+        assertIndices(2500, indices);
+    }
+
+    @Test
+    public void testReadSplitRanges() throws IOException {
+        writeItems(2500, 64, false);
+        FileChannel channel = open();
+        long size = channel.size();
+
+        for (int splits : new int[] { 1, 2, 3, 7, 50, 1000 }) {
+            List<Integer> indices = new ArrayList<Integer>();
+            for (int i = 0; i < splits; i++) {
+                indices.addAll(readRange(channel, i * size / splits, (i + 1) * size / splits));
+            }
+            assertIndices(2500, indices);
+        }
+    }
+
+    @Test
+    public void testSyncFromEveryPosition() throws IOException {
+        writeItems(50, 7, true);
+        FileChannel channel = open();
+        CborBlockReader reader = new CborBlockReader(channel);
+        long[] index = reader.readIndex();
+
+        int block = 0;
+        for (long pos = 0; pos <= channel.size(); pos++) {
+            while (block < index.length && index[block] < pos) {
+                block++;
+            }
+            long expected = block < index.length ? index[block] : reader.getBlocksEnd();
+            assertEquals("Position " + pos, expected, reader.sync(pos));
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        writeItems(0, 10, true);
+        CborBlockReader reader = new CborBlockReader(open());
+        assertEquals(0, reader.readIndex().length);
+        assertEquals(reader.getBlocksEnd(), reader.sync(0));
+    }
+
+    @Test
+    public void testChecksumMismatchFail() throws IOException {
+        writeItems(100, 100, true);
+        FileChannel channel = open();
+        long blockPosition = new CborBlockReader(channel).readIndex()[0];
+
+        // corrupts the last byte of the first block...
+        long corrupt = new CborBlockReader(channel).readIndex()[1] - 1;
+        m_raf.seek(corrupt);
+        int b = m_raf.read();
+        m_raf.seek(corrupt);
+        m_raf.write(b ^ 0x01);
+
+        try {
+            new CborBlockReader(channel).readBlock(blockPosition);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testNoBlockAtPositionFail() throws IOException {
+        writeItems(10, 5, true);
+        CborBlockReader reader = new CborBlockReader(open());
+        try {
+            reader.readBlock(reader.readIndex()[0] + 1);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotABlockFileFail() throws IOException {
+        FileOutputStream fos = new FileOutputStream(m_file);
+        fos.write(new byte[] { 0x01, 0x02, 0x03 });
+        fos.close();
+        new CborBlockReader(open());
+    }
+}
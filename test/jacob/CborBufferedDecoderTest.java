@@ -0,0 +1,159 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborBufferedDecoder}.
+ */
+public class CborBufferedDecoderTest {
+
+    /**
+     * Input stream that returns at most a given number of bytes per read and counts the number of reads.
+     */
+    static class CountingInputStream extends ByteArrayInputStream {
+        private final int m_maxRead;
+        int m_reads;
+        int m_largestRead;
+
+        CountingInputStream(byte[] buf, int maxRead) {
+            super(buf);
+            m_maxRead = maxRead;
+        }
+
+        @Override
+        public synchronized int read() {
+            m_reads++;
+            return super.read();
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            m_reads++;
+            m_largestRead = Math.max(m_largestRead, len);
+            return super.read(b, off, Math.min(len, m_maxRead));
+        }
+    }
+
+    private static byte[] encodeItems(byte[] blob) throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < 100; i++) {
+            encoder.writeInt(i * 1000003L);
+            encoder.writeDouble(i / 3.0);
+            encoder.writeTextString("item" + i);
+        }
+        encoder.writeByteString(blob);
+        encoder.writeInt(-1);
+        return encoder.toByteArray();
+    }
+
+    private static void assertItems(CborDecoder decoder, byte[] blob) throws IOException {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 1000003L, decoder.readInt());
+            assertEquals(i / 3.0, decoder.readDouble(), 0.0);
+            assertEquals("item" + i, decoder.readTextString());
+        }
+        assertArrayEquals(blob, decoder.readByteString());
+        assertEquals(-1, decoder.readInt());
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testDecodeFromBufferInBulk() throws IOException {
+        byte[] blob = new byte[10];
+        byte[] encoded = encodeItems(blob);
+        CountingInputStream is = new CountingInputStream(encoded, Integer.MAX_VALUE);
+
+        assertItems(new CborBufferedDecoder(is, 64), blob);
+        // each read should (almost) fill the complete buffer...
+        assertEquals(64, is.m_largestRead);
+        assertTrue(is.m_reads < encoded.length / 32);
+    }
+
+    @Test
+    public void testDecodeWithShortReads() throws IOException {
+        byte[] blob = new byte[1000];
+        Arrays.fill(blob, (byte) 0x5a);
+
+        assertItems(new CborBufferedDecoder(new CountingInputStream(encodeItems(blob), 3), 16), blob);
+    }
+
+    @Test
+    public void testLargeStringBypassesBuffer() throws IOException {
+        byte[] blob = new byte[100000];
+        Arrays.fill(blob, (byte) 0xa5);
+        CountingInputStream is = new CountingInputStream(encodeItems(blob), Integer.MAX_VALUE);
+
+        assertItems(new CborBufferedDecoder(is), blob);
+        assertTrue(is.m_largestRead > CborBufferedDecoder.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Test
+    public void testStreamPosition() throws IOException {
+        byte[] blob = new byte[1000];
+        byte[] encoded = encodeItems(blob);
+        CborByteArrayDecoder expected = new CborByteArrayDecoder(encoded);
+        CborBufferedDecoder decoder = new CborBufferedDecoder(new CountingInputStream(encoded, 7), 16);
+        assertEquals(0, decoder.getStreamPosition());
+        // small items are read through the buffer, the byte string bypasses it, and the last items are skipped...
+        for (int i = 0; i < 300; i++) {
+            expected.skipValue();
+            decoder.skipValue();
+            assertEquals(expected.getPosition(), decoder.getStreamPosition());
+        }
+        assertArrayEquals(blob, decoder.readByteString());
+        expected.skipValue();
+        assertEquals(expected.getPosition(), decoder.getStreamPosition());
+        decoder.skipValue();
+        assertEquals(encoded.length, decoder.getStreamPosition());
+        assertNull(decoder.peekType());
+
+        // the byte string is skipped in the input stream itself...
+        decoder = new CborBufferedDecoder(new ByteArrayInputStream(encoded), 16);
+        while (decoder.peekType() != null) {
+            decoder.skipValue();
+        }
+        assertEquals(encoded.length, decoder.getStreamPosition());
+    }
+
+    @Test
+    public void testBufferPositionUnsupported() {
+        CborBufferedDecoder decoder = new CborBufferedDecoder(new ByteArrayInputStream(new byte[] { 0x01 }));
+        try {
+            decoder.getPosition();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // Ok; expected
+        }
+        try {
+            decoder.remaining();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedInputFail() throws IOException {
+        new CborBufferedDecoder(new ByteArrayInputStream(new byte[] { 0x1b, 0x00, 0x01 })).readInt();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullInputStreamFail() {
+        new CborBufferedDecoder((InputStream) null);
+    }
+}
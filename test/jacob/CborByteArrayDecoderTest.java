@@ -0,0 +1,86 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborConstants.*;
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborByteArrayDecoder}.
+ */
+public class CborByteArrayDecoderTest {
+
+    private static byte[] encodeItems() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeArrayStart(3);
+        encoder.writeInt(-500);
+        encoder.writeInt(Long.MAX_VALUE);
+        encoder.writeInt32(4294967295L);
+        encoder.writeTextString("\u00fc\u6c34");
+        encoder.writeByteString(new byte[] { 1, 2, 3 });
+        encoder.writeMapStart(1);
+        encoder.writeTag(TAG_URI);
+        encoder.writeDouble(1.1);
+        encoder.writeFloat(-4.1f);
+        encoder.writeHalfPrecisionFloat(1.5f);
+        encoder.writeBoolean(true);
+        encoder.writeNull();
+        return encoder.toByteArray();
+    }
+
+    private static void assertItems(CborDecoder decoder) throws IOException {
+        assertEquals(CborType.valueOf(0x83), decoder.peekType());
+        assertEquals(3, decoder.readArrayLength());
+        assertEquals(-500, decoder.readInt());
+        assertEquals(Long.MAX_VALUE, decoder.readInt());
+        assertEquals(4294967295L, decoder.readInt32());
+        assertEquals("\u00fc\u6c34", decoder.readTextString());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, decoder.readByteString());
+        assertEquals(1, decoder.readMapLength());
+        assertEquals(TAG_URI, decoder.readTag());
+        assertEquals(1.1, decoder.readDouble(), 0.0);
+        assertEquals(-4.1f, decoder.readFloat(), 0.0f);
+        assertEquals(1.5, decoder.readHalfPrecisionFloat(), 0.0);
+        assertTrue(decoder.readBoolean());
+        assertNull(decoder.readNull());
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testDecodeArray() throws IOException {
+        CborByteArrayDecoder decoder = new CborByteArrayDecoder(encodeItems());
+        assertItems(decoder);
+        assertEquals(0, decoder.remaining());
+    }
+
+    @Test
+    public void testDecodeArrayRange() throws IOException {
+        byte[] items = encodeItems();
+        byte[] buf = new byte[items.length + 10];
+        System.arraycopy(items, 0, buf, 5, items.length);
+
+        CborByteArrayDecoder decoder = new CborByteArrayDecoder(buf, 5, items.length);
+        assertItems(decoder);
+        assertEquals(5 + items.length, decoder.getPosition());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedInputFail() throws IOException {
+        new CborByteArrayDecoder(new byte[] { 0x1a, 0x00, 0x01 }).readInt();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRangeFail() {
+        new CborByteArrayDecoder(new byte[4], 2, 3);
+    }
+}
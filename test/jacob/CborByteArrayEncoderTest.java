@@ -0,0 +1,72 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborByteArrayEncoder}.
+ */
+public class CborByteArrayEncoderTest {
+
+    private static void writeItems(CborEncoder encoder) throws IOException {
+        encoder.writeArrayStart(12);
+        encoder.writeInt(0);
+        encoder.writeInt(-24);
+        encoder.writeInt(255);
+        encoder.writeInt(-65536);
+        encoder.writeInt(4294967295L);
+        encoder.writeInt(Long.MIN_VALUE);
+        encoder.writeInt16(-1000);
+        encoder.writeSmallInt(7);
+        encoder.writeTextString("IETF\u6c34");
+        encoder.writeByteString(new byte[300]);
+        encoder.writeDouble(1.1);
+        encoder.writeHalfPrecisionFloat(65504.0f);
+        encoder.writeMapStart();
+        encoder.writeTag(CborConstants.TAG_URI);
+        encoder.writeNull();
+        encoder.writeBreak();
+    }
+
+    @Test
+    public void testEncodesSameAsStreamEncoder() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeItems(new CborEncoder(baos));
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder(0);
+        writeItems(encoder);
+
+        assertEquals(baos.size(), encoder.size());
+        assertArrayEquals(baos.toByteArray(), encoder.toByteArray());
+    }
+
+    @Test
+    public void testResetAndWriteTo() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder(4);
+        encoder.writeTextString("discarded");
+        encoder.reset();
+        assertEquals(0, encoder.size());
+
+        encoder.writeInt(500);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        encoder.writeTo(baos);
+        assertArrayEquals(new byte[] { 0x19, 0x01, (byte) 0xf4 }, baos.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCapacityFail() {
+        new CborByteArrayEncoder(-1);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborByteBufferDecoder}.
+ */
+public class CborByteBufferDecoderTest {
+
+    private static ByteBuffer encodeItems(boolean direct) throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeInt(-1);
+        encoder.writeInt(65536);
+        encoder.writeInt64(-4294967297L);
+        encoder.writeTextString("IETF");
+        encoder.writeArrayStart();
+        encoder.writeDouble(-0.0);
+        encoder.writeBreak();
+
+        byte[] bytes = encoder.toByteArray();
+        ByteBuffer buf = direct ? ByteBuffer.allocateDirect(bytes.length + 2) : ByteBuffer.allocate(bytes.length + 2);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 0xff).put(bytes).flip();
+        buf.get();
+        return buf;
+    }
+
+    private static void assertItems(ByteBuffer buf) throws IOException {
+        CborByteBufferDecoder decoder = new CborByteBufferDecoder(buf);
+        assertEquals(-1, decoder.readInt());
+        assertEquals(65536, decoder.readInt());
+        assertEquals(-4294967297L, decoder.readInt64());
+        assertEquals("IETF", decoder.readTextString());
+        assertEquals(-1, decoder.readArrayLength());
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(decoder.readDouble()));
+        assertNull(decoder.readBreak());
+        assertNull(decoder.peekType());
+        assertEquals(0, decoder.remaining());
+
+        // the original buffer should be left untouched...
+        assertEquals(1, buf.position());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buf.order());
+    }
+
+    @Test
+    public void testDecodeDirectBuffer() throws IOException {
+        assertItems(encodeItems(true));
+    }
+
+    @Test
+    public void testDecodeHeapBuffer() throws IOException {
+        assertItems(encodeItems(false));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedInputFail() throws IOException {
+        new CborByteBufferDecoder(ByteBuffer.wrap(new byte[] { 0x63, 0x61, 0x62 })).readTextString();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborByteBufferEncoder}.
+ */
+public class CborByteBufferEncoderTest {
+
+    private static void writeItems(CborEncoder encoder) throws IOException {
+        encoder.writeArrayStart(15);
+        encoder.writeInt(0);
+        encoder.writeInt(-24);
+        encoder.writeInt(255);
+        encoder.writeInt(-65536);
+        encoder.writeInt(4294967295L);
+        encoder.writeInt(Long.MIN_VALUE);
+        encoder.writeInt16(-1000);
+        encoder.writeSmallInt(7);
+        encoder.writeTextString("IETF\u6c34");
+        encoder.writeTextString(new String(new char[5000]).replace('\0', '\u00fc'));
+        encoder.writeByteString(new byte[300]);
+        encoder.writeDouble(1.1);
+        encoder.writeHalfPrecisionFloat(65504.0f);
+        encoder.writeTypedArray(new long[] { 1L, -2L, 3L }, 0, 3, ByteOrder.LITTLE_ENDIAN);
+        encoder.writeTypedArray(new double[2000], 0, 2000, ByteOrder.BIG_ENDIAN);
+        encoder.writeMapStart();
+        encoder.writeTag(CborConstants.TAG_URI);
+        encoder.writeNull();
+        encoder.writeBreak();
+    }
+
+    private static byte[] expected() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeItems(new CborEncoder(baos));
+        return baos.toByteArray();
+    }
+
+    private static byte[] toByteArray(ByteBuffer buf) {
+        buf.flip();
+        byte[] result = new byte[buf.remaining()];
+        buf.get(result);
+        return result;
+    }
+
+    @Test
+    public void testEncodesSameAsStreamEncoder() throws IOException {
+        byte[] expected = expected();
+        for (ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(32768), ByteBuffer.allocateDirect(32768) }) {
+            buf.order(ByteOrder.LITTLE_ENDIAN).position(3);
+
+            CborByteBufferEncoder encoder = new CborByteBufferEncoder(buf);
+            writeItems(encoder);
+            assertEquals(3 + expected.length, encoder.getPosition());
+            // the given buffer is left untouched...
+            assertEquals(3, buf.position());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, buf.order());
+
+            ByteBuffer result = encoder.getBuffer();
+            result.flip().position(3);
+            assertEquals(ByteBuffer.wrap(expected), result);
+        }
+    }
+
+    @Test
+    public void testEncodesTextIntoDirectBuffer() throws IOException {
+        String[] values = { "", "IETF", "\u00fc\u6c34", "\ud83d\ude00\ud800x\udc00",
+            new String(new char[100]).replace('\0', '\u6c34') };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CborEncoder expected = new CborEncoder(baos);
+        for (String value : values) {
+            expected.writeTextString(value);
+        }
+
+        // the last string does not fit, and is encoded in chunks by the flushing handler...
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(actual);
+        CborByteBufferEncoder encoder = new CborByteBufferEncoder(ByteBuffer.allocateDirect(64),
+            CborByteBufferEncoder.flushingHandler(channel));
+        for (String value : values) {
+            encoder.writeTextString(value);
+        }
+        encoder.writeTo(channel);
+        assertArrayEquals(baos.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testGrowingHandler() throws IOException {
+        byte[] expected = expected();
+        for (ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(0), ByteBuffer.allocateDirect(16) }) {
+            CborByteBufferEncoder encoder = new CborByteBufferEncoder(buf, CborByteBufferEncoder.growingHandler());
+            writeItems(encoder);
+
+            ByteBuffer result = encoder.getBuffer();
+            assertEquals(buf.isDirect(), result.isDirect());
+            assertArrayEquals(expected, toByteArray(result));
+        }
+    }
+
+    @Test
+    public void testFlushingHandler() throws IOException {
+        byte[] expected = expected();
+        for (int capacity : new int[] { 9, 10, 64, 4096 }) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            WritableByteChannel channel = Channels.newChannel(baos);
+
+            CborByteBufferEncoder encoder = new CborByteBufferEncoder(ByteBuffer.allocateDirect(capacity),
+                CborByteBufferEncoder.flushingHandler(channel));
+            writeItems(encoder);
+            encoder.writeTo(channel);
+            assertEquals(0, encoder.getPosition());
+
+            assertArrayEquals("Capacity " + capacity, expected, baos.toByteArray());
+        }
+    }
+
+    @Test
+    public void testWriteToReusesBuffer() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+
+        CborByteBufferEncoder encoder = new CborByteBufferEncoder(ByteBuffer.allocate(9));
+        encoder.writeInt(500);
+        encoder.writeTo(channel);
+        encoder.writeInt(Long.MIN_VALUE);
+        encoder.writeTo(channel);
+        assertArrayEquals(new byte[] { 0x19, 0x01, (byte) 0xf4, 0x3b, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff }, baos.toByteArray());
+    }
+
+    @Test
+    public void testOnlyUsesRemainingPartOfBuffer() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(32);
+        buf.put((byte) 0xaa).put((byte) 0xbb).limit(8);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+
+        CborByteBufferEncoder encoder = new CborByteBufferEncoder(buf);
+        encoder.writeInt(1);
+        encoder.writeTo(channel);
+        assertArrayEquals(new byte[] { 0x01 }, baos.toByteArray());
+        assertEquals(2, encoder.getPosition());
+
+        for (int i = 0; i < 6; i++) {
+            encoder.writeInt(i);
+        }
+        try {
+            encoder.writeInt(0);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException e) {
+            // Ok; expected
+        }
+        encoder.reset();
+        assertEquals(2, encoder.getPosition());
+
+        // the flushing handler only writes the encoded bytes, and needs room for the largest header...
+        byte[] expected = expected();
+        baos.reset();
+        buf.limit(11);
+        encoder = new CborByteBufferEncoder(buf, CborByteBufferEncoder.flushingHandler(channel));
+        writeItems(encoder);
+        encoder.writeTo(channel);
+        assertArrayEquals(expected, baos.toByteArray());
+
+        // the given buffer is left untouched...
+        assertEquals(2, buf.position());
+        assertEquals(11, buf.limit());
+        buf.clear();
+        assertEquals((byte) 0xaa, buf.get(0));
+        assertEquals((byte) 0xbb, buf.get(1));
+        for (int i = 11; i < buf.capacity(); i++) {
+            assertEquals(0, buf.get(i));
+        }
+    }
+
+    @Test
+    public void testOverflowWithoutHandlerFail() throws IOException {
+        CborByteBufferEncoder encoder = new CborByteBufferEncoder(ByteBuffer.allocate(4));
+        encoder.writeInt(500);
+        try {
+            encoder.writeInt(500);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException e) {
+            // Ok; expected
+        }
+        // nothing of the failed header is written...
+        assertEquals(3, encoder.getPosition());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadOnlyBufferFail() {
+        new CborByteBufferEncoder(ByteBuffer.allocate(4).asReadOnlyBuffer());
+    }
+}
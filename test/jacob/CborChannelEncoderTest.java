@@ -0,0 +1,168 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborChannelEncoder}.
+ */
+public class CborChannelEncoderTest {
+
+    /**
+     * Records all written data, writing at most a given number of bytes per call.
+     */
+    private static class RecordingChannel implements GatheringByteChannel {
+        final ByteArrayOutputStream m_data = new ByteArrayOutputStream();
+        final List<byte[]> m_arrays = new ArrayList<byte[]>();
+        final int m_maxPerWrite;
+        int m_gatheringWrites;
+
+        RecordingChannel(int maxPerWrite) {
+            m_maxPerWrite = maxPerWrite;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // Nop
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            if (src.hasArray()) {
+                m_arrays.add(src.array());
+            }
+            int n = Math.min(src.remaining(), m_maxPerWrite);
+            for (int i = 0; i < n; i++) {
+                m_data.write(src.get());
+            }
+            return n;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            m_gatheringWrites++;
+            long n = 0;
+            for (int i = offset; i < offset + length && n < m_maxPerWrite; i++) {
+                n += write(srcs[i]);
+            }
+            return n;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+    }
+
+    private static byte[][] blobs() {
+        byte[][] result = { new byte[10], new byte[4095], new byte[4096], new byte[100000], null };
+        for (int i = 0; i < result.length - 1; i++) {
+            Arrays.fill(result[i], (byte) (i + 1));
+        }
+        return result;
+    }
+
+    private static void writeItems(CborEncoder encoder, byte[][] blobs) throws IOException {
+        encoder.writeArrayStart(2 * blobs.length + 1);
+        for (byte[] blob : blobs) {
+            encoder.writeByteString(blob);
+            encoder.writeTextString("blob");
+        }
+        encoder.writeInt(Long.MAX_VALUE);
+    }
+
+    private static byte[] expected(byte[][] blobs) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeItems(new CborEncoder(baos), blobs);
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void testReferencesLargeByteStrings() throws IOException {
+        byte[][] blobs = blobs();
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+
+        CborChannelEncoder encoder = new CborChannelEncoder(channel);
+        writeItems(encoder, blobs);
+        assertEquals(0, channel.m_data.size());
+
+        encoder.flush();
+        assertEquals(1, channel.m_gatheringWrites);
+        assertArrayEquals(expected(blobs), channel.m_data.toByteArray());
+
+        // only the byte strings of at least the threshold are referenced...
+        assertEquals(2, channel.m_arrays.size());
+        assertSame(blobs[2], channel.m_arrays.get(0));
+        assertSame(blobs[3], channel.m_arrays.get(1));
+    }
+
+    @Test
+    public void testFlushesWhenScratchBufferIsFull() throws IOException {
+        byte[][] blobs = blobs();
+        for (int scratchSize : new int[] { 9, 16, 1000 }) {
+            RecordingChannel channel = new RecordingChannel(7);
+
+            CborChannelEncoder encoder = new CborChannelEncoder(channel, scratchSize, 1000);
+            writeItems(encoder, blobs);
+            writeItems(encoder, blobs);
+            encoder.flush();
+            // nothing is left to flush...
+            encoder.flush();
+
+            byte[] expected = expected(blobs);
+            byte[] actual = channel.m_data.toByteArray();
+            assertEquals(2 * expected.length, actual.length);
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, 0, expected.length));
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, expected.length, actual.length));
+        }
+    }
+
+    @Test
+    public void testWriteToNonGatheringChannel() throws IOException {
+        byte[][] blobs = blobs();
+        CborChannelEncoder encoder = new CborChannelEncoder(new RecordingChannel(1));
+        writeItems(encoder, blobs);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        encoder.writeTo(Channels.newChannel(baos));
+        assertArrayEquals(expected(blobs), baos.toByteArray());
+    }
+
+    @Test
+    public void testResetDiscardsSegments() throws IOException {
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE);
+        CborChannelEncoder encoder = new CborChannelEncoder(channel, 64, 0);
+        encoder.writeByteString(new byte[100]);
+        encoder.reset();
+        encoder.writeByteString(new byte[] { 1 });
+        encoder.flush();
+        assertArrayEquals(new byte[] { 0x41, 0x01 }, channel.m_data.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooSmallScratchSizeFail() {
+        new CborChannelEncoder(new RecordingChannel(1), 8, 0);
+    }
+}
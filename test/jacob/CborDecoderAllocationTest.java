@@ -0,0 +1,113 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Test cases asserting that peeking at types and decoding fixed-width values does not allocate any memory.
+ */
+public class CborDecoderAllocationTest {
+    private static final int ROUNDS = 1000;
+    /** The number of items written by {@link #writeItems(CborEncoder)}. */
+    private static final int ITEMS = 12;
+
+    private static void writeItems(CborEncoder encoder) throws IOException {
+        encoder.writeArrayStart(70000);
+        encoder.writeMapStart(300);
+        encoder.writeInt(-65537);
+        encoder.writeInt(Long.MAX_VALUE);
+        encoder.writeInt16(1000);
+        encoder.writeInt32(-100000);
+        encoder.writeInt64(100000L);
+        encoder.writeTag(Integer.MAX_VALUE);
+        encoder.writeDouble(Math.PI);
+        encoder.writeFloat(1.5f);
+        encoder.writeHalfPrecisionFloat(0.5f);
+        encoder.writeTextStringStart();
+    }
+
+    private static void readItems(CborDecoder decoder) throws IOException {
+        decoder.peekType();
+        decoder.readArrayLength();
+        decoder.readMapLength();
+        decoder.readInt();
+        decoder.readInt();
+        decoder.readInt16();
+        decoder.readInt32();
+        decoder.readInt64();
+        decoder.readTag();
+        decoder.readDouble();
+        decoder.readFloat();
+        decoder.readHalfPrecisionFloat();
+        decoder.readTextStringLength();
+    }
+
+    private static byte[] encodeRounds(int rounds) throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < rounds; i++) {
+            writeItems(encoder);
+        }
+        return encoder.toByteArray();
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(result.isThreadAllocatedMemorySupported());
+        result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+
+    private static void assertNoAllocationsPerItem(CborDecoder decoder) throws IOException {
+        com.sun.management.ThreadMXBean bean = getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Determine the overhead of measuring itself...
+        long start = bean.getThreadAllocatedBytes(threadId);
+        long overhead = bean.getThreadAllocatedBytes(threadId) - start;
+
+        start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            readItems(decoder);
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - start - overhead;
+
+        assertEquals("Bytes allocated per decoded item", 0, allocated / (ROUNDS * ITEMS));
+    }
+
+    @Test
+    public void testByteArrayDecoderDoesNotAllocate() throws IOException {
+        assertNoAllocationsPerItem(new CborByteArrayDecoder(encodeRounds(ROUNDS)));
+    }
+
+    @Test
+    public void testByteBufferDecoderDoesNotAllocate() throws IOException {
+        byte[] encoded = encodeRounds(ROUNDS);
+        ByteBuffer buf = ByteBuffer.allocateDirect(encoded.length);
+        buf.put(encoded).flip();
+
+        assertNoAllocationsPerItem(new CborByteBufferDecoder(buf));
+    }
+
+    @Test
+    public void testStreamDecoderDoesNotAllocate() throws IOException {
+        assertNoAllocationsPerItem(new CborDecoder(new ByteArrayInputStream(encodeRounds(ROUNDS))));
+    }
+}
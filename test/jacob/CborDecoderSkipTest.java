@@ -0,0 +1,156 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test cases for skipping data items with {@link CborDecoder#skipValue()}.
+ */
+@RunWith(Parameterized.class)
+public class CborDecoderSkipTest {
+    private static final int STREAM = 0;
+    private static final int BYTE_ARRAY = 1;
+    private static final int BYTE_BUFFER = 2;
+    private static final int BUFFERED = 3;
+
+    private final int m_kind;
+
+    public CborDecoderSkipTest(int kind) {
+        m_kind = kind;
+    }
+
+    @Parameters(name = "{index}: decoder kind {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[] { STREAM }, new Object[] { BYTE_ARRAY }, new Object[] { BYTE_BUFFER },
+            new Object[] { BUFFERED });
+    }
+
+    private CborDecoder createDecoder(byte[] encoded) {
+        switch (m_kind) {
+            case BYTE_ARRAY:
+                return new CborByteArrayDecoder(encoded);
+            case BYTE_BUFFER:
+                return new CborByteBufferDecoder(ByteBuffer.wrap(encoded));
+            case BUFFERED:
+                return new CborBufferedDecoder(new ByteArrayInputStream(encoded), 16);
+            default:
+                return new CborDecoder(new ByteArrayInputStream(encoded));
+        }
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void testSkipScalars() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeInt(-100000);
+        encoder.writeDouble(-1.0);
+        encoder.writeHalfPrecisionFloat(1.0f);
+        encoder.writeSimpleValue((byte) 100);
+        encoder.writeNull();
+        encoder.writeTextString("skipped");
+        encoder.writeByteString(new byte[1000]);
+        encoder.writeInt(42);
+
+        CborDecoder decoder = createDecoder(encoder.toByteArray());
+        for (int i = 0; i < 7; i++) {
+            decoder.skipValue();
+        }
+        assertEquals(42, decoder.readInt());
+    }
+
+    @Test
+    public void testSkipLargeUnsignedInteger() throws IOException {
+        // 18446744073709551615 cannot be represented by a long, but should be skippable...
+        CborDecoder decoder = createDecoder(toBytes(0x1b, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x01));
+        decoder.skipValue();
+        assertEquals(1, decoder.readInt());
+    }
+
+    @Test
+    public void testSkipNestedItems() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeMapStart(2);
+        encoder.writeTextString("a");
+        encoder.writeArrayStart();
+        encoder.writeArrayStart(2);
+        encoder.writeInt(1);
+        encoder.writeMapStart();
+        encoder.writeTag(1);
+        encoder.writeArrayStart(0);
+        encoder.writeTextStringStart();
+        encoder.writeTextString("x");
+        encoder.writeTextString("y");
+        encoder.writeBreak();
+        encoder.writeByteString(new byte[30]);
+        encoder.writeTag(2);
+        encoder.writeTag(3);
+        encoder.writeByteString(new byte[] { 1 });
+        encoder.writeBreak();
+        encoder.writeBreak();
+        encoder.writeTextString("b");
+        encoder.writeMapStart(1);
+        encoder.writeInt(1);
+        encoder.writeArrayStart(3);
+        encoder.writeFloat(1.5f);
+        encoder.writeBoolean(false);
+        encoder.writeUndefined();
+        encoder.writeTextString("next");
+
+        CborDecoder decoder = createDecoder(encoder.toByteArray());
+        decoder.skipValue();
+        assertEquals("next", decoder.readTextString());
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testSkipAllSequentialItems() throws IOException {
+        CborDecoder decoder = createDecoder(toBytes(0x9f, 0x9f, 0xff, 0x80, 0xff, 0xc1, 0x9f, 0xff, 0x07));
+        decoder.skipValue();
+        decoder.skipValue();
+        assertEquals(7, decoder.readInt());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipTruncatedArrayFail() throws IOException {
+        createDecoder(toBytes(0x83, 0x01, 0x02)).skipValue();
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipTruncatedStringFail() throws IOException {
+        createDecoder(toBytes(0x78, 0x20, 0x01, 0x02)).skipValue();
+    }
+
+    @Test(expected = IOException.class)
+    public void testSkipUnexpectedBreakFail() throws IOException {
+        createDecoder(toBytes(0x82, 0x01, 0xff)).skipValue();
+    }
+
+    @Test(expected = IOException.class)
+    public void testSkipIndefiniteIntegerFail() throws IOException {
+        createDecoder(toBytes(0x1f)).skipValue();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test cases for reading byte and text strings as streams, into channels and into caller-supplied arrays.
+ */
+@RunWith(Parameterized.class)
+public class CborDecoderStreamingTest {
+    private static final int STREAM = 0;
+    private static final int BYTE_ARRAY = 1;
+    private static final int BYTE_BUFFER = 2;
+    private static final int BUFFERED = 3;
+
+    private final int m_kind;
+    private final byte[] m_bytes;
+    private final byte[] m_encoded;
+
+    public CborDecoderStreamingTest(int kind) throws IOException {
+        m_kind = kind;
+        m_bytes = new byte[50000];
+        new Random(20).nextBytes(m_bytes);
+
+        // the same bytes as definite-length, as indefinite-length and as empty byte string, followed by an integer...
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeByteString(m_bytes);
+        encoder.writeByteString(new ByteArrayInputStream(m_bytes), -1);
+        encoder.writeByteStringStart();
+        encoder.writeByteString(new byte[0]);
+        encoder.writeBreak();
+        encoder.writeInt(42);
+        m_encoded = encoder.toByteArray();
+    }
+
+    @Parameters(name = "{index}: decoder kind {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[] { STREAM }, new Object[] { BYTE_ARRAY }, new Object[] { BYTE_BUFFER },
+            new Object[] { BUFFERED });
+    }
+
+    private CborDecoder createDecoder(byte[] encoded) {
+        switch (m_kind) {
+            case BYTE_ARRAY:
+                return new CborByteArrayDecoder(encoded);
+            case BYTE_BUFFER:
+                return new CborByteBufferDecoder(ByteBuffer.wrap(encoded));
+            case BUFFERED:
+                return new CborBufferedDecoder(new ByteArrayInputStream(encoded), 64);
+            default:
+                return new CborDecoder(new ByteArrayInputStream(encoded));
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while ((n = is.read(buf)) >= 0) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void testOpenByteStringStream() throws IOException {
+        CborDecoder decoder = createDecoder(m_encoded);
+        assertArrayEquals(m_bytes, readAll(decoder.openByteStringStream()));
+
+        InputStream is = decoder.openByteStringStream();
+        assertEquals(m_bytes[0] & 0xff, is.read());
+        assertEquals(m_bytes[1] & 0xff, is.read());
+        // skipping may stop at the end of each part of an indefinite-length string...
+        long skipped = 0;
+        while (skipped < 10000) {
+            long n = is.skip(10000 - skipped);
+            assertTrue(n > 0);
+            skipped += n;
+        }
+        byte[] rest = readAll(is);
+        assertArrayEquals(Arrays.copyOfRange(m_bytes, 10002, m_bytes.length), rest);
+        assertEquals(-1, is.read());
+
+        assertArrayEquals(new byte[0], readAll(decoder.openByteStringStream()));
+        assertEquals(42, decoder.readInt());
+    }
+
+    @Test
+    public void testCloseSkipsRemainder() throws IOException {
+        CborDecoder decoder = createDecoder(m_encoded);
+        decoder.openByteStringStream().close();
+
+        InputStream is = decoder.openByteStringStream();
+        assertEquals(m_bytes[0] & 0xff, is.read());
+        is.close();
+
+        decoder.openByteStringStream().close();
+        assertEquals(42, decoder.readInt());
+    }
+
+    @Test
+    public void testReadByteStringIntoStreamAndChannel() throws IOException {
+        CborDecoder decoder = createDecoder(m_encoded);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals(m_bytes.length, decoder.readByteString(baos));
+        assertArrayEquals(m_bytes, baos.toByteArray());
+
+        baos = new ByteArrayOutputStream();
+        assertEquals(m_bytes.length, decoder.readByteString(Channels.newChannel(baos)));
+        assertArrayEquals(m_bytes, baos.toByteArray());
+
+        assertEquals(0, decoder.readByteString(new ByteArrayOutputStream()));
+        assertEquals(42, decoder.readInt());
+    }
+
+    @Test
+    public void testReadByteStringIntoArray() throws IOException {
+        CborDecoder decoder = createDecoder(m_encoded);
+
+        byte[] dst = new byte[m_bytes.length + 1];
+        assertEquals(m_bytes.length, decoder.readByteString(dst, 1));
+        assertArrayEquals(m_bytes, Arrays.copyOfRange(dst, 1, dst.length));
+
+        Arrays.fill(dst, (byte) 0);
+        assertEquals(m_bytes.length, decoder.readByteString(dst, 0));
+        assertArrayEquals(m_bytes, Arrays.copyOf(dst, m_bytes.length));
+
+        assertEquals(0, decoder.readByteString(dst, dst.length));
+        assertEquals(42, decoder.readInt());
+    }
+
+    @Test
+    public void testReadByteStringIntoTooSmallArrayFail() throws IOException {
+        CborDecoder decoder = createDecoder(m_encoded);
+        byte[] dst = new byte[m_bytes.length];
+        Arrays.fill(dst, (byte) 0x55);
+        try {
+            decoder.readByteString(dst, 1);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+        // the array is left untouched and the definite-length string is skipped...
+        byte[] untouched = new byte[dst.length];
+        Arrays.fill(untouched, (byte) 0x55);
+        assertArrayEquals(untouched, dst);
+
+        // the length of an indefinite-length string is only known after reading it...
+        try {
+            decoder.readByteString(dst, 1);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+        assertEquals(m_bytes[0], dst[1]);
+    }
+
+    @Test
+    public void testOpenTextStringStream() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("a\u00fc\u6c34\ud800\udd51");
+        }
+        String text = sb.toString();
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeTextString(text);
+        encoder.writeTextString(new StringReader(text));
+
+        CborDecoder decoder = createDecoder(encoder.toByteArray());
+        for (int i = 0; i < 2; i++) {
+            Reader reader = new InputStreamReader(decoder.openTextStringStream(), "UTF-8");
+            StringBuilder actual = new StringBuilder();
+            char[] buf = new char[1000];
+            int n;
+            while ((n = reader.read(buf)) >= 0) {
+                actual.append(buf, 0, n);
+            }
+            assertEquals(text, actual.toString());
+        }
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testNestedIndefiniteLengthStringFail() throws IOException {
+        byte[] encoded = { 0x5f, 0x5f, 0x41, 0x00, (byte) 0xff, (byte) 0xff };
+        try {
+            readAll(createDecoder(encoded).openByteStringStream());
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+}
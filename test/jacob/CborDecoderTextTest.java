@@ -0,0 +1,163 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test cases for decoding UTF-8 encoded text strings, with and without a {@link CborStringCache}.
+ */
+@RunWith(Parameterized.class)
+public class CborDecoderTextTest {
+    private static final int STREAM = 0;
+    private static final int BYTE_ARRAY = 1;
+    private static final int BYTE_BUFFER = 2;
+    private static final int DIRECT_BYTE_BUFFER = 3;
+    private static final int BUFFERED = 4;
+
+    private final int m_kind;
+
+    public CborDecoderTextTest(int kind) {
+        m_kind = kind;
+    }
+
+    @Parameters(name = "{index}: decoder kind {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[] { STREAM }, new Object[] { BYTE_ARRAY }, new Object[] { BYTE_BUFFER },
+            new Object[] { DIRECT_BYTE_BUFFER }, new Object[] { BUFFERED });
+    }
+
+    private CborDecoder createDecoder(byte[] encoded) {
+        switch (m_kind) {
+            case BYTE_ARRAY:
+                return new CborByteArrayDecoder(encoded);
+            case BYTE_BUFFER:
+                // use a slice to verify the array offset is taken into account...
+                ByteBuffer buf = ByteBuffer.allocate(encoded.length + 3);
+                buf.position(3);
+                buf = buf.slice();
+                buf.put(encoded).flip();
+                return new CborByteBufferDecoder(buf);
+            case DIRECT_BYTE_BUFFER:
+                ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+                direct.put(encoded).flip();
+                return new CborByteBufferDecoder(direct);
+            case BUFFERED:
+                return new CborBufferedDecoder(new ByteArrayInputStream(encoded), 16);
+            default:
+                return new CborDecoder(new ByteArrayInputStream(encoded));
+        }
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static String randomString(Random rnd, int len, int maxChar) {
+        StringBuilder sb = new StringBuilder(len);
+        while (sb.length() < len) {
+            int cp = rnd.nextInt(maxChar);
+            if (cp >= 0xd800 && cp <= 0xdfff) {
+                // unpaired surrogates cannot be represented in UTF-8...
+                continue;
+            }
+            sb.appendCodePoint(cp);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testDecodeRoundTrip() throws IOException {
+        Random rnd = new Random(4321);
+        String[] inputs = { "", "a", "IETF", "\u00fc", "\u6c34", "\ud800\udd51", "0123456789abcdefghijklmnop", //
+            randomString(rnd, 1000, 0x80), randomString(rnd, 1000, 0x100), randomString(rnd, 1000, 0x10000), //
+            randomString(rnd, 1000, 0x110000), randomString(rnd, 10000, 0x110000) };
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (String input : inputs) {
+            encoder.writeTextString(input);
+        }
+
+        CborDecoder decoder = createDecoder(encoder.toByteArray());
+        for (String input : inputs) {
+            assertEquals(input, decoder.readTextString());
+        }
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testDecodeWithStringCache() throws IOException {
+        String longKey = randomString(new Random(1), 100, 0x80);
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < 3; i++) {
+            encoder.writeTextString("key");
+            encoder.writeTextString("\u00fcber");
+            encoder.writeTextString(longKey);
+        }
+
+        CborDecoder decoder = createDecoder(encoder.toByteArray());
+        CborStringCache cache = new CborStringCache();
+        decoder.setStringCache(cache);
+
+        String key = decoder.readTextString();
+        String uber = decoder.readTextString();
+        String first = decoder.readTextString();
+        assertEquals("key", key);
+        assertEquals("\u00fcber", uber);
+        assertEquals(longKey, first);
+
+        for (int i = 0; i < 2; i++) {
+            assertSame(key, decoder.readTextString());
+            assertSame(uber, decoder.readTextString());
+            // strings longer than the maximum length are not cached...
+            String other = decoder.readTextString();
+            assertEquals(longKey, other);
+            assertNotSame(first, other);
+        }
+    }
+
+    @Test
+    public void testDecodeInvalidUtf8() throws IOException {
+        int[][] invalid = { //
+            { 0x62, 0xc0, 0x80 }, // overlong encoding of NUL
+            { 0x62, 0xc1, 0xbf }, // overlong two-byte encoding
+            { 0x63, 0xe0, 0x80, 0x80 }, // overlong three-byte encoding
+            { 0x63, 0xed, 0xa0, 0x80 }, // encoded surrogate
+            { 0x64, 0xf4, 0x90, 0x80, 0x80 }, // beyond U+10FFFF
+            { 0x62, 0xe6, 0xb0 }, // truncated sequence
+            { 0x61, 0x80 }, // lone continuation byte
+            { 0x61, 0xff }, // invalid byte
+            { 0x68, 0x61, 0x62, 0x63, 0x64, 0x65, 0x66, 0x67, 0xc3 } // truncated after ASCII run
+        };
+        for (int[] input : invalid) {
+            CborDecoder decoder = createDecoder(toBytes(input));
+            try {
+                decoder.readTextString();
+                fail("IOException expected for " + Arrays.toString(input));
+            } catch (IOException e) {
+                // Ok; expected
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Test cases for writing arrays and maps whose size is not known up front.
+ */
+public class CborDeferredContainerTest {
+
+    /**
+     * Writes the same data with deferred-length and with definite-length containers.
+     */
+    private static abstract class Writer {
+        abstract void write(CborByteArrayEncoder encoder, boolean deferred) throws IOException;
+
+        void assertSameOutput() throws IOException {
+            CborByteArrayEncoder expected = new CborByteArrayEncoder(0);
+            write(expected, false);
+
+            CborByteArrayEncoder actual = new CborByteArrayEncoder(0);
+            write(actual, true);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        }
+    }
+
+    private static void beginArray(CborByteArrayEncoder encoder, boolean deferred, int length) throws IOException {
+        if (deferred) {
+            encoder.beginArray();
+        } else {
+            encoder.writeArrayStart(length);
+        }
+    }
+
+    private static void beginMap(CborByteArrayEncoder encoder, boolean deferred, int length) throws IOException {
+        if (deferred) {
+            encoder.beginMap();
+        } else {
+            encoder.writeMapStart(length);
+        }
+    }
+
+    private static void end(CborByteArrayEncoder encoder, boolean deferred) throws IOException {
+        if (deferred) {
+            encoder.end();
+        }
+    }
+
+    @Test
+    public void testArrayLengths() throws IOException {
+        for (final int len : new int[] { 0, 1, 23, 24, 255, 256, 65535, 65536 }) {
+            new Writer() {
+                @Override
+                void write(CborByteArrayEncoder encoder, boolean deferred) throws IOException {
+                    encoder.writeInt(-1);
+                    beginArray(encoder, deferred, len);
+                    for (int i = 0; i < len; i++) {
+                        encoder.writeInt(i);
+                    }
+                    end(encoder, deferred);
+                    encoder.writeBoolean(true);
+                }
+            }.assertSameOutput();
+        }
+    }
+
+    @Test
+    public void testNestedContainers() throws IOException {
+        new Writer() {
+            @Override
+            void write(CborByteArrayEncoder encoder, boolean deferred) throws IOException {
+                beginMap(encoder, deferred, 4);
+                encoder.writeTextString("list");
+                beginArray(encoder, deferred, 30);
+                for (int i = 0; i < 10; i++) {
+                    beginArray(encoder, deferred, 0);
+                    end(encoder, deferred);
+                    beginMap(encoder, deferred, 1);
+                    encoder.writeInt(i);
+                    encoder.writeDouble(i / 2.0);
+                    end(encoder, deferred);
+                    encoder.writeTextString("\u00fc" + i);
+                }
+                end(encoder, deferred);
+
+                encoder.writeTextString("definite");
+                encoder.writeArrayStart(3);
+                encoder.writeTag(1);
+                encoder.writeInt(1400000000L);
+                encoder.writeMapStart(1);
+                encoder.writeNull();
+                encoder.writeArrayStart(0);
+                beginArray(encoder, deferred, 1);
+                encoder.writeUndefined();
+                end(encoder, deferred);
+
+                encoder.writeTextString("indefinite");
+                encoder.writeArrayStart();
+                encoder.writeByteStringStart();
+                encoder.writeByteString(new byte[3]);
+                encoder.writeByteString(new byte[300]);
+                encoder.writeBreak();
+                encoder.writeMapStart();
+                encoder.writeSimpleValue((byte) 99);
+                encoder.writeHalfPrecisionFloat(1.5f);
+                encoder.writeBreak();
+                encoder.writeBreak();
+
+                encoder.writeTextString("bulk");
+                beginArray(encoder, deferred, 25);
+                for (int i = 0; i < 24; i++) {
+                    encoder.writeIntArray(new long[] { i, -i }, 0, 2);
+                }
+                encoder.writeTypedArray(new long[] { 1L }, 0, 1, ByteOrder.BIG_ENDIAN);
+                end(encoder, deferred);
+                end(encoder, deferred);
+            }
+        }.assertSameOutput();
+    }
+
+    @Test
+    public void testEndWithoutBeginFail() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        try {
+            encoder.end();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testEndWithIncompleteItemFail() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.beginArray();
+        encoder.writeArrayStart(2);
+        encoder.writeInt(1);
+        try {
+            encoder.end();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+        encoder.writeInt(2);
+        encoder.end();
+        assertArrayEquals(new byte[] { (byte) 0x81, (byte) 0x82, 0x01, 0x02 }, encoder.toByteArray());
+    }
+
+    @Test
+    public void testEndMapWithoutValueFail() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.beginMap();
+        encoder.writeInt(1);
+        try {
+            encoder.end();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testOutputWithOpenContainerFail() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.beginArray();
+        try {
+            encoder.toByteArray();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+        try {
+            encoder.writeTo(new ByteArrayOutputStream());
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+
+        encoder.reset();
+        encoder.writeInt(0);
+        assertArrayEquals(new byte[] { 0x00 }, encoder.toByteArray());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for writing homogeneous arrays in bulk, verifying the output is identical to writing them per element.
+ */
+public class CborEncoderBulkArrayTest {
+    private final Random m_rnd = new Random(42);
+
+    /**
+     * Writes the same data in bulk and per element, using both the stream-based and the array-based encoder.
+     */
+    private static abstract class Writer {
+        abstract void writeBulk(CborEncoder encoder) throws IOException;
+
+        abstract void writePerElement(CborEncoder encoder) throws IOException;
+
+        void assertSameOutput(boolean shortestFloatingPoint) throws IOException {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            CborEncoder encoder = new CborEncoder(expected);
+            encoder.setShortestFloatingPoint(shortestFloatingPoint);
+            writePerElement(encoder);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            encoder = new CborEncoder(baos);
+            encoder.setShortestFloatingPoint(shortestFloatingPoint);
+            writeBulk(encoder);
+            assertArrayEquals(expected.toByteArray(), baos.toByteArray());
+
+            CborByteArrayEncoder arrayEncoder = new CborByteArrayEncoder(0);
+            arrayEncoder.setShortestFloatingPoint(shortestFloatingPoint);
+            arrayEncoder.writeInt(1);
+            writeBulk(arrayEncoder);
+            byte[] actual = arrayEncoder.toByteArray();
+            assertArrayEquals(expected.toByteArray(), Arrays.copyOfRange(actual, 1, actual.length));
+        }
+    }
+
+    private long[] randomLongs(int len) {
+        long[] result = new long[len];
+        for (int i = 0; i < len; i++) {
+            // spread the values over all possible encoded lengths...
+            result[i] = m_rnd.nextLong() >> m_rnd.nextInt(64);
+        }
+        return result;
+    }
+
+    @Test
+    public void testWriteIntArray() throws IOException {
+        for (final int len : new int[] { 0, 1, 23, 24, 1000, 100000 }) {
+            final long[] values = randomLongs(len + 2);
+            values[0] = Long.MIN_VALUE;
+            values[values.length - 1] = Long.MAX_VALUE;
+
+            new Writer() {
+                @Override
+                void writeBulk(CborEncoder encoder) throws IOException {
+                    encoder.writeIntArray(values, 1, len);
+                }
+
+                @Override
+                void writePerElement(CborEncoder encoder) throws IOException {
+                    encoder.writeArrayStart(len);
+                    for (int i = 1; i <= len; i++) {
+                        encoder.writeInt(values[i]);
+                    }
+                }
+            }.assertSameOutput(false);
+        }
+    }
+
+    @Test
+    public void testWriteDoubleArray() throws IOException {
+        for (final int len : new int[] { 0, 1, 1000, 100000 }) {
+            final double[] values = new double[len];
+            for (int i = 0; i < len; i++) {
+                values[i] = (i % 3 == 0) ? m_rnd.nextInt(100) : m_rnd.nextGaussian();
+            }
+
+            Writer writer = new Writer() {
+                @Override
+                void writeBulk(CborEncoder encoder) throws IOException {
+                    encoder.writeDoubleArray(values, 0, len);
+                }
+
+                @Override
+                void writePerElement(CborEncoder encoder) throws IOException {
+                    encoder.writeArrayStart(len);
+                    for (int i = 0; i < len; i++) {
+                        encoder.writeDouble(values[i]);
+                    }
+                }
+            };
+            writer.assertSameOutput(false);
+            writer.assertSameOutput(true);
+        }
+    }
+
+    @Test
+    public void testWriteTextArray() throws IOException {
+        final String[] values = { "a", null, "", "\u00fc\u6c34", "IETF", "\ud83d\ude00\ud800",
+            new String(new char[1000]).replace('\0', 'x') };
+        final String[] many = new String[40];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = "item\u00e9" + i;
+        }
+
+        new Writer() {
+            @Override
+            void writeBulk(CborEncoder encoder) throws IOException {
+                encoder.writeTextArray(values, 0, values.length);
+                encoder.writeTextArray(values, 3, 2);
+                encoder.writeTextArray(many, 0, many.length);
+            }
+
+            @Override
+            void writePerElement(CborEncoder encoder) throws IOException {
+                encoder.writeArrayStart(values.length);
+                for (String value : values) {
+                    encoder.writeTextString(value);
+                }
+                encoder.writeArrayStart(2);
+                encoder.writeTextString(values[3]);
+                encoder.writeTextString(values[4]);
+                encoder.writeArrayStart(many.length);
+                for (String value : many) {
+                    encoder.writeTextString(value);
+                }
+            }
+        }.assertSameOutput(false);
+    }
+
+    @Test
+    public void testWriteByteStringArray() throws IOException {
+        final byte[][] values = new byte[300][];
+        for (int i = 1; i < values.length; i++) {
+            values[i] = new byte[m_rnd.nextInt(i)];
+            m_rnd.nextBytes(values[i]);
+        }
+
+        new Writer() {
+            @Override
+            void writeBulk(CborEncoder encoder) throws IOException {
+                encoder.writeByteStringArray(values, 0, values.length);
+            }
+
+            @Override
+            void writePerElement(CborEncoder encoder) throws IOException {
+                encoder.writeArrayStart(values.length);
+                for (byte[] value : values) {
+                    encoder.writeByteString(value);
+                }
+            }
+        }.assertSameOutput(false);
+    }
+
+    @Test
+    public void testWriteArraysInvalidRangeFail() throws IOException {
+        CborEncoder[] encoders = { new CborEncoder(new ByteArrayOutputStream()), new CborByteArrayEncoder() };
+        for (CborEncoder encoder : encoders) {
+            try {
+                encoder.writeIntArray(new long[2], 1, 2);
+                fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Ok; expected
+            }
+            try {
+                encoder.writeDoubleArray(new double[2], -1, 1);
+                fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Ok; expected
+            }
+            try {
+                encoder.writeTextArray(new String[2], 0, 3);
+                fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Ok; expected
+            }
+            try {
+                encoder.writeByteStringArray(new byte[2][], 2, -1);
+                fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                // Ok; expected
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for writing floating point values in their shortest lossless form.
+ */
+public class CborEncoderFloatingPointTest {
+    // @formatter:off
+    /** Examples taken from RFC 8949, appendix A. */
+    private static final Object[][] EXAMPLES = {
+        { 0.0, new int[] { 0xf9, 0x00, 0x00 } },
+        { -0.0, new int[] { 0xf9, 0x80, 0x00 } },
+        { 1.0, new int[] { 0xf9, 0x3c, 0x00 } },
+        { 1.1, new int[] { 0xfb, 0x3f, 0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a } },
+        { 1.5, new int[] { 0xf9, 0x3e, 0x00 } },
+        { 65504.0, new int[] { 0xf9, 0x7b, 0xff } },
+        { 100000.0, new int[] { 0xfa, 0x47, 0xc3, 0x50, 0x00 } },
+        { 3.4028234663852886e+38, new int[] { 0xfa, 0x7f, 0x7f, 0xff, 0xff } },
+        { 1.0e+300, new int[] { 0xfb, 0x7e, 0x37, 0xe4, 0x3c, 0x88, 0x00, 0x75, 0x9c } },
+        { 5.960464477539063e-8, new int[] { 0xf9, 0x00, 0x01 } },
+        { 0.00006103515625, new int[] { 0xf9, 0x04, 0x00 } },
+        { -4.0, new int[] { 0xf9, 0xc4, 0x00 } },
+        { -4.1, new int[] { 0xfb, 0xc0, 0x10, 0x66, 0x66, 0x66, 0x66, 0x66, 0x66 } },
+        { Double.POSITIVE_INFINITY, new int[] { 0xf9, 0x7c, 0x00 } },
+        { Double.NaN, new int[] { 0xf9, 0x7e, 0x00 } },
+        { Double.NEGATIVE_INFINITY, new int[] { 0xf9, 0xfc, 0x00 } },
+        { (double) Float.MIN_VALUE, new int[] { 0xfa, 0x00, 0x00, 0x00, 0x01 } },
+        { Double.MIN_VALUE, new int[] { 0xfb, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01 } },
+    };
+    // @formatter:on
+
+    private static byte[] toBytes(int[] values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the expected length of the shortest form of the given value, determined by round-trip conversions.
+     */
+    private static int expectedLength(double value) {
+        float fval = (float) value;
+        if (fval != value) {
+            return 9;
+        }
+        float hval = CborHalfFloat.toFloat(CborHalfFloat.fromFloat(fval));
+        if (Float.floatToRawIntBits(hval) == Float.floatToRawIntBits(fval)) {
+            return 3;
+        }
+        return 5;
+    }
+
+    private static void assertRoundTrip(double value) throws IOException {
+        if (Double.isNaN(value)) {
+            // NaN payloads are verified separately...
+            return;
+        }
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeFloatingPoint(value);
+        byte[] encoded = encoder.toByteArray();
+
+        double decoded = new CborByteArrayDecoder(encoded).readFloatingPoint();
+        assertEquals(Double.doubleToRawLongBits(value), Double.doubleToRawLongBits(decoded));
+        assertEquals("Length of " + value, expectedLength(value), encoded.length);
+    }
+
+    @Test
+    public void testWriteFloatingPointExamples() throws IOException {
+        for (Object[] example : EXAMPLES) {
+            double value = (Double) example[0];
+            byte[] expected = toBytes((int[]) example[1]);
+
+            CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+            encoder.writeFloatingPoint(value);
+            assertArrayEquals("Encoding " + value, expected, encoder.toByteArray());
+
+            double decoded = new CborByteArrayDecoder(expected).readFloatingPoint();
+            assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(decoded));
+        }
+    }
+
+    @Test
+    public void testWriteFloatingPointIsLosslessAndShortest() throws IOException {
+        Random rnd = new Random(2014);
+        for (int i = 0; i < 100000; i++) {
+            // doubles, floats and half-precision floats, in all exponent ranges...
+            assertRoundTrip(Double.longBitsToDouble(rnd.nextLong()));
+            assertRoundTrip(Float.intBitsToFloat(rnd.nextInt()));
+            assertRoundTrip(CborHalfFloat.toFloat(rnd.nextInt()));
+        }
+        // all subnormal half-precision values and their neighbours...
+        for (int half = 0; half < 0x400; half++) {
+            double value = CborHalfFloat.toFloat(half);
+            assertRoundTrip(value);
+            assertRoundTrip(Math.nextUp(value));
+            assertRoundTrip(Math.nextUp((float) value));
+            assertRoundTrip(-value);
+        }
+    }
+
+    @Test
+    public void testWriteFloatingPointKeepsNaNPayload() throws IOException {
+        long[] nans = { 0x7ff8000000000000L, 0xfff8000000000000L, 0x7ff8040000000000L, 0x7ff8000020000000L, 0x7ff8000000000001L };
+        int[] lengths = { 3, 3, 3, 5, 9 };
+        for (int i = 0; i < nans.length; i++) {
+            CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+            encoder.writeFloatingPoint(Double.longBitsToDouble(nans[i]));
+            byte[] encoded = encoder.toByteArray();
+            assertEquals(lengths[i], encoded.length);
+
+            double decoded = new CborByteArrayDecoder(encoded).readFloatingPoint();
+            assertEquals(nans[i], Double.doubleToRawLongBits(decoded));
+        }
+    }
+
+    @Test
+    public void testShortestFloatingPointPolicy() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        assertFalse(encoder.isShortestFloatingPoint());
+
+        encoder.setShortestFloatingPoint(true);
+        assertTrue(encoder.isShortestFloatingPoint());
+
+        encoder.writeDouble(1.5);
+        encoder.writeDouble(100000.0);
+        encoder.writeFloat(1.5f);
+        encoder.writeDouble(1.1);
+        encoder.writeHalfPrecisionFloat(100000.0f);
+        assertArrayEquals(toBytes(new int[] { 0xf9, 0x3e, 0x00, 0xfa, 0x47, 0xc3, 0x50, 0x00, 0xf9, 0x3e, 0x00, 0xfb, 0x3f,
+            0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a, 0xf9, 0x7c, 0x00 }), encoder.toByteArray());
+
+        encoder.reset();
+        encoder.setShortestFloatingPoint(false);
+        encoder.writeDouble(1.5);
+        assertEquals(9, encoder.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadFloatingPointFailsForSimpleValue() throws IOException {
+        new CborByteArrayDecoder(toBytes(new int[] { 0xf4 })).readFloatingPoint();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for writing byte and text strings from streams, channels and readers.
+ */
+public class CborEncoderStreamingTest {
+
+    /**
+     * Returns at most a given number of characters per read.
+     */
+    private static class SlowReader extends Reader {
+        private final Reader m_reader;
+        private final int m_max;
+
+        SlowReader(String s, int max) {
+            m_reader = new StringReader(s);
+            m_max = max;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return m_reader.read(cbuf, off, Math.min(len, m_max));
+        }
+
+        @Override
+        public void close() {
+            // Nop
+        }
+    }
+
+    private static byte[] randomBytes(int len) {
+        byte[] result = new byte[len];
+        new Random(len).nextBytes(result);
+        return result;
+    }
+
+    private static byte[] encode(byte[] bytes) throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeByteString(bytes);
+        return encoder.toByteArray();
+    }
+
+    @Test
+    public void testWriteDefiniteLengthByteString() throws IOException {
+        for (int len : new int[] { 0, 1, 24, 8192, 100000 }) {
+            byte[] bytes = randomBytes(len);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            CborEncoder encoder = new CborEncoder(baos);
+            encoder.writeByteString(new ByteArrayInputStream(bytes), len);
+            encoder.writeByteString(Channels.newChannel(new ByteArrayInputStream(bytes)), len);
+
+            byte[] expected = encode(bytes);
+            byte[] actual = baos.toByteArray();
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, 0, expected.length));
+            assertArrayEquals(expected, Arrays.copyOfRange(actual, expected.length, actual.length));
+        }
+    }
+
+    @Test
+    public void testWriteIndefiniteLengthByteString() throws IOException {
+        byte[] bytes = randomBytes(20000);
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeByteString(new ByteArrayInputStream(bytes), -1);
+        encoder.writeByteString(Channels.newChannel(new ByteArrayInputStream(bytes)), -1);
+        encoder.writeByteString(new ByteArrayInputStream(new byte[0]), -1);
+
+        CborDecoder decoder = new CborByteArrayDecoder(encoder.toByteArray());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(-1, decoder.readByteStringLength());
+            ByteArrayOutputStream parts = new ByteArrayOutputStream();
+            while (decoder.peekType().getMajorType() != CborConstants.TYPE_FLOAT_SIMPLE) {
+                parts.write(decoder.readByteString());
+            }
+            decoder.readBreak();
+            assertArrayEquals(bytes, parts.toByteArray());
+        }
+        // an empty stream yields no parts at all...
+        assertEquals(-1, decoder.readByteStringLength());
+        decoder.readBreak();
+        assertNull(decoder.peekType());
+    }
+
+    @Test
+    public void testWriteByteStringPrematureEndFail() throws IOException {
+        CborEncoder encoder = new CborByteArrayEncoder();
+        try {
+            encoder.writeByteString(new ByteArrayInputStream(new byte[10]), 11);
+            fail("EOFException expected");
+        } catch (EOFException e) {
+            // Ok; expected
+        }
+        try {
+            encoder.writeByteString(Channels.newChannel(new ByteArrayInputStream(new byte[10])), 11);
+            fail("EOFException expected");
+        } catch (EOFException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testWriteTextStringFromReader() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("a\u00fc\u6c34\ud800\udd51");
+        }
+        String text = sb.toString();
+
+        for (int max : new int[] { 1, 2, 3, 8191, 100000 }) {
+            CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+            encoder.writeTextString(new SlowReader(text, max));
+
+            CborDecoder decoder = new CborByteArrayDecoder(encoder.toByteArray());
+            assertEquals(-1, decoder.readTextStringLength());
+            StringBuilder parts = new StringBuilder();
+            while (decoder.peekType().getMajorType() != CborConstants.TYPE_FLOAT_SIMPLE) {
+                parts.append(decoder.readTextString());
+            }
+            decoder.readBreak();
+            assertEquals("Max " + max, text, parts.toString());
+        }
+    }
+
+    @Test
+    public void testTransferFromFileChannel() throws IOException {
+        byte[] bytes = randomBytes(300000);
+        File src = File.createTempFile("jacob", ".bin");
+        File dst = File.createTempFile("jacob", ".cbor");
+        try {
+            FileOutputStream fos = new FileOutputStream(src);
+            fos.write(bytes);
+            fos.close();
+
+            RandomAccessFile in = new RandomAccessFile(src, "r");
+            RandomAccessFile out = new RandomAccessFile(dst, "rw");
+            try {
+                FileChannel fc = in.getChannel();
+                fc.position(100);
+
+                CborChannelEncoder encoder = new CborChannelEncoder(out.getChannel());
+                encoder.writeArrayStart(2);
+                encoder.writeByteString(fc, bytes.length - 200);
+                encoder.writeInt(42);
+                encoder.flush();
+                assertEquals(bytes.length - 100, fc.position());
+
+                try {
+                    encoder.writeByteString(fc, 101);
+                    fail("EOFException expected");
+                } catch (EOFException e) {
+                    // Ok; expected
+                }
+            } finally {
+                in.close();
+                out.close();
+            }
+
+            CborByteArrayEncoder expected = new CborByteArrayEncoder();
+            expected.writeArrayStart(2);
+            expected.writeByteString(Arrays.copyOfRange(bytes, 100, bytes.length - 100));
+            expected.writeInt(42);
+
+            RandomAccessFile actual = new RandomAccessFile(dst, "r");
+            try {
+                byte[] written = new byte[expected.size()];
+                actual.readFully(written);
+                assertArrayEquals(expected.toByteArray(), written);
+            } finally {
+                actual.close();
+            }
+        } finally {
+            src.delete();
+            dst.delete();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test cases for encoding text strings directly as UTF-8, without an intermediate byte array.
+ */
+@RunWith(Parameterized.class)
+public class CborEncoderTextTest {
+    private final String m_input;
+
+    public CborEncoderTextTest(String input) {
+        m_input = input;
+    }
+
+    @Parameters(name = "{index}: encoding text \"{0}\"")
+    public static Iterable<Object[]> getParameters() {
+        char[] latin1 = new char[1000];
+        char[] mixed = new char[1000];
+        Random rnd = new Random(1234);
+        for (int i = 0; i < latin1.length; i++) {
+            latin1[i] = (char) rnd.nextInt(0x100);
+            mixed[i] = (char) rnd.nextInt(0x10000);
+        }
+
+        // @formatter:off
+        return Arrays.asList( //
+            new Object[] { "" }, // 0
+            new Object[] { "IETF" }, // 1
+            new Object[] { "\u00fc\u6c34" }, // 2
+            new Object[] { "\ud800\udd51" }, // 3
+            new Object[] { "a\ud800" }, // 4, unpaired high surrogate
+            new Object[] { "\udd51b" }, // 5, unpaired low surrogate
+            new Object[] { new String(latin1) }, // 6
+            new Object[] { new String(mixed) }, // 7
+            new Object[] { new String(new char[255]) + "\ud83d\ude00" } // 8, surrogate pair across chunk boundary
+            );
+        // @formatter:on
+    }
+
+    private byte[] expected() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new CborEncoder(baos).writeByteString(m_input.getBytes("UTF-8"));
+
+        byte[] result = baos.toByteArray();
+        // turn the byte string into a text string...
+        result[0] |= 0x20;
+        return result;
+    }
+
+    @Test
+    public void testEncodeString() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new CborEncoder(baos).writeTextString(m_input);
+        assertArrayEquals(expected(), baos.toByteArray());
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder(0);
+        encoder.writeTextString(m_input);
+        assertArrayEquals(expected(), encoder.toByteArray());
+    }
+
+    @Test
+    public void testEncodeCharSequence() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new CborEncoder(baos).writeTextString(new StringBuilder(m_input));
+        assertArrayEquals(expected(), baos.toByteArray());
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeTextString(new StringBuilder(m_input));
+        assertArrayEquals(expected(), encoder.toByteArray());
+    }
+
+    @Test
+    public void testEncodeCharArray() throws IOException {
+        char[] chars = ("<<" + m_input + ">>").toCharArray();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new CborEncoder(baos).writeTextString(chars, 2, m_input.length());
+        assertArrayEquals(expected(), baos.toByteArray());
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeTextString(chars, 2, m_input.length());
+        assertArrayEquals(expected(), encoder.toByteArray());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborHalfFloat}, verifying it against the original, arithmetic-based, conversions.
+ */
+public class CborHalfFloatTest {
+
+    /**
+     * The original implementation of decoding half-precision floats.
+     */
+    private static double referenceToDouble(int half) {
+        int exp = (half >> 10) & 0x1f;
+        int mant = half & 0x3ff;
+
+        double val;
+        if (exp == 0) {
+            val = mant * Math.pow(2, -24);
+        } else if (exp != 31) {
+            val = (mant + 1024) * Math.pow(2, exp - 25);
+        } else if (mant != 0) {
+            val = Double.NaN;
+        } else {
+            val = Double.POSITIVE_INFINITY;
+        }
+
+        return ((half & 0x8000) == 0) ? val : -val;
+    }
+
+    /**
+     * The original implementation of encoding half-precision floats.
+     */
+    private static int referenceFromFloat(float fval) {
+        int fbits = Float.floatToIntBits(fval);
+        int sign = (fbits >>> 16) & 0x8000;
+        int val = (fbits & 0x7fffffff) + 0x1000;
+
+        if (val >= 0x47800000) {
+            if ((fbits & 0x7fffffff) >= 0x47800000) {
+                if (val < 0x7f800000) {
+                    return sign | 0x7c00;
+                }
+                return sign | 0x7c00 | (fbits & 0x007fffff) >>> 13;
+            }
+            return sign | 0x7bff;
+        }
+        if (val >= 0x38800000) {
+            return sign | val - 0x38000000 >>> 13;
+        }
+        if (val < 0x33000000) {
+            return sign;
+        }
+
+        val = (fbits & 0x7fffffff) >>> 23;
+        return sign | ((fbits & 0x7fffff | 0x800000) + (0x800000 >>> val - 102) >>> 126 - val);
+    }
+
+    private static void assertFromFloat(int fbits) {
+        float value = Float.intBitsToFloat(fbits);
+        int expected = referenceFromFloat(value);
+        int actual = CborHalfFloat.fromFloat(value);
+        if (expected != actual) {
+            fail(String.format("Encoding %08x: expected %04x, got %04x", fbits, expected, actual));
+        }
+    }
+
+    @Test
+    public void testFromFloatMatchesReference() {
+        // all values around every half-precision float, which includes all rounding boundaries...
+        for (int half = 0; half <= 0xffff; half++) {
+            int fbits = Float.floatToRawIntBits(CborHalfFloat.toFloat(half));
+            for (int delta = -0x1001; delta <= 0x1001; delta += 0x7ff) {
+                assertFromFloat(fbits + delta);
+            }
+            assertFromFloat(fbits + 0x1000);
+            assertFromFloat(fbits - 0x1000);
+        }
+        // and a sample of all float bit patterns...
+        for (long fbits = 0; fbits <= 0xffffffffL; fbits += 251) {
+            assertFromFloat((int) fbits);
+        }
+    }
+
+    @Test
+    public void testFromFloatsMatchesFromFloat() {
+        float[] values = { 0.0f, -0.0f, 1.5f, 65504.0f, 1.0e-7f, -4.0f, 70000.0f, Float.NaN, Float.NEGATIVE_INFINITY };
+        byte[] raw = new byte[2 * values.length + 1];
+        CborHalfFloat.fromFloats(values, 0, values.length, raw, 1);
+
+        assertEquals(0, raw[0]);
+        for (int i = 0; i < values.length; i++) {
+            int half = (raw[2 * i + 1] & 0xff) << 8 | (raw[2 * i + 2] & 0xff);
+            assertEquals(CborHalfFloat.fromFloat(values[i]), half);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFromFloatsTooSmallDestinationFail() {
+        CborHalfFloat.fromFloats(new float[4], 0, 4, new byte[7], 0);
+    }
+
+    @Test
+    public void testToFloatMatchesReference() {
+        for (int half = 0; half <= 0xffff; half++) {
+            double expected = referenceToDouble(half);
+            double actual = CborHalfFloat.toFloat(half);
+            if (Double.isNaN(expected)) {
+                assertTrue(String.format("Decoding %04x", half), Double.isNaN(actual));
+            } else if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual)) {
+                fail(String.format("Decoding %04x: expected %s, got %s", half, expected, actual));
+            }
+        }
+    }
+
+    @Test
+    public void testToFloatsMatchesToFloat() {
+        byte[] raw = new byte[2 * 0x10000 + 1];
+        for (int half = 0; half <= 0xffff; half++) {
+            raw[2 * half + 1] = (byte) (half >> 8);
+            raw[2 * half + 2] = (byte) half;
+        }
+        float[] values = new float[0x10000 + 2];
+        CborHalfFloat.toFloats(raw, 1, values, 1, 0x10000);
+
+        assertEquals(0, Float.floatToRawIntBits(values[0]));
+        for (int half = 0; half <= 0xffff; half++) {
+            assertEquals(Float.floatToRawIntBits(CborHalfFloat.toFloat(half)), Float.floatToRawIntBits(values[half + 1]));
+        }
+        assertEquals(0, Float.floatToRawIntBits(values[0x10001]));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (int half = 0; half <= 0xffff; half++) {
+            float value = CborHalfFloat.toFloat(half);
+            if (!Float.isNaN(value)) {
+                assertEquals(half, CborHalfFloat.fromFloat(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborMappedFileDecoder}.
+ */
+public class CborMappedFileDecoderTest {
+    private File m_file;
+    private RandomAccessFile m_raf;
+
+    @Before
+    public void setUp() throws IOException {
+        m_file = File.createTempFile("jacob", ".cbor");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (m_raf != null) {
+            m_raf.close();
+        }
+        m_file.delete();
+    }
+
+    private FileChannel open(byte[] contents) throws IOException {
+        FileOutputStream fos = new FileOutputStream(m_file);
+        try {
+            fos.write(contents);
+        } finally {
+            fos.close();
+        }
+        m_raf = new RandomAccessFile(m_file, "r");
+        return m_raf.getChannel();
+    }
+
+    private static byte[] randomBytes(int len) {
+        byte[] result = new byte[len];
+        new Random(len).nextBytes(result);
+        return result;
+    }
+
+    private static void writeItems(CborEncoder encoder, byte[] bytes) throws IOException {
+        encoder.writeArrayStart(6);
+        encoder.writeInt(Long.MIN_VALUE);
+        encoder.writeTextString("IETF\u6c34");
+        encoder.writeByteString(bytes);
+        encoder.writeDouble(1.1);
+        encoder.writeMapStart(1);
+        encoder.writeInt(4294967296L);
+        encoder.writeByteString(bytes);
+        encoder.writeNull();
+    }
+
+    private static void readItems(CborDecoder decoder, byte[] bytes) throws IOException {
+        assertEquals(6, decoder.readArrayLength());
+        assertEquals(Long.MIN_VALUE, decoder.readInt());
+        assertEquals("IETF\u6c34", decoder.readTextString());
+        assertArrayEquals(bytes, decoder.readByteString());
+        assertEquals(1.1, decoder.readDouble(), 0.0);
+        assertEquals(1, decoder.readMapLength());
+        assertEquals(4294967296L, decoder.readInt());
+        assertEquals(ByteBuffer.wrap(bytes), decoder.readByteStringBuffer());
+        decoder.readNull();
+    }
+
+    @Test
+    public void testDecodeAcrossWindows() throws IOException {
+        byte[] bytes = randomBytes(1000);
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < 10; i++) {
+            writeItems(encoder, bytes);
+        }
+        FileChannel channel = open(encoder.toByteArray());
+
+        for (int windowSize : new int[] { 9, 10, 64, 1001, CborMappedFileDecoder.DEFAULT_WINDOW_SIZE }) {
+            channel.position(0);
+            CborMappedFileDecoder decoder = new CborMappedFileDecoder(channel, windowSize);
+            for (int i = 0; i < 10; i++) {
+                readItems(decoder, bytes);
+            }
+            assertNull(decoder.peekType());
+            assertEquals(encoder.size(), decoder.getFilePosition());
+        }
+    }
+
+    @Test
+    public void testSeekAndSkip() throws IOException {
+        byte[] bytes = randomBytes(100);
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        writeItems(encoder, bytes);
+        int itemSize = encoder.size();
+        writeItems(encoder, bytes);
+        FileChannel channel = open(encoder.toByteArray());
+
+        channel.position(itemSize);
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(channel, 16);
+        assertEquals(itemSize, decoder.getFilePosition());
+        readItems(decoder, bytes);
+
+        decoder.seek(0);
+        decoder.skipValue();
+        assertEquals(itemSize, decoder.getFilePosition());
+        readItems(decoder, bytes);
+
+        // seeking within the current window...
+        decoder.seek(decoder.getFilePosition() - 1);
+        decoder.readNull();
+
+        decoder.seek(itemSize);
+        decoder.skipValue();
+        assertNull(decoder.peekType());
+        assertEquals(2 * itemSize, decoder.getFileSize());
+    }
+
+    @Test
+    public void testStringBuffersAreViewsOnMapping() throws IOException {
+        byte[] bytes = randomBytes(5000);
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeByteString(bytes);
+        encoder.writeTextString("a\u00fc\u6c34");
+        FileChannel channel = open(encoder.toByteArray());
+
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(channel, 64);
+        ByteBuffer buf = decoder.readByteStringBuffer();
+        assertTrue(buf.isDirect());
+        assertTrue(buf.isReadOnly());
+        assertEquals(ByteBuffer.wrap(bytes), buf);
+
+        ByteBuffer text = decoder.readTextStringBuffer();
+        assertEquals(ByteBuffer.wrap("a\u00fc\u6c34".getBytes("UTF-8")), text);
+        // the previous view remains valid after the window is replaced...
+        assertEquals(ByteBuffer.wrap(bytes), buf);
+    }
+
+    @Test
+    public void testDecodeBeyondFourGigabytes() throws IOException {
+        long offset = (1L << 32) + 3;
+        m_raf = new RandomAccessFile(m_file, "rw");
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeTextString("beyond");
+        encoder.writeByteString(new byte[] { 1, 2, 3 });
+        // a sparse file, so nothing but the encoded data is actually stored...
+        m_raf.seek(offset);
+        m_raf.write(encoder.toByteArray());
+
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(m_raf.getChannel(), 4096);
+        assertEquals(offset + encoder.size(), decoder.getFileSize());
+        decoder.seek(offset);
+        assertEquals("beyond", decoder.readTextString());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, decoder.readByteString());
+        assertEquals(decoder.getFileSize(), decoder.getFilePosition());
+        assertNull(decoder.peekType());
+
+        // the zero-filled gap decodes as small integers...
+        decoder.seek(offset - 2);
+        assertEquals(0, decoder.readInt());
+        assertEquals(0, decoder.readInt());
+        assertEquals("beyond", decoder.readTextString());
+    }
+
+    @Test
+    public void testTruncatedValueFail() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeByteString(new byte[100]);
+        byte[] encoded = encoder.toByteArray();
+
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(open(Arrays.copyOf(encoded, encoded.length - 1)), 9);
+        try {
+            decoder.readByteString(new ByteArrayOutputStream());
+            fail("EOFException expected");
+        } catch (EOFException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testWindowPositionUnsupported() throws IOException {
+        CborMappedFileDecoder decoder = new CborMappedFileDecoder(open(new byte[10]), 9);
+        decoder.skipValue();
+        assertEquals(1, decoder.getFilePosition());
+        assertEquals(10, decoder.getFileSize());
+        try {
+            decoder.getPosition();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // Ok; expected
+        }
+        try {
+            decoder.remaining();
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSeekBeyondEndFail() throws IOException {
+        new CborMappedFileDecoder(open(new byte[10])).seek(11);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooSmallWindowSizeFail() throws IOException {
+        new CborMappedFileDecoder(open(new byte[10]), 8);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborMappedLogEncoder}.
+ */
+public class CborMappedLogEncoderTest {
+    private File m_dir;
+
+    @Before
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("jacob").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = m_dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        m_dir.delete();
+    }
+
+    private static void writeEvent(CborEncoder encoder, int i) throws IOException {
+        encoder.writeArrayStart(2);
+        encoder.writeInt(i);
+        encoder.writeTextString("event-" + i);
+    }
+
+    /**
+     * Reads the durable events of all segments, as a reader would after a crash of the system.
+     */
+    private List<Integer> readEvents() throws IOException {
+        return readEvents(true /* durable */);
+    }
+
+    /**
+     * Reads the durable or committed events of all segments, as a reader would after a crash.
+     */
+    private List<Integer> readEvents(boolean durable) throws IOException {
+        List<Integer> result = new ArrayList<Integer>();
+        for (long index = 0;; index++) {
+            File file = CborMappedLogEncoder.getSegmentFile(m_dir, index);
+            if (!file.exists()) {
+                return result;
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                CborMappedFileDecoder decoder = new CborMappedFileDecoder(raf.getChannel());
+                long durableEnd = decoder.readInt();
+                long committedEnd = decoder.readInt();
+                assertTrue(durableEnd <= committedEnd);
+                long end = durable ? durableEnd : committedEnd;
+                while (decoder.getFilePosition() < end) {
+                    assertEquals(2, decoder.readArrayLength());
+                    int i = (int) decoder.readInt();
+                    assertEquals("event-" + i, decoder.readTextString());
+                    result.add(i);
+                }
+                assertEquals(end, decoder.getFilePosition());
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testRollsOverToNewSegments() throws IOException {
+        CborMappedLogEncoder encoder = new CborMappedLogEncoder(m_dir, 256);
+        for (int i = 0; i < 1000; i++) {
+            writeEvent(encoder, i);
+            if (i % 10 == 9) {
+                encoder.force();
+            } else {
+                encoder.commit();
+            }
+        }
+        encoder.close();
+
+        assertTrue(encoder.getSegmentIndex() > 10);
+        assertEquals(256, CborMappedLogEncoder.getSegmentFile(m_dir, 0).length());
+        assertEquals(range(0, 1000), readEvents());
+    }
+
+    @Test
+    public void testUncommittedDataIsDiscarded() throws IOException {
+        CborMappedLogEncoder encoder = new CborMappedLogEncoder(m_dir, 128);
+        for (int i = 0; i < 20; i++) {
+            writeEvent(encoder, i);
+            // batches of uncommitted events are moved to a new segment at once...
+            if (i % 5 == 4) {
+                encoder.commit();
+            }
+        }
+        for (int i = 20; i < 25; i++) {
+            writeEvent(encoder, i);
+            encoder.commit();
+        }
+        writeEvent(encoder, 25);
+        encoder.reset();
+        writeEvent(encoder, 26);
+        assertEquals(range(0, 25), readEvents(false /* durable */));
+
+        encoder.reset();
+        encoder.force();
+        assertEquals(range(0, 25), readEvents());
+
+        // reopening the log continues after the durable data...
+        encoder = new CborMappedLogEncoder(m_dir, 128);
+        writeEvent(encoder, 25);
+        encoder.close();
+        assertEquals(range(0, 26), readEvents());
+    }
+
+    @Test
+    public void testOnlyForcedDataIsDurable() throws IOException {
+        CborMappedLogEncoder encoder = new CborMappedLogEncoder(m_dir, 4096);
+        for (int i = 0; i < 5; i++) {
+            writeEvent(encoder, i);
+            encoder.commit();
+        }
+        assertEquals(range(0, 0), readEvents());
+        // forcing after committing still updates the durable end...
+        encoder.force();
+        assertEquals(range(0, 5), readEvents());
+
+        for (int i = 5; i < 10; i++) {
+            writeEvent(encoder, i);
+        }
+        encoder.commit();
+        assertEquals(range(0, 5), readEvents());
+        assertEquals(range(0, 10), readEvents(false /* durable */));
+
+        // reopening the log discards the data that was not forced...
+        encoder = new CborMappedLogEncoder(m_dir, 4096);
+        assertEquals(range(0, 5), readEvents(false /* durable */));
+        writeEvent(encoder, 5);
+        encoder.close();
+        assertEquals(range(0, 6), readEvents());
+    }
+
+    @Test
+    public void testTooLargeUncommittedDataFail() throws IOException {
+        CborMappedLogEncoder encoder = new CborMappedLogEncoder(m_dir, 64);
+        try {
+            encoder.writeByteString(new byte[60]);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testCorruptHeaderFail() throws IOException {
+        new CborMappedLogEncoder(m_dir, 64).close();
+        RandomAccessFile raf = new RandomAccessFile(CborMappedLogEncoder.getSegmentFile(m_dir, 0), "rw");
+        raf.writeByte(0x1a);
+        raf.close();
+        try {
+            new CborMappedLogEncoder(m_dir, 64);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooSmallSegmentSizeFail() throws IOException {
+        new CborMappedLogEncoder(m_dir, 63);
+    }
+}
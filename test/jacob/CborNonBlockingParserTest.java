@@ -0,0 +1,202 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborNonBlockingParser}.
+ */
+public class CborNonBlockingParserTest {
+
+    private static byte[] encodeItems() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeMapStart(2);
+        encoder.writeTextString("values");
+        encoder.writeArrayStart();
+        encoder.writeInt(Long.MIN_VALUE);
+        encoder.writeInt(1000000);
+        encoder.writeDouble(Math.E);
+        encoder.writeFloat(0.25f);
+        encoder.writeHalfPrecisionFloat(-2.0f);
+        encoder.writeTag(CborConstants.TAG_URI);
+        encoder.writeTextString("http://www.example.com");
+        encoder.writeByteStringStart();
+        encoder.writeByteString(new byte[] { 1, 2, 3 });
+        encoder.writeByteString(new byte[0]);
+        encoder.writeByteString(new byte[300]);
+        encoder.writeBreak();
+        encoder.writeBreak();
+        encoder.writeInt(-1);
+        encoder.writeMapStart(0);
+        encoder.writeArrayStart(2);
+        encoder.writeSimpleValue((byte) 99);
+        encoder.writeBoolean(false);
+        return encoder.toByteArray();
+    }
+
+    private static String describe(AbstractCborParser parser, CborToken token) {
+        switch (token) {
+            case INT:
+                return token + "=" + parser.getLongValue();
+            case FLOAT:
+                return token + "=" + parser.getDoubleValue();
+            case TEXT:
+                return token + "=" + parser.getText();
+            case BYTES:
+                return token + "=" + Arrays.toString(parser.getBytes());
+            case TAG:
+                return token + "=" + parser.getTag();
+            case SIMPLE:
+                return token + "=" + parser.getSimpleValue();
+            case START_ARRAY:
+            case START_MAP:
+                return token + "=" + parser.getLength();
+            default:
+                return token.toString();
+        }
+    }
+
+    private static List<String> parseBlocking(byte[] encoded) throws IOException {
+        List<String> result = new ArrayList<>();
+        CborParser parser = new CborParser(new CborByteArrayDecoder(encoded));
+        CborToken token;
+        while ((token = parser.nextToken()) != null) {
+            result.add(describe(parser, token));
+        }
+        return result;
+    }
+
+    private static List<String> parseInChunks(byte[] encoded, int chunkSize) throws IOException {
+        List<String> result = new ArrayList<>();
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        int off = 0;
+        for (;;) {
+            CborToken token = parser.nextToken();
+            if (token == null) {
+                break;
+            } else if (token == CborToken.NOT_AVAILABLE) {
+                assertTrue(parser.needsInput());
+                if (off < encoded.length) {
+                    int len = Math.min(chunkSize, encoded.length - off);
+                    parser.feed(ByteBuffer.wrap(encoded, off, len));
+                    off += len;
+                } else {
+                    parser.endOfInput();
+                }
+            } else {
+                result.add(describe(parser, token));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testParseInChunksOfVaryingSize() throws IOException {
+        byte[] encoded = encodeItems();
+        List<String> expected = parseBlocking(encoded);
+
+        for (int chunkSize : new int[] { 1, 2, 3, 7, 64, encoded.length }) {
+            assertEquals("Chunk size " + chunkSize, expected, parseInChunks(encoded, chunkSize));
+        }
+    }
+
+    @Test
+    public void testParseStringsFromDirectAndSlicedBuffers() throws IOException {
+        byte[] encoded = encodeItems();
+        List<String> expected = parseBlocking(encoded);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+        direct.put(encoded).flip();
+        byte[] padded = new byte[encoded.length + 5];
+        System.arraycopy(encoded, 0, padded, 5, encoded.length);
+        ByteBuffer sliced = ByteBuffer.wrap(padded, 5, encoded.length).slice();
+
+        for (ByteBuffer buf : new ByteBuffer[] { direct, sliced }) {
+            List<String> result = new ArrayList<>();
+            CborNonBlockingParser parser = new CborNonBlockingParser();
+            parser.feed(buf);
+            parser.endOfInput();
+            CborToken token;
+            while ((token = parser.nextToken()) != null) {
+                result.add(describe(parser, token));
+            }
+            assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void testNoTokenBeforeInput() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        assertEquals(CborToken.NOT_AVAILABLE, parser.nextToken());
+
+        parser.feed(ByteBuffer.wrap(new byte[] { 0x19, 0x01 }));
+        assertEquals(CborToken.NOT_AVAILABLE, parser.nextToken());
+        parser.feed(ByteBuffer.wrap(new byte[] { (byte) 0xf4, 0x02 }));
+        assertEquals(CborToken.INT, parser.nextToken());
+        assertEquals(500, parser.getLongValue());
+        assertFalse(parser.needsInput());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFeedBeforeInputConsumedFail() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        parser.feed(ByteBuffer.wrap(new byte[] { 0x01, 0x02 }));
+        parser.nextToken();
+        parser.feed(ByteBuffer.wrap(new byte[] { 0x03 }));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testEndOfInputInStringFail() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        parser.feed(ByteBuffer.wrap(new byte[] { 0x63, 0x61, 0x62 }));
+        assertEquals(CborToken.NOT_AVAILABLE, parser.nextToken());
+        parser.endOfInput();
+        parser.nextToken();
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidChunkFail() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        parser.feed(ByteBuffer.wrap(new byte[] { 0x7f, 0x41, 0x61, (byte) 0xff }));
+        parser.nextToken();
+    }
+
+    @Test
+    public void testBreakAfterTagFail() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        parser.feed(ByteBuffer.wrap(new byte[] { (byte) 0x9f, (byte) 0xc1, (byte) 0xff }));
+        assertEquals(CborToken.START_ARRAY, parser.nextToken());
+        assertEquals(CborToken.TAG, parser.nextToken());
+        try {
+            parser.nextToken();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("Unexpected break!", e.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testEndOfInputAfterTagFail() throws IOException {
+        CborNonBlockingParser parser = new CborNonBlockingParser();
+        parser.feed(ByteBuffer.wrap(new byte[] { (byte) 0xc1 }));
+        assertEquals(CborToken.TAG, parser.nextToken());
+        assertEquals(CborToken.NOT_AVAILABLE, parser.nextToken());
+        parser.endOfInput();
+        parser.nextToken();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static jacob.CborToken.*;
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborParser}.
+ */
+public class CborParserTest {
+
+    private static CborParser createParser(CborByteArrayEncoder encoder) {
+        return new CborParser(new CborByteArrayDecoder(encoder.toByteArray()));
+    }
+
+    private static CborParser createParser(int... encoded) {
+        byte[] buf = new byte[encoded.length];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) encoded[i];
+        }
+        return new CborParser(new CborByteArrayDecoder(buf));
+    }
+
+    @Test
+    public void testDefiniteAndIndefiniteContainersLookTheSame() throws IOException {
+        // [1, [2, 3], [_ 4, 5]] and [_ 1, [2, 3], [4, 5]]...
+        CborParser[] parsers = { createParser(0x83, 0x01, 0x82, 0x02, 0x03, 0x9f, 0x04, 0x05, 0xff),
+            createParser(0x9f, 0x01, 0x82, 0x02, 0x03, 0x82, 0x04, 0x05, 0xff) };
+
+        for (CborParser parser : parsers) {
+            assertEquals(START_ARRAY, parser.nextToken());
+            assertEquals(1, parser.getDepth());
+            assertEquals(INT, parser.nextToken());
+            assertEquals(1, parser.getLongValue());
+            assertEquals(START_ARRAY, parser.nextToken());
+            assertEquals(2, parser.getDepth());
+            assertEquals(INT, parser.nextToken());
+            assertEquals(INT, parser.nextToken());
+            assertEquals(END, parser.nextToken());
+            assertEquals(1, parser.getDepth());
+            assertEquals(START_ARRAY, parser.nextToken());
+            assertEquals(INT, parser.nextToken());
+            assertEquals(4, parser.getLongValue());
+            assertEquals(INT, parser.nextToken());
+            assertEquals(5, parser.getLongValue());
+            assertEquals(END, parser.nextToken());
+            assertEquals(END, parser.nextToken());
+            assertEquals(0, parser.getDepth());
+            assertNull(parser.nextToken());
+            assertNull(parser.currentToken());
+        }
+    }
+
+    @Test
+    public void testParseAllTokenTypes() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeMapStart(3);
+        encoder.writeTextString("a");
+        encoder.writeTag(CborConstants.TAG_EPOCH_DATE_TIME);
+        encoder.writeDouble(1.5);
+        encoder.writeInt(-2);
+        encoder.writeByteString(new byte[] { 1, 2 });
+        encoder.writeTextString("c");
+        encoder.writeArrayStart(5);
+        encoder.writeHalfPrecisionFloat(0.5f);
+        encoder.writeBoolean(true);
+        encoder.writeNull();
+        encoder.writeSimpleValue((byte) 200);
+        encoder.writeTextStringStart();
+        encoder.writeTextString("ab");
+        encoder.writeTextString("cd");
+        encoder.writeBreak();
+
+        CborParser parser = createParser(encoder);
+        assertEquals(START_MAP, parser.nextToken());
+        assertEquals(3, parser.getLength());
+        assertEquals(TEXT, parser.nextToken());
+        assertEquals("a", parser.getText());
+        assertEquals(TAG, parser.nextToken());
+        assertEquals(CborConstants.TAG_EPOCH_DATE_TIME, parser.getTag());
+        assertEquals(FLOAT, parser.nextToken());
+        assertEquals(1.5, parser.getDoubleValue(), 0.0);
+        assertEquals(INT, parser.nextToken());
+        assertEquals(-2, parser.getLongValue());
+        assertEquals(BYTES, parser.nextToken());
+        assertArrayEquals(new byte[] { 1, 2 }, parser.getBytes());
+        assertEquals(TEXT, parser.nextToken());
+        assertEquals(START_ARRAY, parser.nextToken());
+        assertEquals(FLOAT, parser.nextToken());
+        assertEquals(0.5, parser.getDoubleValue(), 0.0);
+        assertEquals(SIMPLE, parser.nextToken());
+        assertEquals(CborConstants.TRUE, parser.getSimpleValue());
+        assertEquals(SIMPLE, parser.nextToken());
+        assertEquals(CborConstants.NULL, parser.getSimpleValue());
+        assertEquals(SIMPLE, parser.nextToken());
+        assertEquals(200, parser.getSimpleValue());
+        assertEquals(TEXT, parser.nextToken());
+        assertEquals("abcd", parser.getText());
+        assertEquals(END, parser.nextToken());
+        assertEquals(END, parser.nextToken());
+        assertNull(parser.nextToken());
+    }
+
+    @Test
+    public void testSkipChildren() throws IOException {
+        // [[_ 1, {2: 3}], [4], 5]...
+        CborParser parser = createParser(0x83, 0x9f, 0x01, 0xa1, 0x02, 0x03, 0xff, 0x81, 0x04, 0x05);
+        assertEquals(START_ARRAY, parser.nextToken());
+        assertEquals(START_ARRAY, parser.nextToken());
+        parser.skipChildren();
+        assertEquals(END, parser.currentToken());
+        assertEquals(1, parser.getDepth());
+        assertEquals(START_ARRAY, parser.nextToken());
+        parser.skipChildren();
+        assertEquals(INT, parser.nextToken());
+        assertEquals(5, parser.getLongValue());
+        assertEquals(END, parser.nextToken());
+        assertNull(parser.nextToken());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetValueOfWrongTokenFail() throws IOException {
+        CborParser parser = createParser(0x01);
+        parser.nextToken();
+        parser.getText();
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedContainerFail() throws IOException {
+        CborParser parser = createParser(0x82, 0x01);
+        while (parser.nextToken() != null) {
+            // consume all tokens...
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnexpectedBreakFail() throws IOException {
+        CborParser parser = createParser(0x82, 0x01, 0xff);
+        while (parser.nextToken() != null) {
+            // consume all tokens...
+        }
+    }
+
+    @Test
+    public void testBreakAfterTagFail() throws IOException {
+        // [_ 1(2)] is fine...
+        CborParser parser = createParser(0x9f, 0xc1, 0x02, 0xff);
+        assertEquals(START_ARRAY, parser.nextToken());
+        assertEquals(TAG, parser.nextToken());
+        assertEquals(INT, parser.nextToken());
+        assertEquals(END, parser.nextToken());
+        assertNull(parser.nextToken());
+
+        // but a tag cannot be followed by a break...
+        parser = createParser(0x9f, 0xc1, 0xff);
+        assertEquals(START_ARRAY, parser.nextToken());
+        assertEquals(TAG, parser.nextToken());
+        try {
+            parser.nextToken();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("Unexpected break!", e.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedTagFail() throws IOException {
+        CborParser parser = createParser(0xc1);
+        assertEquals(TAG, parser.nextToken());
+        parser.nextToken();
+    }
+}
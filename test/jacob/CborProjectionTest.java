@@ -0,0 +1,230 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborProjection}.
+ */
+public class CborProjectionTest {
+
+    /**
+     * Writes a number of records of the form
+     * <tt>{"user": {"id": i, "name": "user-i"}, "type": "click"|"view", "events": [{"ts": ..., "data": ...}, ...]}</tt>,
+     * using various encodings.
+     */
+    private static byte[] encodeRecords(int count) throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                encoder.writeMapStart(4);
+            } else {
+                encoder.writeMapStart();
+            }
+            encoder.writeTextString("type");
+            encoder.writeTextString((i % 3 == 0) ? "click" : "view");
+            encoder.writeTextString("events");
+            encoder.writeArrayStart(i % 4);
+            for (int j = 0; j < i % 4; j++) {
+                encoder.writeMapStart(2);
+                encoder.writeTextString("data");
+                encoder.writeByteString(new byte[100]);
+                encoder.writeTextString("ts");
+                encoder.writeTag(CborConstants.TAG_EPOCH_DATE_TIME);
+                encoder.writeInt(1000L * i + j);
+            }
+            // a non-text key...
+            encoder.writeInt(42);
+            encoder.writeArrayStart();
+            encoder.writeTextString("not selected");
+            encoder.writeBreak();
+            encoder.writeTextString("user");
+            encoder.writeMapStart(2);
+            encoder.writeTextString("name");
+            encoder.writeTextString("user-" + i);
+            // an indefinite-length key...
+            encoder.writeTextStringStart();
+            encoder.writeTextString("i");
+            encoder.writeTextString("d");
+            encoder.writeBreak();
+            encoder.writeInt(i);
+            if (i % 2 != 0) {
+                encoder.writeBreak();
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    @Test
+    public void testProjectFields() throws IOException {
+        CborProjection projection = new CborProjection("user.id", "events[*].ts", "type", "missing");
+        CborProjection second = new CborProjection("events[1].data");
+        CborDecoder decoder = new CborByteArrayDecoder(encodeRecords(20));
+        CborDecoder secondDecoder = new CborByteArrayDecoder(encodeRecords(20));
+        for (int i = 0; i < 20; i++) {
+            Object[] values = projection.read(decoder);
+            assertEquals(4, values.length);
+            assertEquals(Long.valueOf(i), values[0]);
+
+            List<?> ts = (List<?>) values[1];
+            assertEquals(i % 4, ts.size());
+            for (int j = 0; j < ts.size(); j++) {
+                assertEquals(Long.valueOf(1000L * i + j), ts.get(j));
+            }
+            assertEquals((i % 3 == 0) ? "click" : "view", values[2]);
+            assertNull(values[3]);
+
+            Object data = second.read(secondDecoder)[0];
+            if (i % 4 > 1) {
+                assertArrayEquals(new byte[100], (byte[]) data);
+            } else {
+                assertNull(data);
+            }
+        }
+        assertNull(projection.read(decoder));
+        assertNull(second.read(secondDecoder));
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        CborProjection projection = new CborProjection("type", "user.id");
+        CborDecoder decoder = new CborDecoder(new ByteArrayInputStream(encodeRecords(30)));
+
+        CborProjection.Filter clicks = projection.equalTo("type", "click");
+        for (int i = 0; i < 30; i += 3) {
+            Object[] values = projection.read(decoder, clicks);
+            assertEquals("click", values[0]);
+            assertEquals(Long.valueOf(i), values[1]);
+        }
+        assertNull(projection.read(decoder, clicks));
+
+        decoder = new CborByteArrayDecoder(encodeRecords(30));
+        Object[] values = projection.read(decoder, projection.equalTo("user.id", 17));
+        assertEquals("view", values[0]);
+        assertEquals(Long.valueOf(17), values[1]);
+        assertNull(projection.read(decoder, projection.equalTo("user.id", 17.0)));
+    }
+
+    @Test
+    public void testSelectWholeContainers() throws IOException {
+        CborProjection projection = new CborProjection("user", "events[0]", "[1]");
+        CborDecoder decoder = new CborByteArrayDecoder(encodeRecords(2));
+        projection.read(decoder);
+        Object[] values = projection.read(decoder);
+
+        Map<?, ?> user = (Map<?, ?>) values[0];
+        assertEquals("user-1", user.get("name"));
+        assertEquals(Long.valueOf(1), user.get("id"));
+        Map<?, ?> event = (Map<?, ?>) values[1];
+        assertEquals(Long.valueOf(1000), event.get("ts"));
+        // the data item is not an array...
+        assertNull(values[2]);
+
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        encoder.writeArrayStart(3);
+        encoder.writeBoolean(true);
+        encoder.writeArrayStart();
+        encoder.writeNull();
+        encoder.writeDouble(1.5);
+        encoder.writeTextStringStart();
+        encoder.writeTextString("a");
+        encoder.writeTextString("b");
+        encoder.writeBreak();
+        encoder.writeBreak();
+        encoder.writeSimpleValue((byte) 100);
+        values = new CborProjection("[0]", "[1]", "[2]").read(new CborByteArrayDecoder(encoder.toByteArray()));
+        assertEquals(Boolean.TRUE, values[0]);
+        assertEquals(Arrays.asList(null, 1.5, "ab"), values[1]);
+        assertEquals(Integer.valueOf(100), values[2]);
+    }
+
+    @Test
+    public void testSkipsUnselectedValuesWithoutDecoding() throws IOException {
+        // {"user": {"id": 1, "name": <invalid UTF-8>}}
+        byte[] encoded = { (byte) 0xa1, 0x64, 'u', 's', 'e', 'r', (byte) 0xa2, 0x62, 'i', 'd', 0x01, 0x64, 'n', 'a',
+            'm', 'e', 0x62, (byte) 0xff, (byte) 0xfe };
+
+        Object[] values = new CborProjection("user.id").read(new CborByteArrayDecoder(encoded));
+        assertEquals(Collections.<Object> singletonList(Long.valueOf(1)), Arrays.asList(values));
+        try {
+            new CborProjection("user.name").read(new CborByteArrayDecoder(encoded));
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    /**
+     * Encodes <tt>{"a": ...}</tt> where the value is an integer nested in a given number of heads.
+     */
+    private static byte[] encodeNested(int head, int levels) {
+        byte[] encoded = new byte[levels + 4];
+        encoded[0] = (byte) 0xa1;
+        encoded[1] = 0x61;
+        encoded[2] = 'a';
+        Arrays.fill(encoded, 3, 3 + levels, (byte) head);
+        encoded[3 + levels] = 0x01;
+        return encoded;
+    }
+
+    @Test
+    public void testDeeplyNestedDataItemFail() throws IOException {
+        CborProjection projection = new CborProjection("a");
+        // arrays nested within the selected value, and tags on the path to it...
+        for (int head : new int[] { 0x81, 0xc1 }) {
+            byte[] encoded = encodeNested(head, CborProjection.MAX_DEPTH - 1);
+            assertNotNull(projection.read(new CborByteArrayDecoder(encoded))[0]);
+
+            encoded = encodeNested(head, 100000);
+            try {
+                projection.read(new CborByteArrayDecoder(encoded));
+                fail("IOException expected");
+            } catch (IOException e) {
+                // Ok; expected
+            }
+        }
+    }
+
+    @Test
+    public void testIndexOf() {
+        CborProjection projection = new CborProjection("a", "b.c");
+        assertEquals(0, projection.indexOf("a"));
+        assertEquals(1, projection.indexOf("b.c"));
+        assertEquals(-1, projection.indexOf("b"));
+        assertEquals(-1, projection.indexOf(null));
+    }
+
+    @Test
+    public void testInvalidPathsFail() {
+        String[][] invalid = { {}, { "" }, { ".a" }, { "a." }, { "a..b" }, { "a[" }, { "a[x]" }, { "a[-1]" },
+            { "a", "a.b" }, { "a.b", "a" }, { "a", "a" }, { "a[*]", "a[0]" }, { "a[0].b", "a[*].c" } };
+        for (String[] paths : invalid) {
+            try {
+                new CborProjection(paths);
+                fail("IllegalArgumentException expected for " + Arrays.toString(paths));
+            } catch (IllegalArgumentException e) {
+                // Ok; expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFilterPathFail() {
+        new CborProjection("a").equalTo("b", 1);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborSequence}.
+ */
+public class CborSequenceTest {
+    private static final int ITEMS = 1000;
+
+    /**
+     * Writes a number of data items of various types and sizes, each holding its index as first integer.
+     */
+    private static byte[] encodeItems() throws IOException {
+        CborByteArrayEncoder encoder = new CborByteArrayEncoder();
+        for (int i = 0; i < ITEMS; i++) {
+            switch (i % 5) {
+                case 0:
+                    encoder.writeInt(i);
+                    break;
+                case 1:
+                    encoder.writeArrayStart(2);
+                    encoder.writeInt(i);
+                    encoder.writeByteString(new byte[i]);
+                    break;
+                case 2:
+                    encoder.writeArrayStart();
+                    encoder.writeInt(i);
+                    encoder.writeMapStart(1);
+                    encoder.writeTextString("key");
+                    encoder.writeTextString("value");
+                    encoder.writeBreak();
+                    break;
+                case 3:
+                    encoder.writeTag(CborConstants.TAG_URI);
+                    encoder.writeInt(i);
+                    break;
+                default:
+                    encoder.writeMapStart();
+                    encoder.writeInt(i);
+                    encoder.writeNull();
+                    encoder.writeBreak();
+                    break;
+            }
+        }
+        return encoder.toByteArray();
+    }
+
+    private static int decodeIndex(ByteBuffer item) throws IOException {
+        CborDecoder decoder = new CborByteBufferDecoder(item);
+        CborType type = decoder.peekType();
+        if (type.getMajorType() == CborConstants.TYPE_ARRAY) {
+            decoder.readArrayLength();
+        } else if (type.getMajorType() == CborConstants.TYPE_MAP) {
+            decoder.readMapLength();
+        } else if (type.getMajorType() == CborConstants.TYPE_TAG) {
+            decoder.readTag();
+        }
+        return (int) decoder.readInt();
+    }
+
+    private static List<Integer> decodeIndices(Iterable<CborSequence> sequences) throws IOException {
+        List<Integer> result = new ArrayList<Integer>();
+        for (CborSequence sequence : sequences) {
+            for (ByteBuffer item : sequence) {
+                result.add(decodeIndex(item));
+            }
+        }
+        return result;
+    }
+
+    private static void assertIndices(List<Integer> indices) {
+        assertEquals(ITEMS, indices.size());
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(i, (int) indices.get(i));
+        }
+    }
+
+    @Test
+    public void testIterateItems() throws IOException {
+        byte[] encoded = encodeItems();
+        ByteBuffer buf = ByteBuffer.allocate(encoded.length + 2);
+        buf.put((byte) 0xff).put(encoded).flip().position(1);
+
+        CborSequence sequence = new CborSequence(buf);
+        assertEquals(encoded.length, sequence.size());
+
+        Iterator<ByteBuffer> iter = sequence.iterator();
+        List<Integer> indices = new ArrayList<Integer>();
+        int size = 0;
+        while (iter.hasNext()) {
+            ByteBuffer item = iter.next();
+            assertTrue(item.isReadOnly());
+            size += item.remaining();
+            indices.add(decodeIndex(item));
+        }
+        assertIndices(indices);
+        assertEquals(encoded.length, size);
+        // the given buffer is left untouched...
+        assertEquals(1, buf.position());
+
+        try {
+            iter.next();
+            fail("NoSuchElementException expected");
+        } catch (NoSuchElementException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test
+    public void testSplit() throws IOException {
+        byte[] encoded = encodeItems();
+        CborSequence sequence = new CborSequence(ByteBuffer.wrap(encoded));
+        for (int parts : new int[] { 1, 2, 3, 7, 64, ITEMS, 2 * ITEMS }) {
+            List<CborSequence> split = sequence.split(parts);
+            assertTrue(split.size() <= parts);
+            if (parts <= 7) {
+                assertEquals(parts, split.size());
+            }
+            assertIndices(decodeIndices(split));
+        }
+        assertTrue(new CborSequence(ByteBuffer.allocate(0)).split(4).isEmpty());
+    }
+
+    @Test
+    public void testProcessSplitConcurrently() throws Exception {
+        byte[] encoded = encodeItems();
+        ByteBuffer buf = ByteBuffer.allocateDirect(encoded.length);
+        buf.put(encoded).flip();
+        List<CborSequence> split = new CborSequence(buf).split(4);
+        assertEquals(4, split.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (final CborSequence part : split) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        long sum = 0;
+                        for (ByteBuffer item : part) {
+                            sum += decodeIndex(item);
+                        }
+                        return sum;
+                    }
+                }));
+            }
+            long sum = 0;
+            for (Future<Long> result : results) {
+                sum += result.get();
+            }
+            assertEquals(ITEMS * (ITEMS - 1L) / 2, sum);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapFile() throws IOException {
+        byte[] encoded = encodeItems();
+        File file = File.createTempFile("jacob", ".cbor");
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            fos.write(encoded);
+            fos.close();
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                for (int maxPartSize : new int[] { 1, 100, 4096, Integer.MAX_VALUE }) {
+                    List<CborSequence> parts = CborSequence.mapFile(raf.getChannel(), maxPartSize);
+                    int size = 0;
+                    for (CborSequence part : parts) {
+                        // only single data items can be larger than the maximum...
+                        assertTrue(part.size() <= maxPartSize || part.split(2).size() == 1);
+                        size += part.size();
+                    }
+                    assertEquals(encoded.length, size);
+                    assertIndices(decodeIndices(parts));
+                }
+                assertEquals(ITEMS, CborSequence.mapFile(raf.getChannel(), 1).size());
+                assertEquals(1, CborSequence.mapFile(raf.getChannel(), Integer.MAX_VALUE).size());
+            } finally {
+                raf.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testMalformedItemFail() throws IOException {
+        // an array of two items, holding only one...
+        Iterator<ByteBuffer> iter = new CborSequence(ByteBuffer.wrap(new byte[] { 0x01, (byte) 0x82, 0x01 }))
+            .iterator();
+        assertEquals(ByteBuffer.wrap(new byte[] { 0x01 }), iter.next());
+        try {
+            iter.next();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // Ok; expected
+        }
+        try {
+            new CborSequence(ByteBuffer.wrap(new byte[] { 0x01, (byte) 0xff })).split(2);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveFail() {
+        Iterator<ByteBuffer> iter = new CborSequence(ByteBuffer.wrap(new byte[] { 0x01 })).iterator();
+        iter.next();
+        iter.remove();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CborSize}, verifying the computed sizes against the actual encoded data.
+ */
+public class CborSizeTest {
+    private final CborByteArrayEncoder m_encoder = new CborByteArrayEncoder();
+
+    private int size() {
+        int size = m_encoder.size();
+        m_encoder.reset();
+        return size;
+    }
+
+    @Test
+    public void testSizeOfInt() throws IOException {
+        Random rnd = new Random(16);
+        long[] values = { 0, 23, 24, 255, 256, 65535, 65536, 0xffffffffL, 0x100000000L, -1, -24, -25, -256, -257,
+            Long.MIN_VALUE, Long.MAX_VALUE };
+        for (long value : values) {
+            m_encoder.writeInt(value);
+            assertEquals("Size of " + value, size(), CborSize.sizeOfInt(value));
+        }
+        for (int i = 0; i < 10000; i++) {
+            long value = rnd.nextLong() >> rnd.nextInt(64);
+            m_encoder.writeInt(value);
+            assertEquals("Size of " + value, size(), CborSize.sizeOfInt(value));
+        }
+
+        m_encoder.writeInt8(1);
+        assertEquals(size(), CborSize.sizeOfInt8());
+        m_encoder.writeInt16(1);
+        assertEquals(size(), CborSize.sizeOfInt16());
+        m_encoder.writeInt32(1);
+        assertEquals(size(), CborSize.sizeOfInt32());
+        m_encoder.writeInt64(1);
+        assertEquals(size(), CborSize.sizeOfInt64());
+        m_encoder.writeSmallInt(-3);
+        assertEquals(size(), CborSize.sizeOfSmallInt());
+    }
+
+    @Test
+    public void testSizeOfFloatingPoint() throws IOException {
+        Random rnd = new Random(754);
+        for (int i = 0; i < 100000; i++) {
+            double[] values = { Double.longBitsToDouble(rnd.nextLong()), Float.intBitsToFloat(rnd.nextInt()),
+                CborHalfFloat.toFloat(rnd.nextInt()) };
+            for (double value : values) {
+                m_encoder.writeFloatingPoint(value);
+                assertEquals("Size of " + value, size(), CborSize.sizeOfFloatingPoint(value));
+            }
+        }
+        for (int half = 0; half < 0x400; half++) {
+            double value = CborHalfFloat.toFloat(half);
+            m_encoder.writeFloatingPoint(Math.nextUp(value));
+            assertEquals(size(), CborSize.sizeOfFloatingPoint(Math.nextUp(value)));
+            m_encoder.writeFloatingPoint(Math.nextUp((float) value));
+            assertEquals(size(), CborSize.sizeOfFloatingPoint(Math.nextUp((float) value)));
+        }
+
+        m_encoder.writeDouble(1.0);
+        assertEquals(size(), CborSize.sizeOfDouble());
+        m_encoder.writeFloat(1.0f);
+        assertEquals(size(), CborSize.sizeOfFloat());
+        m_encoder.writeHalfPrecisionFloat(1.0f);
+        assertEquals(size(), CborSize.sizeOfHalfPrecisionFloat());
+    }
+
+    @Test
+    public void testSizeOfStrings() throws IOException {
+        String[] values = { null, "", "a", "\u00fc\u6c34", "\ud800\udd51", "\ud800", new String(new char[23]),
+            new String(new char[24]), new String(new char[70000]).replace('\0', '\u6c34') };
+        for (String value : values) {
+            m_encoder.writeTextString(value);
+            assertEquals(size(), CborSize.sizeOfTextString(value));
+
+            if (value != null) {
+                char[] chars = ("x" + value + "x").toCharArray();
+                m_encoder.writeTextString(chars, 1, value.length());
+                assertEquals(size(), CborSize.sizeOfTextString(chars, 1, value.length()));
+            }
+        }
+        m_encoder.writeTextArray(values, 0, values.length);
+        assertEquals(size(), CborSize.sizeOfTextArray(values, 0, values.length));
+
+        byte[][] bytes = { null, new byte[0], new byte[23], new byte[24], new byte[256], new byte[65536] };
+        for (byte[] value : bytes) {
+            m_encoder.writeByteString(value);
+            assertEquals(size(), CborSize.sizeOfByteString(value));
+        }
+        m_encoder.writeByteStringArray(bytes, 1, 4);
+        assertEquals(size(), CborSize.sizeOfByteStringArray(bytes, 1, 4));
+    }
+
+    @Test
+    public void testSizeOfOtherItems() throws IOException {
+        for (int length : new int[] { 0, 23, 24, 256, 65536 }) {
+            m_encoder.writeArrayStart(length);
+            assertEquals(size(), CborSize.sizeOfArrayStart(length));
+            m_encoder.writeMapStart(length);
+            assertEquals(size(), CborSize.sizeOfMapStart(length));
+            m_encoder.writeTag(length);
+            assertEquals(size(), CborSize.sizeOfTag(length));
+
+            long[] longs = new long[length];
+            m_encoder.writeIntArray(longs, 0, length);
+            assertEquals(size(), CborSize.sizeOfIntArray(longs, 0, length));
+            m_encoder.writeTypedArray(longs, 0, length, ByteOrder.LITTLE_ENDIAN);
+            assertEquals(size(), CborSize.sizeOfTypedArray(length, 8));
+
+            double[] doubles = new double[length];
+            m_encoder.writeDoubleArray(doubles, 0, length);
+            assertEquals(size(), CborSize.sizeOfDoubleArray(doubles, 0, length, false));
+            m_encoder.setShortestFloatingPoint(true);
+            m_encoder.writeDoubleArray(doubles, 0, length);
+            assertEquals(size(), CborSize.sizeOfDoubleArray(doubles, 0, length, true));
+            m_encoder.setShortestFloatingPoint(false);
+        }
+        for (int value = 0; value < 256; value++) {
+            m_encoder.writeSimpleValue((byte) value);
+            assertEquals(size(), CborSize.sizeOfSimpleValue((byte) value));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeOfNegativeLengthFail() {
+        CborSize.sizeOfArrayStart(-1);
+    }
+}
@@ -8,10 +8,12 @@
 package jacob;
 
 import static jacob.CborConstants.BREAK;
+import static jacob.CborConstants.TYPE_ARRAY;
 import static jacob.CborConstants.TYPE_FLOAT_SIMPLE;
 import static jacob.CborType.valueOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -36,4 +38,35 @@ public class CborTypeTest {
         assertTrue(type.isEqualType(0xff));
         assertFalse(type.isEqualType(0x01));
     }
+
+    @Test
+    public void testValueOfReturnsSharedInstances() {
+        for (int i = 0; i < 256; i++) {
+            assertSame(valueOf(i), valueOf(i));
+            assertSame(valueOf(i), valueOf(i | 0x300));
+            assertEquals(i >>> 5, valueOf(i).getMajorType());
+            assertEquals(i & 0x1f, valueOf(i).getAdditionalInfo());
+        }
+    }
+
+    @Test
+    public void testPayloadWidth() {
+        assertEquals(0, valueOf(0x17).getPayloadWidth());
+        assertEquals(1, valueOf(0x38).getPayloadWidth());
+        assertEquals(2, valueOf(0x59).getPayloadWidth());
+        assertEquals(4, valueOf(0x7a).getPayloadWidth());
+        assertEquals(8, valueOf(0xfb).getPayloadWidth());
+        assertEquals(-1, valueOf(0x1c).getPayloadWidth());
+        assertEquals(0, valueOf(0x9f).getPayloadWidth());
+    }
+
+    @Test
+    public void testIsBreakAllowed() {
+        CborType type = valueOf(0x9f);
+        assertEquals(TYPE_ARRAY, type.getMajorType());
+        assertTrue(type.isBreakAllowed());
+        assertTrue(valueOf(0x40).isBreakAllowed());
+        assertFalse(valueOf(0x00).isBreakAllowed());
+        assertFalse(valueOf(0xff).isBreakAllowed());
+    }
 }
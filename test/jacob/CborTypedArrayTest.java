@@ -0,0 +1,260 @@
+/*
+ * JACOB - CBOR implementation in Java.
+ * 
+ * (C) Copyright - 2014 - J.W. Janssen <j.w.janssen@lxtreme.nl>
+ *
+ * Licensed under Apache License v2.0.
+ */
+package jacob;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test cases for writing and reading typed arrays, as defined in RFC 8746.
+ */
+@RunWith(Parameterized.class)
+public class CborTypedArrayTest {
+    private static final int STREAM = 0;
+    private static final int BYTE_ARRAY = 1;
+    private static final int BYTE_BUFFER = 2;
+    private static final int BUFFERED = 3;
+
+    private final int m_kind;
+
+    public CborTypedArrayTest(int kind) {
+        m_kind = kind;
+    }
+
+    @Parameters(name = "{index}: decoder kind {0}")
+    public static Iterable<Object[]> getParameters() {
+        return Arrays.asList(new Object[] { STREAM }, new Object[] { BYTE_ARRAY }, new Object[] { BYTE_BUFFER },
+            new Object[] { BUFFERED });
+    }
+
+    private CborDecoder createDecoder(byte[] encoded) {
+        switch (m_kind) {
+            case BYTE_ARRAY:
+                return new CborByteArrayDecoder(encoded);
+            case BYTE_BUFFER:
+                ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+                direct.put(encoded).flip();
+                return new CborByteBufferDecoder(direct);
+            case BUFFERED:
+                return new CborBufferedDecoder(new ByteArrayInputStream(encoded), 64);
+            default:
+                return new CborDecoder(new ByteArrayInputStream(encoded));
+        }
+    }
+
+    /**
+     * Encodes using both the stream-based and the array-based encoder, and verifies they produce the same output.
+     */
+    private static abstract class Writer {
+        abstract void write(CborEncoder encoder) throws IOException;
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            write(new CborEncoder(baos));
+
+            CborByteArrayEncoder encoder = new CborByteArrayEncoder(0);
+            write(encoder);
+            assertArrayEquals(baos.toByteArray(), encoder.toByteArray());
+            return encoder.toByteArray();
+        }
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void testWriteTypedArrayEncoding() throws IOException {
+        byte[] encoded = new Writer() {
+            @Override
+            void write(CborEncoder encoder) throws IOException {
+                long[] values = { 42, 1, -2, 42 };
+                encoder.writeTypedArray(values, 1, 2, ByteOrder.BIG_ENDIAN);
+                encoder.writeTypedArray(values, 1, 2, ByteOrder.LITTLE_ENDIAN);
+                encoder.writeTypedArray(new short[] { 0x0102 }, 0, 1, ByteOrder.LITTLE_ENDIAN);
+                encoder.writeTypedArray(new float[] { 1.0f }, 0, 1, ByteOrder.BIG_ENDIAN);
+                encoder.writeTypedArray(new double[0], 0, 0, ByteOrder.LITTLE_ENDIAN);
+            }
+        }.encode();
+
+        assertArrayEquals(toBytes(0xd8, 0x4b, 0x50, //
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xfe, //
+            0xd8, 0x4f, 0x50, //
+            0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0xfe, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, //
+            0xd8, 0x4d, 0x42, 0x02, 0x01, //
+            0xd8, 0x51, 0x44, 0x3f, 0x80, 0x00, 0x00, //
+            0xd8, 0x56, 0x40), encoded);
+    }
+
+    @Test
+    public void testTypedArrayRoundTrip() throws IOException {
+        Random rnd = new Random(8746);
+        final long[] longs = new long[10000];
+        final int[] ints = new int[10000];
+        final short[] shorts = new short[10000];
+        final float[] floats = new float[10000];
+        final double[] doubles = new double[10000];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = rnd.nextLong();
+            ints[i] = rnd.nextInt();
+            shorts[i] = (short) rnd.nextInt();
+            floats[i] = rnd.nextFloat();
+            doubles[i] = rnd.nextGaussian();
+        }
+
+        for (final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            byte[] encoded = new Writer() {
+                @Override
+                void write(CborEncoder encoder) throws IOException {
+                    encoder.writeTypedArray(longs, 0, longs.length, order);
+                    encoder.writeTypedArray(ints, 0, ints.length, order);
+                    encoder.writeTypedArray(shorts, 0, shorts.length, order);
+                    encoder.writeTypedArray(floats, 0, floats.length, order);
+                    encoder.writeTypedArray(doubles, 0, doubles.length, order);
+                    encoder.writeTypedArray(longs, 0, longs.length, order);
+                    encoder.writeTypedArray(doubles, 0, doubles.length, order);
+                    encoder.writeTypedArray(ints, 0, ints.length, order);
+                    encoder.writeTypedArray(floats, 0, floats.length, order);
+                }
+            }.encode();
+
+            CborDecoder decoder = createDecoder(encoded);
+            assertArrayEquals(longs, decoder.readTypedLongArray());
+            assertArrayEquals(ints, decoder.readTypedIntArray());
+
+            long[] shortsAsLongs = decoder.readTypedLongArray();
+            for (int i = 0; i < shorts.length; i++) {
+                assertEquals(shorts[i], shortsAsLongs[i]);
+            }
+
+            assertTrue(Arrays.equals(floats, decoder.readTypedFloatArray()));
+            assertTrue(Arrays.equals(doubles, decoder.readTypedDoubleArray()));
+
+            LongBuffer longBuf = decoder.readTypedLongBuffer();
+            assertTrue(longBuf.isReadOnly());
+            assertEquals(LongBuffer.wrap(longs), longBuf);
+
+            DoubleBuffer doubleBuf = decoder.readTypedDoubleBuffer();
+            assertEquals(DoubleBuffer.wrap(doubles), doubleBuf);
+
+            long[] intsAsLongs = decoder.readTypedLongArray();
+            double[] floatsAsDoubles = decoder.readTypedDoubleArray();
+            for (int i = 0; i < ints.length; i++) {
+                assertEquals(ints[i], intsAsLongs[i]);
+                assertEquals(floats[i], floatsAsDoubles[i], 0.0);
+            }
+            assertNull(decoder.peekType());
+        }
+    }
+
+    @Test
+    public void testReadUnsignedAndHalfPrecisionArrays() throws IOException {
+        byte[] encoded = toBytes(0xd8, 0x40, 0x42, 0x01, 0xff, // uint8
+            0xd8, 0x44, 0x42, 0x01, 0xff, // uint8, clamped
+            0xd8, 0x48, 0x42, 0x01, 0xff, // sint8
+            0xd8, 0x45, 0x44, 0x01, 0x00, 0xff, 0xff, // uint16, little endian
+            0xd8, 0x42, 0x44, 0xff, 0xff, 0xff, 0xfe, // uint32, big endian
+            0xd8, 0x50, 0x44, 0x3e, 0x00, 0xfc, 0x00, // float16, big endian
+            0xd8, 0x54, 0x44, 0x00, 0x3c, 0x01, 0x00 // float16, little endian
+        );
+
+        CborDecoder decoder = createDecoder(encoded);
+        assertArrayEquals(new int[] { 1, 255 }, decoder.readTypedIntArray());
+        assertArrayEquals(new long[] { 1, 255 }, decoder.readTypedLongArray());
+        assertArrayEquals(new int[] { 1, -1 }, decoder.readTypedIntArray());
+        assertArrayEquals(new int[] { 1, 65535 }, decoder.readTypedIntArray());
+        assertArrayEquals(new long[] { 0xfffffffeL }, decoder.readTypedLongArray());
+        assertTrue(Arrays.equals(new float[] { 1.5f, Float.NEGATIVE_INFINITY }, decoder.readTypedFloatArray()));
+        assertTrue(Arrays.equals(new double[] { 1.0, 5.960464477539063e-8 }, decoder.readTypedDoubleArray()));
+    }
+
+    @Test
+    public void testReadTypedLongBufferIsViewOnInput() throws IOException {
+        if (m_kind != BYTE_ARRAY) {
+            return;
+        }
+        byte[] encoded = new Writer() {
+            @Override
+            void write(CborEncoder encoder) throws IOException {
+                encoder.writeTypedArray(new long[] { 1L, 2L }, 0, 2, ByteOrder.LITTLE_ENDIAN);
+            }
+        }.encode();
+
+        LongBuffer buf = createDecoder(encoded).readTypedLongBuffer();
+        assertEquals(1L, buf.get(0));
+        encoded[3] = 3;
+        assertEquals(3L, buf.get(0));
+    }
+
+    @Test
+    public void testReadTypedArrayFailures() throws IOException {
+        byte[][] invalid = { //
+            toBytes(0xc1, 0x42, 0x00, 0x00), // not a typed array tag
+            toBytes(0xd8, 0x4c, 0x42, 0x00, 0x00), // reserved tag 76
+            toBytes(0xd8, 0x4b, 0x44, 0x00, 0x00, 0x00, 0x00), // length not a multiple of 8
+            toBytes(0xd8, 0x4b, 0x5f, 0xff), // indefinite length
+            toBytes(0xd8, 0x4b, 0x80), // not a byte string
+        };
+        for (byte[] input : invalid) {
+            try {
+                createDecoder(input).readTypedLongArray();
+                fail("IOException expected for " + Arrays.toString(input));
+            } catch (IOException e) {
+                // Ok; expected
+            }
+        }
+
+        byte[][] wrongType = { //
+            toBytes(0xd8, 0x42, 0x44, 0x00, 0x00, 0x00, 0x00), // uint32 does not fit in an int
+            toBytes(0xd8, 0x51, 0x44, 0x00, 0x00, 0x00, 0x00), // float32 is not an integer
+            toBytes(0xd8, 0x53, 0x50, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0) // float128 is not supported
+        };
+        for (byte[] input : wrongType) {
+            try {
+                createDecoder(input).readTypedIntArray();
+                fail("IOException expected for " + Arrays.toString(input));
+            } catch (IOException e) {
+                // Ok; expected
+            }
+        }
+        try {
+            createDecoder(wrongType[2]).readTypedDoubleArray();
+            fail("IOException expected");
+        } catch (IOException e) {
+            // Ok; expected
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testWriteTypedArrayInvalidRangeFail() throws IOException {
+        new CborByteArrayEncoder().writeTypedArray(new long[2], 1, 2, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteTypedArrayNullOrderFail() throws IOException {
+        new CborByteArrayEncoder().writeTypedArray(new long[2], 0, 2, null);
+    }
+}